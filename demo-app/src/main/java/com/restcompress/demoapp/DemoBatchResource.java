@@ -0,0 +1,12 @@
+package com.restcompress.demoapp;
+
+import com.restcompress.provider.BatchResource;
+
+import javax.ws.rs.Path;
+
+/**
+ * Serves batches of demo calls at /batch, see {@link com.restcompress.provider.BatchClient}
+ */
+@Path("/batch")
+public class DemoBatchResource extends BatchResource {
+}
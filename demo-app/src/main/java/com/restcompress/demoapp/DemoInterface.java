@@ -2,8 +2,13 @@ package com.restcompress.demoapp;
 
 import com.restcompress.demoapp.model.FancyRestObject;
 import com.restcompress.demoapp.model.KeyValue;
+import com.restcompress.demoapp.model.PackedFancyRestObject;
 import org.jboss.resteasy.annotations.GZIP;
+import com.restcompress.provider.CacheCompressed;
+import com.restcompress.provider.Compress;
+import com.restcompress.provider.DeltaEncoded;
 import com.restcompress.provider.LZF;
+import com.restcompress.provider.SmileProvider;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
@@ -11,6 +16,8 @@ import java.io.InputStream;
 
 /**
  * Shared interface used in server + clients
+ * <p/>Methods producing Smile answer with it only to clients that ask for it first (see AcceptSmileClientInterceptor);
+ *  JSON stays the default.
  * @author Sam Van Oort
  */
 public interface DemoInterface {
@@ -23,21 +30,21 @@ public interface DemoInterface {
     @GET
     @Path("/object")
     @LZF
-    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML,SmileProvider.APPLICATION_SMILE})
     /** Returns a sample serialized object */
     public KeyValue getObject();
 
     @GET
     @Path("/complex")
     @LZF
-    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML,SmileProvider.APPLICATION_SMILE})
     /** Return new FancyObject with 10 randomized values */
     public FancyRestObject getComplexObject();
 
     @GET
     @Path("/complex/{size}")
     @LZF
-    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML,SmileProvider.APPLICATION_SMILE})
     /** Return new FancyObject with ${size} randomized values */
     public FancyRestObject getComplexObjectSized(@PathParam("size") int number);
 
@@ -64,7 +71,7 @@ public interface DemoInterface {
     @GET
     @LZF
     @Path("/static")
-    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML,SmileProvider.APPLICATION_SMILE})
     public FancyRestObject getStaticObject();
 
     @GET
@@ -72,4 +79,41 @@ public interface DemoInterface {
     @Path("/static/gzip")
     @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
     public FancyRestObject getStaticObjectGzip();
+
+    @GET
+    @Compress
+    @Path("/static/negotiated")
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML,SmileProvider.APPLICATION_SMILE})
+    /** Static object, with the best encoding client accepts (LZ4, LZF or GZIP) */
+    public FancyRestObject getStaticObjectNegotiated();
+
+    @GET
+    @LZF
+    @CacheCompressed
+    @Path("/static/cached")
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    /** Static object, serialized and compressed once then served from the response cache */
+    public FancyRestObject getStaticObjectCached();
+
+    @GET
+    @LZF
+    @DeltaEncoded
+    @Path("/static/delta")
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    /** Static object with a few entries changed on every call; clients with DeltaClientInterceptor get just the changes */
+    public FancyRestObject getStaticObjectDelta();
+
+    @GET
+    @LZF
+    @Path("/complex/{size}/packed")
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    /** Return new FancyObject with ${size} randomized values, packed with key names sent once */
+    public PackedFancyRestObject getComplexObjectSizedPacked(@PathParam("size") int number);
+
+    @GET
+    @LZF
+    @Path("/static/packed")
+    @Produces({MediaType.APPLICATION_JSON,MediaType.APPLICATION_XML})
+    /** Static object, packed */
+    public PackedFancyRestObject getStaticObjectPacked();
 }
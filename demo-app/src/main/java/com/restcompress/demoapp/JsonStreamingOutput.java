@@ -0,0 +1,40 @@
+package com.restcompress.demoapp;
+
+import com.restcompress.provider.StreamingEntity;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes an object as JSON straight into the response stream, as UTF-8 bytes, without building a String first
+ * <p/>Uses one shared, pre-configured ObjectMapper (they're thread-safe once configured, and expensive to create).
+ *  Jackson buffers output in its own recycled buffer, and only flushes at the end, so the compressor gets
+ *  full chunks.
+ * @author Sam Van Oort
+ */
+public class JsonStreamingOutput implements StreamingEntity {
+
+    /** Shared mapper: don't close the response stream, and don't flush it until the body is done */
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        MAPPER.getJsonFactory().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        MAPPER.getJsonFactory().configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+    }
+
+    private final Object entity;
+
+    /**
+     * @param entity Object to serialize
+     */
+    public JsonStreamingOutput(Object entity) {
+        this.entity = entity;
+    }
+
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        MAPPER.writeValue(output, entity);
+    }
+}
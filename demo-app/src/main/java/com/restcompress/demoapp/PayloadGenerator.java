@@ -0,0 +1,375 @@
+package com.restcompress.demoapp;
+
+import com.restcompress.demoapp.model.FancyRestObject;
+import com.restcompress.demoapp.model.RestMapObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates synthetic REST payloads that compress like real data, for demos and benchmarks
+ * <p/>Entries are maps with a mix of field types: sequential ids, numbers, booleans, dates, low-cardinality
+ *  categories (some values much more common than others, like real status or country columns), and free text
+ *  built from a vocabulary.  Tune the mix with the setters: fields per entry, category cardinality, string
+ *  length range (lengths are log-uniform, so short strings are more common), nesting depth and numeric fraction.
+ * <p/>Entries are generated in blocks of {@link #BLOCK_SIZE}, each from its own Random seeded from the
+ *  generator's seed and the block number.  Large payloads are generated on all cores, and the output only
+ *  depends on the seed and settings, never on the number of threads.
+ * @author Sam Van Oort
+ */
+public class PayloadGenerator {
+
+    /** Entries generated from one Random, the unit of parallel work */
+    public static final int BLOCK_SIZE = 1024;
+
+    private static final String[] INT_NAMES = {"count", "quantity", "rank", "version", "retries"};
+    private static final String[] DECIMAL_NAMES = {"amount", "price", "score", "latitude", "weight"};
+    private static final String[] BOOLEAN_NAMES = {"active", "verified", "deleted", "premium"};
+    private static final String[] DATE_NAMES = {"created", "updated", "expires"};
+    private static final String[] CATEGORY_NAMES = {"status", "country", "category", "currency", "region"};
+    private static final String[] TEXT_NAMES = {"login", "title", "description", "comment", "address"};
+
+    private enum Kind { ID, INT, DECIMAL, BOOLEAN, DATE, CATEGORY, TEXT, NESTED }
+
+    /** Lazily created, so applications only generating small payloads never start threads */
+    private static class Holder {
+        static final ExecutorService EXECUTOR = create();
+    }
+
+    private static ExecutorService create() {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "payload-generator-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private long seed;
+    private int fields = 8;
+    private int cardinality = 50;
+    private int minLength = 4;
+    private int maxLength = 32;
+    private int depth = 0;
+    private double numericFraction = 0.5;
+
+    /**
+     * @param seed Seed: the same seed and settings always generate the same payload
+     */
+    public PayloadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /** Fields per entry, including the id and any nested object, default 8 */
+    public int getFields() {
+        return fields;
+    }
+
+    public void setFields(int fields) {
+        if (fields < 1) {
+            throw new IllegalArgumentException("Entries need at least one field");
+        }
+        this.fields = fields;
+    }
+
+    /** Distinct values of each category field, default 50 */
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    public void setCardinality(int cardinality) {
+        if (cardinality < 1) {
+            throw new IllegalArgumentException("Cardinality must be >= 1");
+        }
+        this.cardinality = cardinality;
+    }
+
+    /** Shortest text value and category word, default 4 */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /** Longest text value and category word, default 32 */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public void setLengths(int minLength, int maxLength) {
+        if (minLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("Lengths must satisfy 1 <= min <= max");
+        }
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    /** Levels of nested objects in each entry, default 0 (flat) */
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must be >= 0");
+        }
+        this.depth = depth;
+    }
+
+    /** Fraction of fields (after the id) holding numbers or booleans rather than text, default 0.5 */
+    public double getNumericFraction() {
+        return numericFraction;
+    }
+
+    public void setNumericFraction(double numericFraction) {
+        if (numericFraction < 0 || numericFraction > 1) {
+            throw new IllegalArgumentException("Numeric fraction must be between 0 and 1");
+        }
+        this.numericFraction = numericFraction;
+    }
+
+    /**
+     * Generate entries with the current settings
+     * @param entries Number of entries
+     * @return Entries as ordered maps, ready for Jackson
+     */
+    public List<Map<String, Object>> generate(int entries) {
+        final Schema schema = new Schema(this);
+        return generateBlocks(entries, new BlockGenerator<Map<String, Object>>() {
+            public void generate(Random random, int first, int count, List<Map<String, Object>> out) {
+                for (int i = 0; i < count; i++) {
+                    out.add(schema.entry(random, first + i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Generate a FancyRestObject of the demo app's usual entries (id, date, login, boolean, someId),
+     *  with every field drawn independently; other settings don't apply
+     * @param entries Number of entries
+     */
+    public FancyRestObject fancy(int entries) {
+        final int loginLength = 16;
+        List<RestMapObject> maps = generateBlocks(entries, new BlockGenerator<RestMapObject>() {
+            public void generate(Random random, int first, int count, List<RestMapObject> out) {
+                for (int i = 0; i < count; i++) {
+                    RestMapObject map = new RestMapObject();
+                    map.setValue("id", Integer.toString(random.nextInt(100000)));
+                    map.setValue("date", randomDate(random));
+                    map.setValue("login", randomWord(random, 1 + random.nextInt(loginLength)));
+                    map.setValue("boolean", Boolean.toString(random.nextBoolean()));
+                    map.setValue("someId", Integer.toString(random.nextInt(100000)));
+                    out.add(map);
+                }
+            }
+        });
+        FancyRestObject fancy = new FancyRestObject();
+        fancy.setMaps(maps);
+        return fancy;
+    }
+
+    /** Fills one block of entries from its own Random */
+    private interface BlockGenerator<T> {
+        void generate(Random random, int first, int count, List<T> out);
+    }
+
+    private <T> List<T> generateBlocks(int entries, final BlockGenerator<T> generator) {
+        entries = Math.abs(entries);
+        int blocks = (entries + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        List<T> result = new ArrayList<T>(entries);
+        if (blocks <= 1) {
+            generator.generate(new Random(blockSeed(0)), 0, entries, result);
+            return result;
+        }
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>(blocks);
+        for (int b = 0; b < blocks; b++) {
+            final int block = b;
+            final int first = b * BLOCK_SIZE;
+            final int count = Math.min(BLOCK_SIZE, entries - first);
+            futures.add(Holder.EXECUTOR.submit(new Callable<List<T>>() {
+                public List<T> call() {
+                    List<T> out = new ArrayList<T>(count);
+                    generator.generate(new Random(blockSeed(block)), first, count, out);
+                    return out;
+                }
+            }));
+        }
+        try {
+            for (Future<List<T>> future : futures) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted generating payload", ie);
+        } catch (ExecutionException ee) {
+            throw new IllegalStateException("Failed generating payload", ee.getCause());
+        }
+        return result;
+    }
+
+    /** Well-mixed seed per block, so neighbouring blocks aren't correlated */
+    private long blockSeed(int block) {
+        long z = seed + (block + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Random date between 1900 and 2019, as dd-MM-yyyy, without SimpleDateFormat */
+    static String randomDate(Random random) {
+        int year = 1900 + random.nextInt(120);
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(28);
+        char[] date = new char[10];
+        date[0] = (char) ('0' + day / 10);
+        date[1] = (char) ('0' + day % 10);
+        date[2] = '-';
+        date[3] = (char) ('0' + month / 10);
+        date[4] = (char) ('0' + month % 10);
+        date[5] = '-';
+        date[6] = (char) ('0' + year / 1000);
+        date[7] = (char) ('0' + year / 100 % 10);
+        date[8] = (char) ('0' + year / 10 % 10);
+        date[9] = (char) ('0' + year % 10);
+        return new String(date);
+    }
+
+    /** Random lowercase word */
+    static String randomWord(Random random, int length) {
+        char[] characters = new char[length];
+        for (int i = 0; i < length; i++) {
+            characters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(characters);
+    }
+
+    /** Field names, kinds and vocabularies, fixed by the seed and settings; read-only once built, so shared by threads */
+    private static final class Schema {
+        final String[] names;
+        final Kind[] kinds;
+        final String[][] categories;
+        final Schema[] nested;
+        final String[] vocabulary;
+        final int minLength;
+        final int maxLength;
+
+        Schema(PayloadGenerator settings) {
+            this(settings, new Random(settings.seed), settings.fields, settings.depth, null);
+        }
+
+        private Schema(PayloadGenerator settings, Random random, int fields, int depth, String[] vocabulary) {
+            this.minLength = settings.minLength;
+            this.maxLength = settings.maxLength;
+            this.vocabulary = vocabulary != null ? vocabulary : words(random, 1000, 2, 10);
+            names = new String[fields];
+            kinds = new Kind[fields];
+            categories = new String[fields][];
+            nested = new Schema[fields];
+            int[] used = new int[Kind.values().length];
+            for (int i = 0; i < fields; i++) {
+                Kind kind;
+                if (i == 0) {
+                    kind = Kind.ID;
+                } else if (i == fields - 1 && depth > 0) {
+                    kind = Kind.NESTED;
+                } else if (random.nextDouble() < settings.numericFraction) {
+                    kind = new Kind[]{Kind.INT, Kind.DECIMAL, Kind.BOOLEAN}[random.nextInt(3)];
+                } else {
+                    kind = new Kind[]{Kind.DATE, Kind.CATEGORY, Kind.TEXT, Kind.CATEGORY}[random.nextInt(4)];
+                }
+                kinds[i] = kind;
+                names[i] = name(kind, used[kind.ordinal()]++);
+                if (kind == Kind.CATEGORY) {
+                    categories[i] = words(random, settings.cardinality, minLength, maxLength);
+                } else if (kind == Kind.NESTED) {
+                    nested[i] = new Schema(settings, random, Math.max(2, fields / 2), depth - 1, this.vocabulary);
+                }
+            }
+        }
+
+        private static String name(Kind kind, int count) {
+            String[] base;
+            switch (kind) {
+                case ID: return count == 0 ? "id" : "id" + (count + 1);
+                case NESTED: return count == 0 ? "details" : "details" + (count + 1);
+                case INT: base = INT_NAMES; break;
+                case DECIMAL: base = DECIMAL_NAMES; break;
+                case BOOLEAN: base = BOOLEAN_NAMES; break;
+                case DATE: base = DATE_NAMES; break;
+                case CATEGORY: base = CATEGORY_NAMES; break;
+                default: base = TEXT_NAMES; break;
+            }
+            String name = base[count % base.length];
+            return count < base.length ? name : name + (count / base.length + 1);
+        }
+
+        private static String[] words(Random random, int count, int minLength, int maxLength) {
+            String[] words = new String[count];
+            for (int i = 0; i < count; i++) {
+                words[i] = randomWord(random, length(random, minLength, maxLength));
+            }
+            return words;
+        }
+
+        /** Log-uniform length: short values are more common than long ones */
+        static int length(Random random, int min, int max) {
+            return (int) Math.round(min * Math.pow((double) max / min, random.nextDouble()));
+        }
+
+        /** Skewed pick: low indexes are much more common, like real category values */
+        static <T> T pick(Random random, T[] values) {
+            double r = random.nextDouble();
+            return values[(int) (values.length * r * r)];
+        }
+
+        Map<String, Object> entry(Random random, long index) {
+            Map<String, Object> entry = new LinkedHashMap<String, Object>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                Object value;
+                switch (kinds[i]) {
+                    case ID: value = index + 1; break;
+                    case INT: value = random.nextInt(1000); break;
+                    case DECIMAL: value = Math.round(random.nextDouble() * 100000) / 100.0; break;
+                    case BOOLEAN: value = random.nextBoolean(); break;
+                    case DATE: value = randomDate(random); break;
+                    case CATEGORY: value = pick(random, categories[i]); break;
+                    case NESTED: value = nested[i].entry(random, random.nextInt(1000000)); break;
+                    default: value = text(random); break;
+                }
+                entry.put(names[i], value);
+            }
+            return entry;
+        }
+
+        private String text(Random random) {
+            int length = length(random, minLength, maxLength);
+            StringBuilder text = new StringBuilder(length + 10);
+            while (text.length() < length) {
+                if (text.length() > 0) {
+                    text.append(' ');
+                }
+                text.append(pick(random, vocabulary));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -3,15 +3,26 @@ package com.restcompress.demoapp;
 import com.ning.compress.lzf.LZFInputStream;
 import com.restcompress.demoapp.model.FancyRestObject;
 import com.restcompress.demoapp.model.KeyValue;
+import com.restcompress.demoapp.model.PackedFancyRestObject;
 import com.restcompress.demoapp.model.RestMapObject;
 import org.codehaus.jackson.JsonProcessingException;
-import org.codehaus.jackson.map.ObjectMapper;
+import com.restcompress.provider.BatchClient;
+import com.restcompress.provider.BoundedInputStream;
+import com.restcompress.provider.DecompressionLimitException;
+import com.restcompress.provider.FlushingEntity;
+import com.restcompress.provider.LZF;
+import com.restcompress.provider.PrecompressedStore;
+import com.restcompress.provider.SmileProvider;
+import org.jboss.resteasy.client.ClientRequest;
 import org.jboss.resteasy.client.ProxyFactory;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Demo App to act as a proof of concept for LZF compression of JSON/XML outputs
@@ -20,12 +31,21 @@ import java.util.*;
  *
  * - Includes methods that return simple String (JSON formatted or otherwise) like project LightBlue (getComplexObjectSizedJson)
  * - Also has traditional return value of Serialized POJOs (like a more classic java REST service) - getComplexObjectSized
+ * - And streaming JSON, serialized straight into the compressor (getComplexObjectSizedStream)
+ * - And server-sent events, each compressed and flushed to the client as it happens (getEvents)
+ * - And configurable synthetic payloads, generated in parallel from a seed (getGenerated)
+ * - And a static object precompressed to disk once, sent from its files (getStaticObjectStored)
+ * - LZF uploads are decoded with size and expansion limits, to memory (decompress) or a file (decompressToFile)
+ * - And a large object changing a little on every call, sent as deltas to clients that hold an older version (getStaticObjectDelta)
+ * - Any of these can be called many at a time, in one compressed round trip, through DemoBatchResource
  * @author Sam Van Oort
  */
 @Path("/")
 public class RestDemoApp implements DemoInterface {
 
     static final FancyRestObject fancy = getRandomObject(10000);
+    static final PackedFancyRestObject packed = new PackedFancyRestObject(fancy);
+    static final AtomicInteger deltaVersion = new AtomicInteger();
 
 
     @Override
@@ -61,6 +81,92 @@ public class RestDemoApp implements DemoInterface {
         return objectToJsonString(getRandomObject(number));
     }
 
+    /** Return new FancyObject with ${size} randomized values, streamed as JSON without building a String */
+    @GET
+    @Path("/complex/{size}/stream")
+    @LZF
+    @Produces(MediaType.APPLICATION_JSON)
+    public StreamingOutput getComplexObjectSizedStream(@PathParam("size") int number) {
+        return new JsonStreamingOutput(getRandomObject(number));
+    }
+
+    /**
+     * ${size} synthetic entries from the {@link PayloadGenerator}, streamed as JSON, to see how realistic data compresses
+     * <p/>Ex: /generated/10000?fields=12&cardinality=20&minLength=2&maxLength=64&depth=1&numeric=0.3&seed=7
+     */
+    @GET
+    @Path("/generated/{size}")
+    @LZF
+    @Produces(MediaType.APPLICATION_JSON)
+    public StreamingOutput getGenerated(@PathParam("size") int number,
+                                        @QueryParam("seed") @DefaultValue("1") long seed,
+                                        @QueryParam("fields") @DefaultValue("8") int fields,
+                                        @QueryParam("cardinality") @DefaultValue("50") int cardinality,
+                                        @QueryParam("minLength") @DefaultValue("4") int minLength,
+                                        @QueryParam("maxLength") @DefaultValue("32") int maxLength,
+                                        @QueryParam("depth") @DefaultValue("0") int depth,
+                                        @QueryParam("numeric") @DefaultValue("0.5") double numeric) {
+        PayloadGenerator generator = new PayloadGenerator(seed);
+        try {
+            generator.setFields(fields);
+            generator.setCardinality(cardinality);
+            generator.setLengths(minLength, maxLength);
+            generator.setDepth(depth);
+            generator.setNumericFraction(numeric);
+        } catch (IllegalArgumentException iae) {
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(iae.getMessage()).type(MediaType.TEXT_PLAIN_TYPE).build());
+        }
+        return new JsonStreamingOutput(generator.generate(number));
+    }
+
+    /**
+     * Server-sent events: ${count} random entries, one every ${interval} ms, each flushed as it is written
+     * <p/>With LZF, every event goes out as its own compressed chunk (or a few together, if they come faster than
+     *  the flush latency), instead of all at once when the stream ends.
+     */
+    @GET
+    @Path("/events/{count}/{interval}")
+    @LZF
+    @Produces("text/event-stream")
+    public StreamingOutput getEvents(@PathParam("count") final int count, @PathParam("interval") final long interval) {
+        return new FlushingEntity() {
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                List<RestMapObject> entries = getRandomObject(count).getMaps();
+                for (int i = 0; i < entries.size(); i++) {
+                    output.write(("id: " + i + "\ndata: " + objectToJsonString(entries.get(i)) + "\n\n").getBytes("UTF-8"));
+                    output.flush();
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Static object, serialized and compressed once into the PrecompressedStore, and sent from its files
+     * <p/>Stored on first use here; a real application would register it at startup, and refresh it on change.
+     */
+    @GET
+    @Path("/static/stored")
+    @Produces(MediaType.APPLICATION_JSON)
+    public PrecompressedStore.Entry getStaticObjectStored() throws IOException {
+        return storedFancy();
+    }
+
+    private static synchronized PrecompressedStore.Entry storedFancy() throws IOException {
+        PrecompressedStore.Entry entry = PrecompressedStore.get("fancy");
+        if (entry == null) {
+            entry = PrecompressedStore.register("fancy", MediaType.APPLICATION_JSON_TYPE, new JsonStreamingOutput(fancy),
+                    "lz4", "lzf", "gzip");
+        }
+        return entry;
+    }
+
     @Override
     public FancyRestObject getStaticObject(){
 //          return getRandomObject(10000,1);
@@ -73,6 +179,38 @@ public class RestDemoApp implements DemoInterface {
         return fancy;
     }
 
+    @Override
+    public FancyRestObject getStaticObjectNegotiated(){
+        return fancy;
+    }
+
+    @Override
+    public FancyRestObject getStaticObjectCached(){
+        return fancy;
+    }
+
+    @Override
+    public FancyRestObject getStaticObjectDelta() {
+        int version = deltaVersion.incrementAndGet();
+        List<RestMapObject> maps = new ArrayList<RestMapObject>(fancy.getMaps());
+        for (int i = 0; i < 3; i++) {
+            maps.set((version * 31 + i * 1013) % maps.size(), getRandomObject(1, version * 3 + i).getMaps().get(0));
+        }
+        FancyRestObject changed = new FancyRestObject();
+        changed.setMaps(maps);
+        return changed;
+    }
+
+    @Override
+    public PackedFancyRestObject getComplexObjectSizedPacked(@PathParam("size") int number) {
+        return new PackedFancyRestObject(getRandomObject(number));
+    }
+
+    @Override
+    public PackedFancyRestObject getStaticObjectPacked() {
+        return packed;
+    }
+
     @GET
     @Path("/test/show")
     public String testShowResults() {
@@ -107,12 +245,87 @@ public class RestDemoApp implements DemoInterface {
             retVal.append("ERROR!  Interface-based DOES NOT match on GZIP decompress. \n");
         }
 
+        fancyOut = objectToJsonString(proxy.getStaticObjectNegotiated());
+        if (fancyOut.equals(objectToJsonString(fancy))) {
+            retVal.append("Interface-based client matches on negotiated decompress. \n");
+        } else {
+            retVal.append("ERROR!  Interface-based DOES NOT match on negotiated decompress. \n");
+        }
+
+        for (int i = 0; i < 2; i++) { // Second call is served from the response cache
+            fancyOut = objectToJsonString(proxy.getStaticObjectCached());
+            if (fancyOut.equals(objectToJsonString(fancy))) {
+                retVal.append("Interface-based client matches on cached LZF decompress. \n");
+            } else {
+                retVal.append("ERROR!  Interface-based DOES NOT match on cached LZF decompress. \n");
+            }
+        }
+
+        fancyOut = objectToJsonString(proxy.getStaticObjectPacked().toFancyRestObject());
+        if (fancyOut.equals(objectToJsonString(fancy))) {
+            retVal.append("Interface-based client matches on packed LZF decompress. \n");
+        } else {
+            retVal.append("ERROR!  Interface-based DOES NOT match on packed LZF decompress. \n");
+        }
+
+        try {
+            ClientRequest storedRequest = new ClientRequest("http://localhost:8080/rest/static/stored");
+            storedRequest.accept(MediaType.APPLICATION_JSON);
+            fancyOut = objectToJsonString(storedRequest.get(FancyRestObject.class).getEntity());
+            if (fancyOut.equals(objectToJsonString(fancy))) {
+                retVal.append("Precompressed store client matches on decompress. \n");
+            } else {
+                retVal.append("ERROR!  Precompressed store client DOES NOT match on decompress. \n");
+            }
+        } catch (Exception e) {
+            retVal.append("ERROR!  Precompressed store client failed: ").append(e).append(" \n");
+        }
+
+        try {
+            ClientRequest smileRequest = new ClientRequest("http://localhost:8080/rest/static");
+            smileRequest.accept(SmileProvider.APPLICATION_SMILE);
+            fancyOut = objectToJsonString(smileRequest.get(FancyRestObject.class).getEntity());
+            if (fancyOut.equals(objectToJsonString(fancy))) {
+                retVal.append("Smile client matches on LZF decompress. \n");
+            } else {
+                retVal.append("ERROR!  Smile client DOES NOT match on LZF decompress. \n");
+            }
+        } catch (Exception e) {
+            retVal.append("ERROR!  Smile client failed: ").append(e).append(" \n");
+        }
+
+        for (int i = 0; i < 2; i++) { // Second call gets a delta against the first
+            FancyRestObject changed = proxy.getStaticObjectDelta();
+            if (changed != null && changed.getMaps().size() == fancy.getMaps().size()) {
+                retVal.append("Interface-based client matches on delta-encoded decompress. \n");
+            } else {
+                retVal.append("ERROR!  Interface-based DOES NOT match on delta-encoded decompress. \n");
+            }
+        }
+
+        try {
+            BatchClient batch = new BatchClient("http://localhost:8080/rest");
+            DemoInterface batched = batch.proxy(DemoInterface.class);
+            batched.getStaticObject();
+            batched.getObject();
+            List<BatchClient.Result> results = batch.execute();
+            fancyOut = objectToJsonString((FancyRestObject) results.get(0).getEntity());
+            if (fancyOut.equals(objectToJsonString(fancy)) && results.get(1).getEntity() instanceof KeyValue) {
+                retVal.append("Batch client matches on LZF decompress. \n");
+            } else {
+                retVal.append("ERROR!  Batch client DOES NOT match on LZF decompress. \n");
+            }
+        } catch (Exception e) {
+            retVal.append("ERROR!  Batch client failed: ").append(e).append(" \n");
+        }
+
         return retVal.toString();
     }
 
 
     /**
      * Attempts to decompress an LZF stream
+     * <p/>Decoding is limited by {@link BoundedInputStream}, so a small body that expands too far gets a 413
      * @param strm
      * @return
      */
@@ -120,7 +333,8 @@ public class RestDemoApp implements DemoInterface {
     public byte[] decompress(InputStream strm) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            LZFInputStream in = new LZFInputStream(strm);
+            BoundedInputStream.Source source = BoundedInputStream.source(strm);
+            InputStream in = new BoundedInputStream(new LZFInputStream(source), source);
             byte[] buffer = new byte[8192];
             int len = 0;
 
@@ -130,8 +344,41 @@ public class RestDemoApp implements DemoInterface {
             }
             return baos.toByteArray();
 
+        } catch (DecompressionLimitException dle) {
+            throw BoundedInputStream.tooLarge(dle.getMessage());
+        } catch (IOException ioe) {
+            throw new RuntimeException("IOException reading input stream",ioe);
+        }
+    }
+
+    /**
+     * Decompresses an LZF stream straight to a temporary file, without holding the body in memory
+     * @return Decompressed size in bytes
+     */
+    @POST
+    @Path("/lzf_uncompress/file")
+    @Consumes("*/*")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String decompressToFile(InputStream strm) {
+        File file = null;
+        try {
+            file = File.createTempFile("lzf_uncompress", ".tmp");
+            BoundedInputStream.Source source = BoundedInputStream.source(strm);
+            InputStream in = new BoundedInputStream(new LZFInputStream(source), source);
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                return Long.toString(BoundedInputStream.transfer(in, out.getChannel()));
+            } finally {
+                out.close();
+            }
+        } catch (DecompressionLimitException dle) {
+            throw BoundedInputStream.tooLarge(dle.getMessage());
         } catch (IOException ioe) {
             throw new RuntimeException("IOException reading input stream",ioe);
+        } finally {
+            if (file != null) {
+                file.delete();
+            }
         }
     }
 
@@ -165,9 +412,8 @@ public class RestDemoApp implements DemoInterface {
     }
 
     String objectToJsonString(Serializable object) {
-        ObjectMapper mapper = new ObjectMapper();
         try {
-            return mapper.writeValueAsString(object);
+            return JsonStreamingOutput.MAPPER.writeValueAsString(object);
         } catch (JsonProcessingException e) {
            throw new RuntimeException(e);
         } catch (IOException ioe) {
@@ -175,15 +421,6 @@ public class RestDemoApp implements DemoInterface {
         }
     }
 
-    /** Gets a random date in the last 100 years*/
-    public static GregorianCalendar getRandomDate(long seed) {
-        GregorianCalendar gc = new GregorianCalendar();
-        Random rand = new Random(seed);
-        gc.set(GregorianCalendar.YEAR,1900+rand.nextInt(120)); //Between 1900 & 2020
-        gc.set(GregorianCalendar.DAY_OF_YEAR,rand.nextInt(364)+1); //Day of year
-        return gc;
-    }
-
     /**
      * Used in compression testing, returns a number of fairly complex random entries
      * @return Simple object for use in compression testing
@@ -192,40 +429,11 @@ public class RestDemoApp implements DemoInterface {
         return getRandomObject(entries,System.currentTimeMillis());
     }
 
-    public static String getRandomAlphabetic(int length, long seed) {
-        Random r = new Random(seed);
-        int newLength = r.nextInt(length)+1; //Random length between 1 and length characters long
-        char[] characters = new char[newLength];
-        for (int i=0; i<newLength; i++) {
-            characters[i]= (char)(r.nextInt(26)+97); //corresponds to lowercase ASCII characters
-        }
-        return new String(characters);
-    }
-
+    /**
+     * Random entries with id, date, login, boolean and someId fields, see {@link PayloadGenerator#fancy(int)}
+     * @param seed The same seed gives the same entries
+     */
     public static FancyRestObject getRandomObject(int entries, long seed) {
-        entries = Math.abs(entries);
-
-        GregorianCalendar gc = new GregorianCalendar();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy"); //Date
-        ArrayList<RestMapObject> mapList = new ArrayList<RestMapObject>(entries);
-        Random rand = new Random(seed);
-
-        for(int i=0; i<entries; i++) {
-            //Create a random Map object with id,date,login,boolean,someId fields
-            RestMapObject map = new RestMapObject();
-
-            map.setValue("id",Integer.toString(rand.nextInt(100000)));
-            GregorianCalendar cal = getRandomDate(seed);
-            map.setValue("date",dateFormat.format(cal.getTime()));
-            map.setValue("login", getRandomAlphabetic(16,seed));
-            map.setValue("boolean",Boolean.toString(rand.nextBoolean()));
-            map.setValue("someId",Integer.toString(rand.nextInt(100000)));
-
-            mapList.add(map);
-        }
-
-        FancyRestObject fancy = new FancyRestObject();
-        fancy.setMaps(mapList);
-        return fancy;
+        return new PayloadGenerator(seed).fancy(entries);
     }
 }
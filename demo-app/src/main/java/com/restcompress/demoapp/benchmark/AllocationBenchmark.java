@@ -0,0 +1,98 @@
+package com.restcompress.demoapp.benchmark;
+
+import com.ning.compress.lzf.LZFEncoder;
+import com.ning.compress.lzf.LZFInputStream;
+import com.ning.compress.lzf.LZFOutputStream;
+import com.restcompress.demoapp.RestDemoApp;
+import com.restcompress.provider.LZFStreamPool;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures bytes allocated per request by the LZF encode/decode path of the interceptors
+ * <p/>Compares what the interceptors used to do (new LZFOutputStream/LZFInputStream per request, never closed)
+ *  with the pooled streams from LZFStreamPool.  Runs without a container, on a HotSpot JVM:
+ * <pre>java -cp demo-app/target/classes:{classpath} com.restcompress.demoapp.benchmark.AllocationBenchmark [entries] [requests]</pre>
+ * @author Sam Van Oort
+ */
+public class AllocationBenchmark {
+
+    /** Discards output, without allocating */
+    static class NullOutputStream extends OutputStream {
+        long count = 0;
+        public void write(int b) { count++; }
+        public void write(byte[] b, int off, int len) { count += len; }
+    }
+
+    interface Request {
+        void run() throws IOException;
+    }
+
+    static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Run request repeatedly, returning bytes allocated per request */
+    static long measure(Request request, int requests) throws IOException {
+        for (int i = 0; i < requests; i++) { // Warmup
+            request.run();
+        }
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < requests; i++) {
+            request.run();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - start) / requests;
+    }
+
+    static void drain(InputStream in, byte[] buffer) throws IOException {
+        while (in.read(buffer) != -1) {
+            // Discard
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        final byte[] json = new ObjectMapper().writeValueAsBytes(RestDemoApp.getRandomObject(entries, 1));
+        final byte[] lzf = LZFEncoder.encode(json);
+        final NullOutputStream sink = new NullOutputStream();
+        final byte[] readBuffer = new byte[8192];
+        System.out.println("Payload: " + json.length + " bytes JSON, " + lzf.length + " bytes LZF, " + requests + " requests");
+
+        long encodeBefore = measure(new Request() {
+            public void run() throws IOException {
+                LZFOutputStream out = new LZFOutputStream(sink);
+                out.write(json);
+                out.flush();
+            }
+        }, requests);
+        long encodeAfter = measure(new Request() {
+            public void run() throws IOException {
+                OutputStream out = LZFStreamPool.getOutputStream(sink);
+                out.write(json);
+                out.close();
+            }
+        }, requests);
+        long decodeBefore = measure(new Request() {
+            public void run() throws IOException {
+                drain(new LZFInputStream(new ByteArrayInputStream(lzf)), readBuffer);
+            }
+        }, requests);
+        long decodeAfter = measure(new Request() {
+            public void run() throws IOException {
+                InputStream in = LZFStreamPool.getInputStream(new ByteArrayInputStream(lzf));
+                drain(in, readBuffer);
+                in.close();
+            }
+        }, requests);
+
+        System.out.println("Encode, bytes allocated/request: new LZFOutputStream " + encodeBefore + ", pooled " + encodeAfter);
+        System.out.println("Decode, bytes allocated/request: new LZFInputStream " + decodeBefore + ", pooled " + decodeAfter);
+    }
+}
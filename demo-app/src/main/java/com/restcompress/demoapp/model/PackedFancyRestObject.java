@@ -1,27 +1,110 @@
 package com.restcompress.demoapp.model;
 
 
-import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Replaces a FancyRestObject with smarter packing of a collection
  * Replaces a List\<RestMapObject\> which is basically String key-value sets
  * The key-value sets are converted to:
  * Array of String header names
- * ArrayList of String[] (values for these objects)
+ * ArrayList of String[] (values for these objects), one per map, in header order
  *
- * This whole shebang should (de)serialize and convert to XML/JSON very efficiently
+ * Key names are sent once, in the header, instead of in every map, so bodies are smaller before compression.
+ * Keys missing from a map (and null values) are packed as null, and left out when unpacked.
  *
- * //TODO Finished Packed List implementation
- * //TODO Explore what impacts packed fancy rest object has on (de)serialization & XML/JSON performance
+ * Converted to JSON/XML by {@link com.restcompress.demoapp.provider.PackedFancyRestObjectProvider}:
+ * {"headers":["id","date"],"values":[["1","01-01-1970"],["2",null]]}
  */
-@XmlRootElement
 public class PackedFancyRestObject implements Serializable {
 
+    /** Column names */
+    String[] headers = new String[0];
+
     /** Packed Values */
     ArrayList<String[]> values = new ArrayList<String[]>();
 
+    public PackedFancyRestObject() {
+    }
+
+    /**
+     * Pack a FancyRestObject: columns are the keys of all its maps, in order of first appearance
+     * @param fancy Object to pack
+     */
+    public PackedFancyRestObject(FancyRestObject fancy) {
+        Map<String, Integer> columns = new LinkedHashMap<String, Integer>();
+        List<RestMapObject> maps = fancy.getMaps();
+        values = new ArrayList<String[]>(maps.size());
+        for (RestMapObject map : maps) {
+            for (KeyValue kv : map.getMap()) {
+                if (!columns.containsKey(kv.getKey())) {
+                    columns.put(kv.getKey(), columns.size());
+                }
+            }
+        }
+        headers = columns.keySet().toArray(new String[columns.size()]);
+        for (RestMapObject map : maps) {
+            String[] row = new String[headers.length];
+            for (KeyValue kv : map.getMap()) {
+                row[columns.get(kv.getKey())] = kv.getValue();
+            }
+            values.add(row);
+        }
+    }
+
+    /** Unpack to a FancyRestObject, with one map per row */
+    public FancyRestObject toFancyRestObject() {
+        ArrayList<RestMapObject> maps = new ArrayList<RestMapObject>(values.size());
+        for (String[] row : values) {
+            RestMapObject map = new RestMapObject();
+            List<KeyValue> kvs = new ArrayList<KeyValue>(headers.length);
+            for (int i = 0; i < headers.length && i < row.length; i++) {
+                if (row[i] != null) {
+                    kvs.add(new KeyValue(headers[i], row[i]));
+                }
+            }
+            map.setMap(kvs);
+            maps.add(map);
+        }
+        FancyRestObject fancy = new FancyRestObject();
+        fancy.setMaps(maps);
+        return fancy;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(String[] headers) {
+        this.headers = headers;
+    }
+
+    public ArrayList<String[]> getValues() {
+        return values;
+    }
+
+    public void setValues(ArrayList<String[]> values) {
+        this.values = values;
+    }
+
+    /** Index of a column, or -1 if there is no such column */
+    public int getColumn(String header) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].equals(header)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
+    /** Get a value by row number and column name, null if missing */
+    public String getValue(int row, String header) {
+        int column = getColumn(header);
+        String[] rowValues = values.get(row);
+        return column < 0 || column >= rowValues.length ? null : rowValues[column];
+    }
 }
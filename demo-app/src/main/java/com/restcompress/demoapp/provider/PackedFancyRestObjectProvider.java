@@ -0,0 +1,238 @@
+package com.restcompress.demoapp.provider;
+
+import com.restcompress.demoapp.JsonStreamingOutput;
+import com.restcompress.demoapp.model.PackedFancyRestObject;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes PackedFancyRestObject as JSON or XML, streaming, without reflection or JAXB
+ * <p/>JSON: {"headers":["id","date"],"values":[["1","01-01-1970"],["2",null]]}
+ * <p/>XML: &lt;packedFancyRestObject&gt;&lt;headers&gt;&lt;h&gt;id&lt;/h&gt;...&lt;/headers&gt;
+ *  &lt;values&gt;&lt;r&gt;&lt;v&gt;1&lt;/v&gt;&lt;v nil="true"/&gt;&lt;/r&gt;...&lt;/values&gt;&lt;/packedFancyRestObject&gt;
+ * <p/>Registered on server and client by classpath scanning, like the compression interceptors.
+ * @author Sam Van Oort
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+@Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+public class PackedFancyRestObjectProvider implements MessageBodyWriter<PackedFancyRestObject>, MessageBodyReader<PackedFancyRestObject> {
+
+    private static final XMLOutputFactory xmlOutput = XMLOutputFactory.newInstance();
+    private static final XMLInputFactory xmlInput = XMLInputFactory.newInstance();
+
+    private static boolean isXml(MediaType mediaType) {
+        return mediaType != null && mediaType.getSubtype().endsWith("xml");
+    }
+
+    private static boolean isSupported(MediaType mediaType) {
+        return mediaType == null || isXml(mediaType) || mediaType.getSubtype().endsWith("json");
+    }
+
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return PackedFancyRestObject.class.isAssignableFrom(type) && isSupported(mediaType);
+    }
+
+    public long getSize(PackedFancyRestObject packed, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    public void writeTo(PackedFancyRestObject packed, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        if (isXml(mediaType)) {
+            writeXml(packed, entityStream);
+        } else {
+            writeJson(packed, entityStream);
+        }
+    }
+
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == PackedFancyRestObject.class && isSupported(mediaType);
+    }
+
+    public PackedFancyRestObject readFrom(Class<PackedFancyRestObject> type, Type genericType, Annotation[] annotations,
+                                          MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+            throws IOException, WebApplicationException {
+        return isXml(mediaType) ? readXml(entityStream) : readJson(entityStream);
+    }
+
+    /** Write as JSON, as UTF-8, leaving the stream open */
+    public static void writeJson(PackedFancyRestObject packed, OutputStream out) throws IOException {
+        JsonGenerator json = JsonStreamingOutput.MAPPER.getJsonFactory().createJsonGenerator(out);
+        json.writeStartObject();
+        json.writeArrayFieldStart("headers");
+        for (String header : packed.getHeaders()) {
+            json.writeString(header);
+        }
+        json.writeEndArray();
+        json.writeArrayFieldStart("values");
+        for (String[] row : packed.getValues()) {
+            json.writeStartArray();
+            for (String value : row) {
+                if (value == null) {
+                    json.writeNull();
+                } else {
+                    json.writeString(value);
+                }
+            }
+            json.writeEndArray();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.close(); // Writes out the generator's buffer, the shared mapper leaves the stream open
+    }
+
+    /** Read from JSON */
+    public static PackedFancyRestObject readJson(InputStream in) throws IOException {
+        JsonParser json = JsonStreamingOutput.MAPPER.getJsonFactory().createJsonParser(in);
+        PackedFancyRestObject packed = new PackedFancyRestObject();
+        try {
+            expect(json.nextToken(), JsonToken.START_OBJECT);
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.getCurrentName();
+                if ("headers".equals(field)) {
+                    List<String> headers = readJsonArray(json);
+                    packed.setHeaders(headers.toArray(new String[headers.size()]));
+                } else if ("values".equals(field)) {
+                    expect(json.nextToken(), JsonToken.START_ARRAY);
+                    ArrayList<String[]> rows = new ArrayList<String[]>();
+                    while (json.nextToken() != JsonToken.END_ARRAY) {
+                        List<String> row = readJsonArray(json, json.getCurrentToken());
+                        rows.add(row.toArray(new String[row.size()]));
+                    }
+                    packed.setValues(rows);
+                } else {
+                    json.nextToken();
+                    json.skipChildren();
+                }
+            }
+        } finally {
+            json.close();
+        }
+        return packed;
+    }
+
+    private static List<String> readJsonArray(JsonParser json) throws IOException {
+        return readJsonArray(json, json.nextToken());
+    }
+
+    private static List<String> readJsonArray(JsonParser json, JsonToken start) throws IOException {
+        expect(start, JsonToken.START_ARRAY);
+        List<String> values = new ArrayList<String>();
+        JsonToken token;
+        while ((token = json.nextToken()) != JsonToken.END_ARRAY) {
+            values.add(token == JsonToken.VALUE_NULL ? null : json.getText());
+        }
+        return values;
+    }
+
+    private static void expect(JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("Invalid packed object: expected " + expected + " but got " + token);
+        }
+    }
+
+    /** Write as XML, as UTF-8, leaving the stream open */
+    public static void writeXml(PackedFancyRestObject packed, OutputStream out) throws IOException {
+        try {
+            XMLStreamWriter xml = xmlOutput.createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("packedFancyRestObject");
+            xml.writeStartElement("headers");
+            for (String header : packed.getHeaders()) {
+                xml.writeStartElement("h");
+                xml.writeCharacters(header);
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+            xml.writeStartElement("values");
+            for (String[] row : packed.getValues()) {
+                xml.writeStartElement("r");
+                for (String value : row) {
+                    if (value == null) {
+                        xml.writeEmptyElement("v");
+                        xml.writeAttribute("nil", "true");
+                    } else {
+                        xml.writeStartElement("v");
+                        xml.writeCharacters(value);
+                        xml.writeEndElement();
+                    }
+                }
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close(); // Does not close the underlying stream
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse);
+        }
+    }
+
+    /** Read from XML */
+    public static PackedFancyRestObject readXml(InputStream in) throws IOException {
+        PackedFancyRestObject packed = new PackedFancyRestObject();
+        List<String> headers = new ArrayList<String>();
+        ArrayList<String[]> rows = new ArrayList<String[]>();
+        List<String> row = null;
+        try {
+            XMLStreamReader xml = xmlInput.createXMLStreamReader(in);
+            try {
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT && xml.getEventType() != XMLStreamConstants.END_ELEMENT) {
+                        continue;
+                    }
+                    String name = xml.getLocalName();
+                    if (xml.isEndElement()) {
+                        if ("r".equals(name)) {
+                            rows.add(row.toArray(new String[row.size()]));
+                            row = null;
+                        }
+                    } else if ("h".equals(name)) {
+                        headers.add(xml.getElementText());
+                    } else if ("r".equals(name)) {
+                        row = new ArrayList<String>(headers.size());
+                    } else if ("v".equals(name)) {
+                        if (row == null) {
+                            throw new IOException("Invalid packed object: value outside of a row");
+                        }
+                        boolean nil = "true".equals(xml.getAttributeValue(null, "nil"));
+                        String text = xml.getElementText(); // Moves to the end element
+                        row.add(nil ? null : text);
+                    }
+                }
+            } finally {
+                xml.close();
+            }
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse);
+        }
+        packed.setHeaders(headers.toArray(new String[headers.size()]));
+        packed.setValues(rows);
+        return packed;
+    }
+}
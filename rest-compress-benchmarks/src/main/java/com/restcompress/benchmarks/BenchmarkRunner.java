@@ -0,0 +1,40 @@
+package com.restcompress.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks at 1 thread and at one thread per CPU, with the GC profiler for allocation rates
+ * <pre>java -jar rest-compress-benchmarks/target/benchmarks.jar [benchmark regex] [thread counts, ex: 1,4,16]</pre>
+ * Every benchmark already runs at several payload sizes.  For anything else (other profilers, output formats),
+ *  use JMH directly: java -cp target/benchmarks.jar org.openjdk.jmh.Main -h
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "com\\.restcompress\\.benchmarks\\..*";
+        int[] threads;
+        if (args.length > 1) {
+            String[] counts = args[1].split(",");
+            threads = new int[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                threads[i] = Integer.parseInt(counts[i].trim());
+            }
+        } else {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            threads = cpus > 1 ? new int[]{1, cpus} : new int[]{1};
+        }
+
+        for (int count : threads) {
+            System.out.println("# Threads: " + count);
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(count)
+                    .addProfiler(GCProfiler.class); // gc.alloc.rate.norm is bytes allocated per operation
+            new Runner(options.build()).run();
+        }
+    }
+}
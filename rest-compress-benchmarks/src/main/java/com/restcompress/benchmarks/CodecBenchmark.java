@@ -0,0 +1,90 @@
+package com.restcompress.benchmarks;
+
+import com.ning.compress.lzf.LZFDecoder;
+import com.ning.compress.lzf.LZFEncoder;
+import com.ning.compress.lzf.LZFException;
+import com.restcompress.provider.LZFStreamPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw LZF encode/decode of REST JSON and XML bodies, one-shot and through the pooled streams the interceptors use
+ * <p/>Divide payload bytes by the time per operation for MB/s; compare with the README's LZF vs. GZIP table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    /** FancyRestObject as JSON or XML, or mixed-type PayloadGenerator entries as JSON */
+    @Param({"json", "xml", "generated"})
+    public String format;
+
+    /** FancyRestObject entries: about 1 kB, 100 kB and 1 MB of JSON */
+    @Param({"10", "1000", "10000"})
+    public int entries;
+
+    byte[] body;
+    byte[] compressed;
+
+    /** Per-thread scratch, so threads don't share buffers */
+    @State(Scope.Thread)
+    public static class Buffers {
+        final Payloads.NullOutputStream sink = new Payloads.NullOutputStream();
+        final byte[] read = new byte[8192];
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        body = Payloads.body(format, entries);
+        compressed = LZFEncoder.encode(body);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return LZFEncoder.encode(body);
+    }
+
+    @Benchmark
+    public byte[] decode() throws LZFException {
+        return LZFDecoder.decode(compressed);
+    }
+
+    @Benchmark
+    public long pooledStreamEncode(Buffers buffers) throws IOException {
+        OutputStream out = LZFStreamPool.getOutputStream(buffers.sink);
+        out.write(body);
+        out.close();
+        return buffers.sink.count;
+    }
+
+    @Benchmark
+    public long pooledStreamDecode(Buffers buffers) throws IOException {
+        InputStream in = LZFStreamPool.getInputStream(new ByteArrayInputStream(compressed));
+        long total = 0;
+        int count;
+        while ((count = in.read(buffers.read)) != -1) {
+            total += count;
+        }
+        in.close();
+        return total;
+    }
+}
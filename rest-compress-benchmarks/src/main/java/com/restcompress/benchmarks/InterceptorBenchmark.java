@@ -0,0 +1,77 @@
+package com.restcompress.benchmarks;
+
+import com.restcompress.provider.EndpointInterceptor;
+import com.restcompress.provider.LZFEncodingInterceptor;
+import com.restcompress.provider.LZFStreamPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of LZFEncodingInterceptor.write() over compressing the same bytes directly
+ * <p/>Runs against a stubbed MessageBodyWriterContext, so it covers the policy checks, metrics, deferred
+ *  compression and Content-Length buffering, without a container.  passThrough is the cost of the stub itself,
+ *  pooledStream the cost of compression alone; the interceptor's overhead is the difference to that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptorBenchmark {
+
+    /** FancyRestObject entries: small enough to be buffered with a Content-Length, and large enough to stream */
+    @Param({"10", "1000", "10000"})
+    public int entries;
+
+    byte[] body;
+
+    @State(Scope.Thread)
+    public static class Request {
+        final Payloads.NullOutputStream sink = new Payloads.NullOutputStream();
+        final StubWriterContext context = new StubWriterContext();
+        final LZFEncodingInterceptor interceptor = new LZFEncodingInterceptor();
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        body = Payloads.body("json", entries);
+    }
+
+    @Benchmark
+    public long passThrough(Request request) throws IOException {
+        request.context.reset(body, request.sink, MediaType.APPLICATION_JSON_TYPE, null);
+        request.interceptor.write(request.context);
+        return request.sink.count;
+    }
+
+    @Benchmark
+    public long pooledStream(Request request) throws IOException {
+        request.context.reset(body, LZFStreamPool.getOutputStream(request.sink), MediaType.APPLICATION_JSON_TYPE, null);
+        request.context.proceed();
+        request.context.getOutputStream().close();
+        return request.sink.count;
+    }
+
+    @Benchmark
+    public long interceptor(Request request) throws IOException {
+        request.context.reset(body, request.sink, MediaType.APPLICATION_JSON_TYPE, "lzf");
+        request.context.setAttribute(EndpointInterceptor.ATTRIBUTE, "InterceptorBenchmark.interceptor");
+        request.interceptor.write(request.context);
+        return request.sink.count;
+    }
+}
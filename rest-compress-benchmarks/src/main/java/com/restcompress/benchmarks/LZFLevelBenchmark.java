@@ -0,0 +1,90 @@
+package com.restcompress.benchmarks;
+
+import com.ning.compress.lzf.LZFDecoder;
+import com.ning.compress.lzf.LZFException;
+import com.restcompress.provider.LZF;
+import com.restcompress.provider.LZFStreamPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LZF encode speed and ratio at each {@link LZF.Level}, through the pooled streams the interceptors use,
+ *  and decode speed of the output with the standard Compress-LZF decoder
+ * <p/>Compressed sizes and ratios are printed once per setup, after checking the output decodes to the body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LZFLevelBenchmark {
+
+    /** As for CodecBenchmark, plus "random": incompressible bytes the size of the JSON body, where FAST skips ahead */
+    @Param({"json", "xml", "generated", "random"})
+    public String format;
+
+    /** About 100 kB and 1 MB of JSON */
+    @Param({"1000", "10000"})
+    public int entries;
+
+    @Param({"FAST", "DEFAULT", "HIGH"})
+    public LZF.Level level;
+
+    byte[] body;
+    byte[] compressed;
+
+    @State(Scope.Thread)
+    public static class Sink {
+        final Payloads.NullOutputStream out = new Payloads.NullOutputStream();
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        if ("random".equals(format)) {
+            body = new byte[Payloads.body("json", entries).length];
+            new Random(Payloads.SEED).nextBytes(body);
+        } else {
+            body = Payloads.body(format, entries);
+        }
+        ByteArrayOutputStream lzf = new ByteArrayOutputStream();
+        OutputStream out = LZFStreamPool.getOutputStream(lzf, level);
+        out.write(body);
+        out.close();
+        compressed = lzf.toByteArray();
+        if (!Arrays.equals(body, LZFDecoder.decode(compressed))) {
+            throw new IllegalStateException("LZF level " + level + " output does not decode to the body");
+        }
+        System.out.println("# LZF " + level + ", " + format + ", " + entries + " entries: " + body.length + " bytes to "
+                + compressed.length + String.format(" (ratio %.2f)", (double) body.length / compressed.length));
+    }
+
+    @Benchmark
+    public long encode(Sink sink) throws IOException {
+        OutputStream out = LZFStreamPool.getOutputStream(sink.out, level);
+        out.write(body);
+        out.close();
+        return sink.out.count;
+    }
+
+    @Benchmark
+    public byte[] decode() throws LZFException {
+        return LZFDecoder.decode(compressed);
+    }
+}
@@ -0,0 +1,89 @@
+package com.restcompress.benchmarks;
+
+import com.ning.compress.lzf.LZFEncoder;
+import com.restcompress.demoapp.model.FancyRestObject;
+import com.restcompress.demoapp.model.PackedFancyRestObject;
+import com.restcompress.provider.LZFStreamPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * FancyRestObject against PackedFancyRestObject (key names sent once): serialization time, serialization into LZF,
+ *  and raw LZF throughput on the serialized bodies
+ * <p/>Body sizes, uncompressed and compressed, are printed once per setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedBenchmark {
+
+    @Param({"json", "xml"})
+    public String format;
+
+    @Param({"fancy", "packed"})
+    public String layout;
+
+    @Param({"10", "1000", "10000"})
+    public int entries;
+
+    Object object;
+    byte[] body;
+
+    @State(Scope.Thread)
+    public static class Sink {
+        final Payloads.NullOutputStream out = new Payloads.NullOutputStream();
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        FancyRestObject fancy = Payloads.object(entries);
+        object = "packed".equals(layout) ? new PackedFancyRestObject(fancy) : fancy;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Payloads.write(format, object, out);
+        body = out.toByteArray();
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOut = new GZIPOutputStream(gzip);
+        gzipOut.write(body);
+        gzipOut.close();
+        System.out.println("# Body size, " + layout + " " + format + ", " + entries + " entries: " + body.length
+                + " bytes, LZF " + LZFEncoder.encode(body).length + ", GZIP " + gzip.size());
+    }
+
+    @Benchmark
+    public long serialize(Sink sink) throws IOException {
+        Payloads.write(format, object, sink.out);
+        return sink.out.count;
+    }
+
+    @Benchmark
+    public long serializeLzf(Sink sink) throws IOException {
+        OutputStream out = LZFStreamPool.getOutputStream(sink.out);
+        Payloads.write(format, object, out);
+        out.close();
+        return sink.out.count;
+    }
+
+    @Benchmark
+    public byte[] lzfEncode() {
+        return LZFEncoder.encode(body);
+    }
+}
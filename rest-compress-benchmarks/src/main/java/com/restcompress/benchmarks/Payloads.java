@@ -0,0 +1,127 @@
+package com.restcompress.benchmarks;
+
+import com.restcompress.demoapp.JsonStreamingOutput;
+import com.restcompress.demoapp.PayloadGenerator;
+import com.restcompress.demoapp.RestDemoApp;
+import com.restcompress.demoapp.model.FancyRestObject;
+import com.restcompress.demoapp.model.PackedFancyRestObject;
+import com.restcompress.demoapp.provider.PackedFancyRestObjectProvider;
+import com.restcompress.provider.SmileMapper;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST corpus for the benchmarks: generated FancyRestObjects, and their JSON, XML and Smile bodies, plus
+ *  mixed-type generated entries
+ * <p/>Objects use a fixed seed, so every run (and every fork) compresses the same bytes.
+ */
+final class Payloads {
+
+    static final long SEED = 42L;
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static JAXBContext jaxb;
+
+    private Payloads() {
+    }
+
+    static FancyRestObject object(int entries) {
+        return RestDemoApp.getRandomObject(entries, SEED);
+    }
+
+    /** Mixed-type entries from the {@link PayloadGenerator} with its default settings, closer to real REST data */
+    static List<Map<String, Object>> generated(int entries) {
+        return new PayloadGenerator(SEED).generate(entries);
+    }
+
+    /**
+     * Serialized body
+     * @param format "json" or "xml" for a FancyRestObject, or "generated" for JSON of {@link #generated(int)}
+     * @param entries Number of map entries in the FancyRestObject
+     */
+    static byte[] body(String format, int entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if ("generated".equals(format)) {
+            JsonStreamingOutput.MAPPER.writeValue(out, generated(entries));
+        } else {
+            write(format, object(entries), out);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Serialize a FancyRestObject (with Jackson or JAXB) or a PackedFancyRestObject (with its provider)
+     * @param format "json", "xml", or "smile" (FancyRestObject only)
+     * @param object Object to write
+     * @param out Stream to write to, left open
+     */
+    static void write(String format, Object object, OutputStream out) throws IOException {
+        boolean packed = object instanceof PackedFancyRestObject;
+        if ("json".equals(format)) {
+            if (packed) {
+                PackedFancyRestObjectProvider.writeJson((PackedFancyRestObject) object, out);
+            } else {
+                JsonStreamingOutput.MAPPER.writeValue(out, object); // Leaves the stream open
+            }
+        } else if ("xml".equals(format)) {
+            if (packed) {
+                PackedFancyRestObjectProvider.writeXml((PackedFancyRestObject) object, out);
+            } else {
+                try {
+                    jaxb().createMarshaller().marshal(object, out);
+                } catch (JAXBException je) {
+                    throw new IOException(je);
+                }
+            }
+        } else if ("smile".equals(format) && !packed) {
+            SmileMapper.get().writeValue(out, object);
+        } else {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    /**
+     * Parse a FancyRestObject, as a client would
+     * @param format "json" or "smile"
+     * @param in Body
+     */
+    static FancyRestObject read(String format, InputStream in) throws IOException {
+        if ("json".equals(format)) {
+            return JsonStreamingOutput.MAPPER.readValue(in, FancyRestObject.class);
+        } else if ("smile".equals(format)) {
+            return SmileMapper.get().readValue(in, FancyRestObject.class);
+        }
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+
+    private static synchronized JAXBContext jaxb() throws JAXBException {
+        if (jaxb == null) {
+            jaxb = JAXBContext.newInstance(FancyRestObject.class);
+        }
+        return jaxb;
+    }
+
+    /** Discards output, without allocating */
+    static final class NullOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
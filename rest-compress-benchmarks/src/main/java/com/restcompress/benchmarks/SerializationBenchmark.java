@@ -0,0 +1,68 @@
+package com.restcompress.benchmarks;
+
+import com.restcompress.demoapp.model.FancyRestObject;
+import com.restcompress.provider.LZFStreamPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * End to end body cost: Jackson serialization of a FancyRestObject, alone and streamed into LZF or GZIP
+ * <p/>Shows how much compression adds to what the server already spends producing a response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int entries;
+
+    FancyRestObject object;
+
+    @State(Scope.Thread)
+    public static class Sink {
+        final Payloads.NullOutputStream out = new Payloads.NullOutputStream();
+    }
+
+    @Setup
+    public void setup() {
+        object = Payloads.object(entries);
+    }
+
+    @Benchmark
+    public long json(Sink sink) throws IOException {
+        Payloads.MAPPER.writeValue(sink.out, object);
+        return sink.out.count;
+    }
+
+    @Benchmark
+    public long jsonLzf(Sink sink) throws IOException {
+        OutputStream out = LZFStreamPool.getOutputStream(sink.out);
+        Payloads.MAPPER.writeValue(out, object); // Jackson closes the stream, returning the encoder to the pool
+        return sink.out.count;
+    }
+
+    @Benchmark
+    public long jsonGzip(Sink sink) throws IOException {
+        OutputStream out = new GZIPOutputStream(sink.out);
+        Payloads.MAPPER.writeValue(out, object);
+        return sink.out.count;
+    }
+}
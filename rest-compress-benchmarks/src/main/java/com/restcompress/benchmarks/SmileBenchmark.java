@@ -0,0 +1,85 @@
+package com.restcompress.benchmarks;
+
+import com.ning.compress.lzf.LZFEncoder;
+import com.ning.compress.lzf.LZFInputStream;
+import com.restcompress.demoapp.model.FancyRestObject;
+import com.restcompress.provider.LZFStreamPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Smile against JSON, both with LZF: server cost (serialize into LZF) and client cost (parse, and decode LZF then parse)
+ * <p/>Body sizes, uncompressed and LZF, are printed once per setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmileBenchmark {
+
+    @Param({"json", "smile"})
+    public String format;
+
+    @Param({"10", "1000", "10000"})
+    public int entries;
+
+    FancyRestObject object;
+    byte[] body;
+    byte[] lzfBody;
+
+    @State(Scope.Thread)
+    public static class Sink {
+        final Payloads.NullOutputStream out = new Payloads.NullOutputStream();
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        object = Payloads.object(entries);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Payloads.write(format, object, out);
+        body = out.toByteArray();
+        lzfBody = LZFEncoder.encode(body);
+        System.out.println("# Body size, " + format + ", " + entries + " entries: " + body.length
+                + " bytes, LZF " + lzfBody.length);
+    }
+
+    @Benchmark
+    public long serializeLzf(Sink sink) throws IOException {
+        OutputStream out = LZFStreamPool.getOutputStream(sink.out);
+        Payloads.write(format, object, out);
+        out.close();
+        return sink.out.count;
+    }
+
+    @Benchmark
+    public FancyRestObject parse() throws IOException {
+        return Payloads.read(format, new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public FancyRestObject parseLzf() throws IOException {
+        LZFInputStream in = new LZFInputStream(new ByteArrayInputStream(lzfBody));
+        try {
+            return Payloads.read(format, in);
+        } finally {
+            in.close();
+        }
+    }
+}
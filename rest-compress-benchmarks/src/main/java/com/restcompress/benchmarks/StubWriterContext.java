@@ -0,0 +1,123 @@
+package com.restcompress.benchmarks;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MessageBodyWriterContext without a container: proceed() writes an already serialized body
+ * <p/>The body is written in 8 kB pieces, the way Jackson's buffer flushes it, so the interceptor sees
+ *  the same write pattern as in a server.
+ */
+class StubWriterContext implements MessageBodyWriterContext {
+
+    static final int WRITE_SIZE = 8000;
+
+    private final MultivaluedMap<String, Object> headers = new MultivaluedMapImpl<String, Object>();
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+    private byte[] body;
+    private OutputStream out;
+    private MediaType mediaType;
+    private Object entity;
+    private Class type;
+    private Type genericType;
+    private Annotation[] annotations = new Annotation[0];
+
+    /**
+     * Reset for the next request
+     * @param body Serialized body proceed() writes
+     * @param out Entity stream
+     * @param mediaType Body type
+     * @param encoding Content-Encoding, or null for none
+     */
+    void reset(byte[] body, OutputStream out, MediaType mediaType, String encoding) {
+        this.body = body;
+        this.out = out;
+        this.mediaType = mediaType;
+        headers.clear();
+        attributes.clear();
+        if (encoding != null) {
+            headers.putSingle("Content-Encoding", encoding);
+        }
+    }
+
+    public void proceed() throws IOException, WebApplicationException {
+        for (int off = 0; off < body.length; off += WRITE_SIZE) {
+            out.write(body, off, Math.min(WRITE_SIZE, body.length - off));
+        }
+        out.flush();
+    }
+
+    public Object getEntity() {
+        return entity;
+    }
+
+    public void setEntity(Object entity) {
+        this.entity = entity;
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public void setType(Class type) {
+        this.type = type;
+    }
+
+    public Type getGenericType() {
+        return genericType;
+    }
+
+    public void setGenericType(Type genericType) {
+        this.genericType = genericType;
+    }
+
+    public Annotation[] getAnnotations() {
+        return annotations;
+    }
+
+    public void setAnnotations(Annotation[] annotations) {
+        this.annotations = annotations;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public void setMediaType(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MultivaluedMap<String, Object> getHeaders() {
+        return headers;
+    }
+
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    public void setOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+}
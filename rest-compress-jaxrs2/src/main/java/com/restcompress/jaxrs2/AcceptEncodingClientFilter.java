@@ -0,0 +1,45 @@
+package com.restcompress.jaxrs2;
+
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.DictionaryRegistry;
+
+import javax.annotation.Priority;
+import javax.ws.rs.ConstrainedTo;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.RuntimeType;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+
+/**
+ * JAX-RS 2.0 client filter to advertise every encoding in the {@link CodecRegistry} with "Accept-Encoding"
+ * <p/>Encodings already listed on the request (including with q=0) are left as they are.  If shared dictionaries
+ *  are registered, also lists them in "Accept-Dictionary", see {@link DictionaryRegistry}.
+ */
+@ConstrainedTo(RuntimeType.CLIENT)
+@Priority(Priorities.HEADER_DECORATOR)
+public class AcceptEncodingClientFilter implements ClientRequestFilter {
+
+    public void filter(ClientRequestContext request) throws IOException {
+        String encoding = request.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        AcceptEncoding existing = AcceptEncoding.parse(encoding);
+        StringBuilder header = new StringBuilder(encoding == null ? "" : encoding);
+        for (String name : CodecRegistry.names()) {
+            if (!existing.isListed(name)) {
+                if (header.length() > 0) {
+                    header.append(", ");
+                }
+                header.append(name);
+            }
+        }
+        if (header.length() > 0) {
+            request.getHeaders().putSingle(HttpHeaders.ACCEPT_ENCODING, header.toString());
+        }
+        String dictionaries = DictionaryRegistry.acceptHeader();
+        if (dictionaries != null && request.getHeaderString(DictionaryRegistry.ACCEPT_DICTIONARY) == null) {
+            request.getHeaders().putSingle(DictionaryRegistry.ACCEPT_DICTIONARY, dictionaries);
+        }
+    }
+}
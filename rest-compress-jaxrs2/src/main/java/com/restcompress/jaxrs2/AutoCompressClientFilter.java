@@ -0,0 +1,54 @@
+package com.restcompress.jaxrs2;
+
+import com.restcompress.provider.CompressionConfig;
+import com.restcompress.provider.HostCapabilities;
+
+import javax.annotation.Priority;
+import javax.ws.rs.ConstrainedTo;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.RuntimeType;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * JAX-RS 2.0 client filter to compress request bodies to servers known to accept compressed bodies,
+ *  see {@link HostCapabilities}
+ * <p/>Like AutoCompressClientInterceptor, but filters can't send a request again: a 415 Unsupported Media Type
+ *  reply to a compressed body is returned to the caller, and later requests to that server are sent uncompressed
+ *  until {@link CompressionConfig#getClientCapabilityTtl()} passes.
+ * <p/>Not part of ClientCompressFeature: register it as well to use it.
+ */
+@ConstrainedTo(RuntimeType.CLIENT)
+@Priority(Priorities.HEADER_DECORATOR)
+public class AutoCompressClientFilter implements ClientRequestFilter, ClientResponseFilter {
+
+    public void filter(ClientRequestContext request) throws IOException {
+        Object entity = request.getEntity();
+        if (entity == null || entity instanceof InputStream || entity instanceof Reader
+                || request.getHeaderString(HttpHeaders.CONTENT_ENCODING) != null) {
+            return;
+        }
+        String encoding = HostCapabilities.getEncoding(HostCapabilities.key(request.getUri()));
+        if (encoding != null) {
+            request.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+    }
+
+    public void filter(ClientRequestContext request, ClientResponseContext response) throws IOException {
+        String host = HostCapabilities.key(request.getUri());
+        if (response.getStatus() == Response.Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode()
+                && request.getHeaderString(HttpHeaders.CONTENT_ENCODING) != null) {
+            HostCapabilities.rejected(host, response.getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+        } else {
+            HostCapabilities.learn(host, response.getHeaderString(HttpHeaders.CONTENT_ENCODING),
+                    response.getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+        }
+    }
+}
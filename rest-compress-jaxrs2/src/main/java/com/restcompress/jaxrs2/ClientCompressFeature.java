@@ -0,0 +1,19 @@
+package com.restcompress.jaxrs2;
+
+import javax.ws.rs.core.Feature;
+import javax.ws.rs.core.FeatureContext;
+
+/**
+ * Registers compression support on a JAX-RS 2.0 client: ClientBuilder.newClient().register(ClientCompressFeature.class)
+ * <p/>The client advertises every registered encoding, decodes compressed responses, and compresses request
+ *  bodies sent with a Content-Encoding header (ex: request().header("Content-Encoding", "lzf")).
+ */
+public class ClientCompressFeature implements Feature {
+
+    public boolean configure(FeatureContext context) {
+        context.register(AcceptEncodingClientFilter.class);
+        context.register(CompressWriterInterceptor.class);
+        context.register(DecompressReaderInterceptor.class);
+        return true;
+    }
+}
@@ -0,0 +1,47 @@
+package com.restcompress.jaxrs2;
+
+import com.restcompress.provider.Compress;
+import com.restcompress.provider.CompressionPolicy;
+import com.restcompress.provider.LZF;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.LZFCodec;
+
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.ext.Provider;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Enables compression on resource methods annotated with @Compress or @LZF, under any JAX-RS 2.0 runtime
+ * <p/>Registers a {@link CompressResponseFilter} for each such method, with the encodings available on this server.
+ *  Annotations work on the method or class, including on a shared JAX-RS interface, same as RESTEasy 2.
+ * <p/>Register this, the {@link CompressWriterInterceptor} and the {@link DecompressReaderInterceptor}
+ *  with the Application, or let the runtime find them by classpath scanning.
+ */
+@Provider
+public class CompressFeature implements DynamicFeature {
+
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        Class<?> declaring = resourceInfo.getResourceClass();
+        Method method = resourceInfo.getResourceMethod();
+        if (method == null) {
+            return;
+        }
+        List<String> encodings;
+        Compress compress = CompressionPolicy.findAnnotation(Compress.class, declaring, method);
+        if (compress != null) {
+            encodings = CodecRegistry.available(compress.value());
+        } else if (CompressionPolicy.findAnnotation(LZF.class, declaring, method) != null) {
+            encodings = Collections.singletonList(LZFCodec.NAME);
+        } else {
+            return;
+        }
+        if (!encodings.isEmpty()) {
+            String endpoint = (declaring != null ? declaring : method.getDeclaringClass()).getSimpleName() + "." + method.getName();
+            context.register(new CompressResponseFilter(encodings, endpoint));
+        }
+    }
+}
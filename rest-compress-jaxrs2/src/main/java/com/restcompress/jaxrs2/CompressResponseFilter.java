@@ -0,0 +1,79 @@
+package com.restcompress.jaxrs2;
+
+import com.restcompress.provider.CompressionConfig;
+import com.restcompress.provider.CompressionGovernor;
+import com.restcompress.provider.ServerTiming;
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.CompressionDictionary;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+import com.restcompress.provider.codec.DictionaryRegistry;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Server filter that negotiates the response Content-Encoding for one @Compress or @LZF resource method
+ * <p/>Also names the endpoint for the request, for per-endpoint ratio tracking and metrics.
+ * <p/>Registered per method by {@link CompressFeature}, the JAX-RS 2.0 equivalent of the RESTEasy 2
+ *  CompressHeaderInterceptor.  The {@link CompressWriterInterceptor} then compresses the body.
+ */
+@Priority(Priorities.HEADER_DECORATOR)
+public class CompressResponseFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    /** Request property naming the endpoint, for per-endpoint compression ratio tracking and metrics */
+    public static final String ENDPOINT_PROPERTY = CompressResponseFilter.class.getName() + ".endpoint";
+
+    /** Request property set when the request asks for a Server-Timing header, see {@link ServerTiming} */
+    public static final String TIMING_PROPERTY = CompressResponseFilter.class.getName() + ".timing";
+
+    private final List<String> encodings;
+    private final String endpoint;
+
+    /**
+     * @param encodings Encodings available for this method, in preference order
+     * @param endpoint Name of the endpoint ("SimpleClassName.method")
+     */
+    public CompressResponseFilter(List<String> encodings, String endpoint) {
+        this.encodings = encodings;
+        this.endpoint = endpoint;
+    }
+
+    /** Name the endpoint before the request body is read */
+    public void filter(ContainerRequestContext request) throws IOException {
+        request.setProperty(ENDPOINT_PROPERTY, endpoint);
+    }
+
+    /**
+     * Set Content-Encoding to the best encoding the client accepts, unless the resource already set one
+     */
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        request.setProperty(ENDPOINT_PROPERTY, endpoint);
+        if (ServerTiming.isRequested(request.getHeaders().get(CompressionConfig.getTimingHeader()))) {
+            request.setProperty(TIMING_PROPERTY, Boolean.TRUE);
+        }
+        if (!response.hasEntity() || response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING) != null) {
+            return;
+        }
+        AcceptEncoding accept = AcceptEncoding.parse(request.getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+        CompressionDictionary dictionary = DictionaryRegistry.select(request.getHeaders().get(DictionaryRegistry.ACCEPT_DICTIONARY));
+        String encoding = accept.negotiate(CompressionGovernor.order(DictionaryRegistry.usable(encodings, dictionary)));
+        if (encoding != null) {
+            response.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            if (DeflateDictionaryCodec.NAME.equals(encoding)) {
+                response.getHeaders().putSingle(DictionaryRegistry.CONTENT_DICTIONARY, dictionary.getId());
+            }
+        }
+        // Response depends on Accept-Encoding, so caches must not serve it to other clients
+        response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (encodings.contains(DeflateDictionaryCodec.NAME)) {
+            response.getHeaders().add(HttpHeaders.VARY, DictionaryRegistry.ACCEPT_DICTIONARY);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.restcompress.jaxrs2;
+
+import com.restcompress.provider.CompressionGovernor;
+import com.restcompress.provider.CompressionPolicy;
+import com.restcompress.provider.DeferredCompressionOutputStream;
+import com.restcompress.provider.FlushingLZFOutputStream;
+import com.restcompress.provider.LZF;
+import com.restcompress.provider.LZFStreamPool;
+import com.restcompress.provider.ParallelLZFOutputStream;
+import com.restcompress.provider.ServerTiming;
+import com.restcompress.provider.CompressionPolicy.EndpointRatio;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.CompressionCodec;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+import com.restcompress.provider.codec.DictionaryRegistry;
+import com.restcompress.provider.codec.LZFCodec;
+import com.restcompress.provider.metrics.CompressionMetrics;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.SkipReason;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.RuntimeType;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * JAX-RS 2.0 interceptor to compress message bodies if Content-Encoding is set to a registered codec (client and server)
+ * <p/>Content-Encoding is set by the {@link CompressResponseFilter} for @Compress and @LZF resource methods,
+ *  by the resource itself, or on client requests.  LZF uses the pooled (or parallel) LZF streams, and for
+ *  flushing responses (FlushingEntity, text/event-stream) each flush ends an LZF chunk.  The LZF encoder
+ *  effort is the level of the @LZF annotation, if there is one, or FAST while the governor is in FAST mode.
+ * <p/>The {@link CompressionPolicy} applies as for the RESTEasy 2 interceptors: excluded media types, endpoints
+ *  that don't compress well and bodies under the minimum size are sent uncompressed, without Content-Encoding.
+ *  Client request bodies are compressed from the first byte, and get no Content-Length from here.
+ * <p/>Writing happens on whichever thread writes the entity, so this works unchanged with AsyncResponse:
+ *  compression runs on the thread that calls resume(), not on the container thread that received the request.
+ *  For Servlet 3.1 non-blocking output, see {@link NonBlockingCompressedWriter}.
+ * <p/>Do not register another gzip encoder alongside this, or gzip bodies are compressed twice.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressWriterInterceptor implements WriterInterceptor {
+
+    /** Tells client from server, since ClientCompressFeature registers this on clients too */
+    @Context
+    private Configuration configuration;
+
+    /** Compresses with any registered codec; the same held-back, buffered output as the RESTEasy 2 interceptors */
+    private static class CommittedOutputStream extends DeferredCompressionOutputStream {
+        private final String encoding;
+        private final MultivaluedMap<String, Object> headers;
+        private final boolean flushing;
+        private final LZF.Level level;
+
+        /**
+         * @param flushing True if flushes should end LZF chunks, see {@link FlushingLZFOutputStream}
+         * @param level LZF encoder effort, see {@link LZF#level()}
+         */
+        CommittedOutputStream(OutputStream delegate, MultivaluedMap<String, Object> headers, String encoding, int minSize, int bufferLimit, boolean client, boolean flushing, LZF.Level level) {
+            super(delegate, headers, minSize, bufferLimit, client);
+            this.encoding = encoding;
+            this.headers = headers;
+            this.flushing = flushing;
+            this.level = level;
+        }
+
+        /** LZF uses the pooled (flushing, or parallel) streams, other codecs come from the registry */
+        @Override
+        protected OutputStream openCompressor(OutputStream out) throws IOException {
+            if (LZFCodec.NAME.equals(encoding)) {
+                if (flushing) {
+                    return LZFStreamPool.getFlushingOutputStream(out, level);
+                }
+                return CompressionGovernor.isParallelAllowed() ? new ParallelLZFOutputStream(out, level) : LZFStreamPool.getOutputStream(out, level);
+            }
+            CompressionCodec codec = CodecRegistry.get(encoding);
+            if (codec == null) {
+                throw new IOException("No codec registered for encoding: " + encoding);
+            }
+            return DeflateDictionaryCodec.bind(codec, headers.getFirst(DictionaryRegistry.CONTENT_DICTIONARY)).compress(out);
+        }
+    }
+
+    /**
+     * Wrap the entity stream in a compressing stream if Content-Encoding names a registered codec
+     * <p/>Note: strips out the Content-Length header, because compression changes it unpredictably
+     * @param context Writer context
+     * @throws IOException
+     * @throws WebApplicationException
+     */
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Object header = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        String encoding = header == null ? null : header.toString().trim().toLowerCase(Locale.ENGLISH);
+        if (encoding == null || !CodecRegistry.isAvailable(encoding)) {
+            context.proceed();
+            return;
+        }
+
+        Object property = context.getProperty(CompressResponseFilter.ENDPOINT_PROPERTY);
+        String endpoint = property == null ? null : property.toString();
+        EndpointRatio ratio = CompressionPolicy.forEndpoint(endpoint);
+        EndpointMetrics metrics = CompressionMetrics.forEndpoint(endpoint, encoding);
+        int minSize = CompressionGovernor.getMinSize(encoding);
+        SkipReason skip = CompressionPolicy.checkSkip(context.getMediaType(), context.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH), ratio, minSize);
+        if (skip != null) {
+            if (metrics != null) metrics.recordSkip(skip);
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            context.getHeaders().remove(DictionaryRegistry.CONTENT_DICTIONARY);
+            context.proceed();
+            return;
+        }
+
+        // Client connectors may send the headers before the body (HttpClient streams it chunked), so request bodies
+        //  compress from the first byte, keeping the Content-Encoding, and get no Content-Length: the connector sets it
+        boolean client = configuration != null && configuration.getRuntimeType() == RuntimeType.CLIENT;
+        // Flushing responses can't hold anything back, or the first flushes would not reach the client
+        boolean flushing = !client && CompressionPolicy.isFlushing(context.getEntity(), context.getMediaType());
+        int bufferLimit = client || flushing ? 0 : CompressionPolicy.getBufferLimit(context.getEntity());
+        boolean timing = !client && context.getProperty(CompressResponseFilter.TIMING_PROPERTY) != null;
+        if (timing) {
+            bufferLimit = ServerTiming.getBufferLimit(bufferLimit);
+        }
+        OutputStream old = context.getOutputStream();
+        CommittedOutputStream compressed = new CommittedOutputStream(old, context.getHeaders(), encoding,
+                client || flushing ? 0 : minSize, bufferLimit, client, flushing,
+                CompressionGovernor.getLevel(LZFStreamPool.levelOf(context.getAnnotations())));
+        if (timing) {
+            compressed.startTiming(encoding);
+        }
+
+        // Any content length set will be obsolete
+        context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+
+        context.setOutputStream(compressed);
+        try {
+            context.proceed();
+            if (compressed.finish() && ratio != null && ratio.shouldSample()) {
+                ratio.record(compressed.getUncompressedBytes(), compressed.getCompressedBytes());
+            }
+            compressed.recordMetrics(metrics);
+        } finally {
+            compressed.release();
+            context.setOutputStream(old);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.restcompress.jaxrs2;
+
+import com.restcompress.provider.BoundedInputStream;
+import com.restcompress.provider.CompressionConfig;
+import com.restcompress.provider.LZFStreamPool;
+import com.restcompress.provider.ParallelLZFInputStream;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.LZFCodec;
+import com.restcompress.provider.metrics.CompressionMetrics;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.MeteredInputStream;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.RuntimeType;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Locale;
+
+/**
+ * JAX-RS 2.0 interceptor to decompress message bodies in any registered encoding, before deserialization
+ * <p/>Works on both server (POST/PUT request bodies) and client (response bodies).
+ *  LZF uses the pooled stream, or the {@link ParallelLZFInputStream} if parallel mode is enabled.
+ * <p/>Content-Encoding is removed once the body is wrapped, so no other decoder handles it again.
+ * <p/>Decoding is limited by {@link BoundedInputStream}, with the client limits on clients: a body passing a limit
+ *  gets 413 Request Entity Too Large.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class DecompressReaderInterceptor implements ReaderInterceptor {
+
+    /** Tells client from server, since ClientCompressFeature registers this on clients too */
+    @Context
+    private Configuration configuration;
+
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException {
+        String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        encoding = encoding == null ? null : encoding.trim().toLowerCase(Locale.ENGLISH);
+        if (encoding == null || !CodecRegistry.isAvailable(encoding)) {
+            return context.proceed();
+        }
+
+        InputStream old = context.getInputStream();
+        Object endpoint = context.getProperty(CompressResponseFilter.ENDPOINT_PROPERTY);
+        EndpointMetrics metrics = CompressionMetrics.forEndpoint(endpoint == null ? null : endpoint.toString(), encoding);
+        MeteredInputStream.Raw raw = metrics == null ? null : MeteredInputStream.raw(old);
+        InputStream in = raw != null ? raw : old;
+        boolean client = configuration != null && configuration.getRuntimeType() == RuntimeType.CLIENT;
+        BoundedInputStream.Source source = BoundedInputStream.isEnabled(client) ? BoundedInputStream.source(in) : null;
+        if (source != null) in = source;
+        InputStream is;
+        if (LZFCodec.NAME.equals(encoding)) {
+            is = CompressionConfig.isParallelEnabled() ? new ParallelLZFInputStream(in) : LZFStreamPool.getInputStream(in);
+        } else {
+            is = CodecRegistry.get(encoding).decompress(in);
+        }
+        BoundedInputStream bounded = source != null ? new BoundedInputStream(is, source, client) : null;
+        InputStream decoded = bounded != null ? bounded : is;
+        MeteredInputStream metered = raw != null ? new MeteredInputStream(decoded, raw, metrics) : null;
+        context.setInputStream(metered != null ? metered : decoded);
+        context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+
+        // InputStream/Reader entities are read after this returns; their buffers are returned when the application closes them
+        boolean streamed = InputStream.class.isAssignableFrom(context.getType())
+                || Reader.class.isAssignableFrom(context.getType());
+        try {
+            return context.proceed();
+        } catch (Exception e) { // Readers may wrap the limit's exception in their own
+            if (bounded != null && bounded.isExceeded()) {
+                throw bounded.tooLarge(); // Clients get it as a WebApplicationException too, JAX-RS 2.0 can't tell them apart here
+            }
+            throw e;
+        } finally {
+            if (!streamed) {
+                is.close(); // Readers may stop before the end of the body, which would keep pooled decoders
+                if (metered != null) metered.finish();
+            }
+            context.setInputStream(old);
+        }
+    }
+}
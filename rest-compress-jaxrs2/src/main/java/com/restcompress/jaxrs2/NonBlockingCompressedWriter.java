@@ -0,0 +1,155 @@
+package com.restcompress.jaxrs2;
+
+import com.restcompress.provider.CompressionGovernor;
+import com.restcompress.provider.LZFStreamPool;
+import com.restcompress.provider.PooledLZFOutputStream;
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.LZFCodec;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Servlet 3.1 non-blocking writer that LZF-compresses a body one 64 kB chunk at a time, as the client can take it
+ * <p/>A blocking entity write holds a container thread until the last byte reaches a slow client.  This instead
+ *  compresses a chunk only when {@link ServletOutputStream#isReady()}, and returns the thread to the container
+ *  whenever the socket buffer is full; the container calls back when it drains.
+ * <p/>Use from a servlet, or from a JAX-RS resource with @Context HttpServletRequest/HttpServletResponse
+ *  (async-supported must be enabled):
+ * <pre>
+ *     NonBlockingCompressedWriter.start(request, response, new ByteArrayInputStream(json));
+ * </pre>
+ * The source is read on container threads, so it should not block (ex: serialized bytes in memory).
+ *  Bodies are sent uncompressed if the client does not accept LZF, or the CompressionGovernor is shedding load.
+ */
+public class NonBlockingCompressedWriter implements WriteListener {
+
+    /** Exposes the compressed chunk without copying it */
+    private static class ChunkBuffer extends ByteArrayOutputStream {
+        ChunkBuffer() {
+            super(LZFStreamPool.CHUNK_SIZE + 16);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final InputStream source;
+    private final byte[] chunk = new byte[LZFStreamPool.CHUNK_SIZE];
+    private final ChunkBuffer encoded;
+    private PooledLZFOutputStream compressor;
+    private boolean done = false;
+
+    /**
+     * @param async Async context of the request
+     * @param out Response output stream, in non-blocking mode once this is set as its listener
+     * @param source Body to send
+     * @param compress True to LZF-compress the body
+     */
+    protected NonBlockingCompressedWriter(AsyncContext async, ServletOutputStream out, InputStream source, boolean compress) {
+        this.async = async;
+        this.out = out;
+        this.source = source;
+        if (compress) {
+            encoded = new ChunkBuffer();
+            compressor = LZFStreamPool.getOutputStream(encoded);
+        } else {
+            encoded = null;
+        }
+    }
+
+    /**
+     * Start the request in async mode, set headers, and send the body without blocking
+     * @param request Servlet request
+     * @param response Servlet response, headers not yet committed
+     * @param source Body to send, closed when done
+     * @return The listener writing the body
+     */
+    public static NonBlockingCompressedWriter start(HttpServletRequest request, HttpServletResponse response,
+                                                   InputStream source) throws IOException {
+        boolean compress = AcceptEncoding.parse(request.getHeader("Accept-Encoding")).accepts(LZFCodec.NAME)
+                && CompressionGovernor.getMode() != CompressionGovernor.Mode.IDENTITY;
+        if (compress) {
+            response.setHeader("Content-Encoding", LZFCodec.NAME);
+        }
+        response.addHeader("Vary", "Accept-Encoding");
+        AsyncContext async = request.isAsyncStarted() ? request.getAsyncContext() : request.startAsync();
+        ServletOutputStream out = response.getOutputStream();
+        NonBlockingCompressedWriter writer = new NonBlockingCompressedWriter(async, out, source, compress);
+        out.setWriteListener(writer); // Container calls onWritePossible() once ready
+        return writer;
+    }
+
+    /** Send chunks while the container can take them, then give the thread back */
+    public void onWritePossible() throws IOException {
+        while (!done && out.isReady()) {
+            int count = readChunk();
+            if (count < 0) {
+                finish();
+                return;
+            }
+            if (compressor == null) {
+                out.write(chunk, 0, count);
+            } else {
+                encoded.reset();
+                compressor.write(chunk, 0, count);
+                compressor.flush(); // ends the LZF chunk
+                out.write(encoded.buffer(), 0, encoded.size());
+            }
+        }
+    }
+
+    /** Fill the chunk from the source, so every LZF chunk is full size */
+    private int readChunk() throws IOException {
+        int total = 0;
+        while (total < chunk.length) {
+            int count = source.read(chunk, total, chunk.length - total);
+            if (count < 0) {
+                return total == 0 ? -1 : total;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private void finish() throws IOException {
+        done = true;
+        try {
+            release();
+        } finally {
+            async.complete();
+        }
+    }
+
+    public void onError(Throwable t) {
+        done = true;
+        try {
+            release();
+        } catch (IOException ioe) {
+            // Already failing, the original error is what matters
+        } finally {
+            async.complete();
+        }
+    }
+
+    /** Return the compressor's buffers to the pool, and close the source */
+    private void release() throws IOException {
+        try {
+            if (compressor != null) {
+                compressor.close();
+                compressor = null;
+            }
+        } finally {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.DictionaryRegistry;
+import org.jboss.resteasy.annotations.interception.ClientInterceptor;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.spi.interception.ClientExecutionContext;
+import org.jboss.resteasy.spi.interception.ClientExecutionInterceptor;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Client interceptor to advertise every encoding in the {@link CodecRegistry} with the HTTP header "Accept-Encoding"
+ * <p/>Like AcceptLZFClientInterceptor, but lets servers using @Compress pick any codec this client can decode
+ *  (ex: LZ4 if lz4-java is on the classpath).
+ * <p/>If shared dictionaries are registered, also lists them in "Accept-Dictionary", see {@link DictionaryRegistry}.
+ */
+@Provider
+@ClientInterceptor
+@HeaderDecoratorPrecedence
+public class AcceptEncodingClientInterceptor implements ClientExecutionInterceptor {
+
+    /**
+     * Append any registered encodings missing from the Accept-Encoding header
+     * @param ctx Client execution context
+     * @return Response with headers appended
+     * @throws Exception
+     */
+    public ClientResponse execute(ClientExecutionContext ctx) throws Exception {
+        String encoding = ctx.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+        AcceptEncoding existing = AcceptEncoding.parse(encoding);
+        StringBuilder header = new StringBuilder(encoding == null ? "" : encoding);
+        for (String name : CodecRegistry.names()) {
+            if (!existing.isListed(name)) {
+                if (header.length() > 0) {
+                    header.append(", ");
+                }
+                header.append(name);
+            }
+        }
+        if (header.length() > 0) {
+            ctx.getRequest().header(HttpHeaders.ACCEPT_ENCODING, header.toString());
+        }
+        String dictionaries = DictionaryRegistry.acceptHeader();
+        if (dictionaries != null && ctx.getRequest().getHeaders().getFirst(DictionaryRegistry.ACCEPT_DICTIONARY) == null) {
+            ctx.getRequest().header(DictionaryRegistry.ACCEPT_DICTIONARY, dictionaries);
+        }
+        return ctx.proceed();
+    }
+}
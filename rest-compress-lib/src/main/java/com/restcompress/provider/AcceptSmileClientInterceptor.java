@@ -0,0 +1,46 @@
+package com.restcompress.provider;
+
+import org.jboss.resteasy.annotations.interception.ClientInterceptor;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.spi.interception.ClientExecutionContext;
+import org.jboss.resteasy.spi.interception.ClientExecutionInterceptor;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+import java.util.List;
+
+/**
+ * Client interceptor to ask for Smile instead of JSON, see {@link SmileProvider}
+ * <p/>Requests that accept JSON get "application/x-jackson-smile" put first in their Accept header, so methods that
+ *  produce Smile answer with it, and the rest still answer with JSON.  With proxy clients, the Accept header comes
+ *  from the shared interface's @Produces, so no client code changes.
+ * <p/>Does nothing if jackson-smile is not on the classpath, since the client could not read the response.
+ */
+@Provider
+@ClientInterceptor
+@HeaderDecoratorPrecedence
+public class AcceptSmileClientInterceptor implements ClientExecutionInterceptor {
+
+    public ClientResponse execute(ClientExecutionContext ctx) throws Exception {
+        ClientRequest request = ctx.getRequest();
+        List<Object> accept = request.getHeadersAsObjects().get(HttpHeaders.ACCEPT);
+        if (SmileProvider.isAvailable() && accept != null && acceptsJson(accept)) {
+            accept.remove(SmileProvider.APPLICATION_SMILE);
+            accept.remove(SmileProvider.APPLICATION_SMILE_TYPE);
+            accept.add(0, SmileProvider.APPLICATION_SMILE);
+        }
+        return ctx.proceed();
+    }
+
+    private static boolean acceptsJson(List<Object> accept) {
+        for (Object value : accept) {
+            if (value.toString().contains(MediaType.APPLICATION_JSON)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+package com.restcompress.provider;
+
+import org.jboss.resteasy.annotations.interception.ClientInterceptor;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.spi.interception.ClientExecutionContext;
+import org.jboss.resteasy.spi.interception.ClientExecutionInterceptor;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+
+/**
+ * Client interceptor to compress POST/PUT bodies to servers known to accept compressed bodies, see {@link HostCapabilities}
+ * <p/>Learns what each server accepts from its responses.  Bodies smaller than {@link CompressionConfig#getMinSize()}
+ *  are sent uncompressed, by the encoding interceptors.  If the server replies 415 Unsupported Media Type to
+ *  a compressed body, the request is sent again uncompressed, and the server is not sent compressed bodies again
+ *  until {@link CompressionConfig#getClientCapabilityTtl()} passes.
+ * <p/>Register with clients, like AcceptEncodingClientInterceptor.  Bodies given as an InputStream or Reader
+ *  are never compressed, since they can't be sent again.
+ */
+@Provider
+@ClientInterceptor
+@HeaderDecoratorPrecedence
+public class AutoCompressClientInterceptor implements ClientExecutionInterceptor {
+
+    public ClientResponse execute(ClientExecutionContext ctx) throws Exception {
+        ClientRequest request = ctx.getRequest();
+        String host = HostCapabilities.key(new URI(request.getUri()));
+        Object body = request.getBody();
+        boolean compressing = false;
+        if (body != null && !(body instanceof InputStream) && !(body instanceof Reader)
+                && request.getHeadersAsObjects().getFirst(HttpHeaders.CONTENT_ENCODING) == null) {
+            String encoding = HostCapabilities.getEncoding(host);
+            if (encoding != null) {
+                request.getHeadersAsObjects().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+                compressing = true;
+            }
+        }
+
+        ClientResponse<?> response = ctx.proceed();
+        // Small bodies are sent uncompressed, and the encoding interceptors remove the header
+        compressing = compressing && request.getHeadersAsObjects().getFirst(HttpHeaders.CONTENT_ENCODING) != null;
+        if (compressing && response.getStatus() == Response.Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode()) {
+            HostCapabilities.rejected(host, response.getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+            response.releaseConnection();
+            request.getHeadersAsObjects().remove(HttpHeaders.CONTENT_ENCODING);
+            return ctx.proceed(); // Interceptors have all run: sends the request again as it is now
+        }
+        HostCapabilities.learn(host, response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING),
+                response.getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+        return response;
+    }
+}
@@ -0,0 +1,313 @@
+package com.restcompress.provider;
+
+import org.jboss.resteasy.client.ClientExecutor;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.client.ProxyFactory;
+import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.ext.MessageBodyReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Client for {@link BatchResource}: collects calls made on interface proxies, then sends them all in one request
+ * <p/>Use like ProxyFactory:
+ * <pre>
+ * BatchClient batch = new BatchClient("http://localhost:8080/rest");
+ * DemoInterface proxy = batch.proxy(DemoInterface.class);
+ * proxy.getObject();           // Recorded, returns null
+ * proxy.getComplexObject();
+ * List&lt;BatchClient.Result&gt; results = batch.execute();   // One round trip, one LZF-compressed response
+ * KeyValue kv = (KeyValue)results.get(0).getEntity();
+ * </pre>
+ * <p/>Calls are marshalled as usual, by the provider factory's writers and client interceptors, so bodies and headers
+ *  are the same as they would be sent one by one.  The server has to register a BatchResource at /batch.
+ * <p/>Not thread safe: use one BatchClient per batch.
+ */
+public class BatchClient {
+
+    private final String baseUrl;
+    private final ClientExecutor executor;
+    private final ResteasyProviderFactory factory;
+    private final List<Call> calls = new ArrayList<Call>();
+
+    /** Factory for the batch request itself, so its LZF response is decoded whatever the application registers */
+    private static class Holder {
+        static final ResteasyProviderFactory BATCH_FACTORY = create();
+    }
+
+    private static ResteasyProviderFactory create() {
+        ResteasyProviderFactory factory = new ResteasyProviderFactory();
+        RegisterBuiltin.register(factory);
+        factory.registerProvider(LZFDecodingInterceptor.class);
+        return factory;
+    }
+
+    /** Thrown by the capturing executor, to stop a proxy call once its request is built */
+    private static final class Captured extends RuntimeException {
+        final ClientRequest request;
+
+        Captured(ClientRequest request) {
+            super(null, null, false, false);
+            this.request = request;
+        }
+    }
+
+    /** Executor for proxies, that records requests instead of sending them */
+    private final ClientExecutor capturing = new ClientExecutor() {
+        public ClientRequest createRequest(String uriTemplate) {
+            return new ClientRequest(uriTemplate, this);
+        }
+
+        public ClientRequest createRequest(UriBuilder uriBuilder) {
+            return new ClientRequest(uriBuilder, this);
+        }
+
+        public ClientResponse execute(ClientRequest request) throws Exception {
+            throw new Captured(request);
+        }
+
+        public void close() throws Exception {
+        }
+    };
+
+    /** One recorded call */
+    private static final class Call {
+        final Method method;
+        final ClientRequest request;
+
+        Call(Method method, ClientRequest request) {
+            this.method = method;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Result of one call in the batch
+     */
+    public static final class Result {
+        private final Method method;
+        private final int status;
+        private final MultivaluedMap<String, String> headers;
+        private final byte[] body;
+        private final ResteasyProviderFactory factory;
+
+        Result(Method method, int status, MultivaluedMap<String, String> headers, byte[] body,
+               ResteasyProviderFactory factory) {
+            this.method = method;
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.factory = factory;
+        }
+
+        /** @return Interface method that was called */
+        public Method getMethod() {
+            return method;
+        }
+
+        /** @return HTTP status of the call */
+        public int getStatus() {
+            return status;
+        }
+
+        /** @return Response headers of the call */
+        public MultivaluedMap<String, String> getHeaders() {
+            return headers;
+        }
+
+        /** @return Response body of the call, uncompressed */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Read the body as the method's return type, as the proxy would have
+         * @return Entity, or null if the method is void, or the call failed or had no content
+         * @throws IOException If the body can't be read
+         * @throws IllegalStateException If no provider can read the body
+         */
+        @SuppressWarnings("unchecked")
+        public Object getEntity() throws IOException {
+            Class type = method.getReturnType();
+            if (type == void.class || status >= 400 || status == 204) {
+                return null;
+            }
+            String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+            MediaType mediaType = contentType != null ? MediaType.valueOf(contentType) : MediaType.WILDCARD_TYPE;
+            MessageBodyReader reader = factory.getMessageBodyReader(type, method.getGenericReturnType(),
+                    method.getAnnotations(), mediaType);
+            if (reader == null) {
+                throw new IllegalStateException("No reader for " + type.getName() + " as " + mediaType);
+            }
+            return reader.readFrom(type, method.getGenericReturnType(), method.getAnnotations(), mediaType,
+                    headers, new ByteArrayInputStream(body));
+        }
+    }
+
+    /**
+     * @param baseUrl Application root, as given to ProxyFactory
+     */
+    public BatchClient(String baseUrl) {
+        this(baseUrl, ClientRequest.getDefaultExecutor(), ResteasyProviderFactory.getInstance());
+    }
+
+    /**
+     * @param baseUrl Application root, as given to ProxyFactory
+     * @param executor Executor to send the batch with
+     * @param factory Providers and client interceptors to marshal calls and read results with
+     */
+    public BatchClient(String baseUrl, ClientExecutor executor, ResteasyProviderFactory factory) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.executor = executor;
+        this.factory = factory;
+    }
+
+    /**
+     * Create a proxy whose calls are recorded for the next {@link #execute()}, instead of sent
+     * <p/>Recorded calls return null, or 0/false for primitives.
+     * @param iface JAX-RS annotated interface
+     * @return Proxy
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T proxy(Class<T> iface) {
+        final T real = ProxyFactory.create(iface, URI.create(baseUrl), capturing, factory);
+        return (T) Proxy.newProxyInstance(iface.getClassLoader(), new Class[]{iface}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(this, args);
+                }
+                try {
+                    method.invoke(real, args);
+                } catch (InvocationTargetException ite) {
+                    Captured captured = findCaptured(ite.getCause());
+                    if (captured == null) {
+                        throw ite.getCause();
+                    }
+                    calls.add(new Call(method, captured.request));
+                    return defaultValue(method.getReturnType());
+                }
+                throw new IllegalStateException("Call to " + method.getName() + " was not recorded");
+            }
+        });
+    }
+
+    /** @return Number of calls recorded so far */
+    public int size() {
+        return calls.size();
+    }
+
+    /**
+     * Send the recorded calls in one request, and clear them
+     * @return Results, in the order the calls were made
+     * @throws IOException If the batch fails as a whole
+     * @throws Exception From the executor
+     */
+    public List<Result> execute() throws Exception {
+        if (calls.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Call> sending = new ArrayList<Call>(calls);
+        calls.clear();
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Call call : sending) {
+            ClientRequest request = call.request;
+            String uri = request.getUri();
+            if (!uri.startsWith(baseUrl)) {
+                throw new IllegalStateException("Call to " + uri + " is not under " + baseUrl);
+            }
+            String target = uri.substring(baseUrl.length());
+            MultivaluedMap<String, Object> headers = new MultivaluedMapImpl<String, Object>();
+            headers.putAll(request.getHeadersAsObjects());
+            byte[] body = null;
+            if (request.getBody() != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                headers.putSingle(HttpHeaders.CONTENT_TYPE, request.getBodyContentType());
+                request.writeRequestBody(headers, out);
+                body = out.toByteArray();
+            }
+            BatchFormat.write(batch, request.getHttpMethod() + " " + (target.startsWith("/") ? target : "/" + target)
+                    + " HTTP/1.1", headers, body);
+        }
+
+        ClientRequest request = new ClientRequest(UriBuilder.fromUri(baseUrl + "/batch"), executor, Holder.BATCH_FACTORY);
+        request.header(HttpHeaders.ACCEPT_ENCODING, "lzf");
+        request.accept(BatchResource.MEDIA_TYPE);
+        request.body(BatchResource.MEDIA_TYPE, batch.toByteArray());
+        ClientResponse<byte[]> response = request.post(byte[].class);
+        if (response.getStatus() != 200) {
+            response.releaseConnection();
+            throw new IOException("Batch failed with status " + response.getStatus());
+        }
+
+        InputStream in = new ByteArrayInputStream(response.getEntity());
+        List<Result> results = new ArrayList<Result>(sending.size());
+        for (Call call : sending) {
+            BatchFormat.Part part = BatchFormat.read(in);
+            if (part == null) {
+                throw new IOException("Batch response has " + results.size() + " results for " + sending.size() + " calls");
+            }
+            String[] line = part.startLine.split(" ", 3);
+            int status;
+            try {
+                status = Integer.parseInt(line.length > 1 ? line[1] : "");
+            } catch (NumberFormatException nfe) {
+                throw new IOException("Malformed batch status line: " + part.startLine);
+            }
+            MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+            for (String[] header : part.headers) {
+                headers.add(header[0], header[1]);
+            }
+            results.add(new Result(call.method, status, headers, part.body, factory));
+        }
+        return results;
+    }
+
+    private static Captured findCaptured(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof Captured) {
+                return (Captured) t;
+            }
+        }
+        return null;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == short.class) {
+            return (short) 0;
+        }
+        return (byte) 0;
+    }
+}
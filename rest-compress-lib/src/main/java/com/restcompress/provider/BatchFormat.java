@@ -0,0 +1,155 @@
+package com.restcompress.provider;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Framing for batch bodies ({@link BatchResource#MEDIA_TYPE}): HTTP/1.1 messages back to back
+ * <p/>Each part is a start line ("GET /path HTTP/1.1", or "HTTP/1.1 200 OK"), header lines, a blank line, then exactly
+ *  Content-Length bytes of body, which is always present, even if 0.  Bodies can hold anything, so no boundary
+ *  scanning is needed, and the text around them is the same from part to part, which compresses well.
+ */
+final class BatchFormat {
+
+    static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+    private static final int MAX_LINE = 16 * 1024;
+
+    /** Largest part body an array can hold */
+    private static final int MAX_BODY = Integer.MAX_VALUE - 8;
+
+    private static final int CHUNK = 8 * 1024;
+
+    /** One parsed part */
+    static final class Part {
+        final String startLine;
+        final List<String[]> headers;
+        final byte[] body;
+
+        Part(String startLine, List<String[]> headers, byte[] body) {
+            this.startLine = startLine;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    private BatchFormat() {
+    }
+
+    /**
+     * Write one part
+     * @param out Stream to write to
+     * @param startLine Request or status line
+     * @param headers Headers; Content-Length is ignored, and written from the body
+     * @param body Body, may be null
+     */
+    static void write(OutputStream out, String startLine, MultivaluedMap<String, ?> headers, byte[] body) throws IOException {
+        StringBuilder head = new StringBuilder(256);
+        head.append(startLine).append("\r\n");
+        if (headers != null) {
+            for (Map.Entry<String, ? extends List<?>> header : headers.entrySet()) {
+                if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                    continue;
+                }
+                for (Object value : header.getValue()) {
+                    head.append(header.getKey()).append(": ").append(value).append("\r\n");
+                }
+            }
+        }
+        int length = body == null ? 0 : body.length;
+        head.append(HttpHeaders.CONTENT_LENGTH).append(": ").append(length).append("\r\n\r\n");
+        out.write(head.toString().getBytes(ASCII));
+        if (length > 0) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Read one part
+     * @param in Batch body
+     * @return Part, or null at the end of the body
+     * @throws IOException If the body is malformed or truncated, or a part's Content-Length is negative or over
+     *  {@link CompressionConfig#getDecodeMaxBytes()}
+     */
+    static Part read(InputStream in) throws IOException {
+        String startLine = readLine(in);
+        while (startLine != null && startLine.isEmpty()) { // Tolerate blank lines between parts
+            startLine = readLine(in);
+        }
+        if (startLine == null) {
+            return null;
+        }
+        List<String[]> headers = new ArrayList<String[]>();
+        int length = 0;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IOException("Malformed batch header: " + line);
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                long declared;
+                try {
+                    declared = Long.parseLong(value);
+                } catch (NumberFormatException nfe) {
+                    throw new IOException("Malformed batch Content-Length: " + value);
+                }
+                long max = CompressionConfig.getDecodeMaxBytes() > 0 ? Math.min(CompressionConfig.getDecodeMaxBytes(), MAX_BODY) : MAX_BODY;
+                if (declared < 0 || declared > max) {
+                    throw new IOException("Batch Content-Length out of range: " + value);
+                }
+                length = (int) declared;
+            } else {
+                headers.add(new String[]{name, value});
+            }
+        }
+        if (line == null) {
+            throw new EOFException("Batch part ends in its headers");
+        }
+        // The length is untrusted, so the buffer grows with the bytes that actually arrive
+        ByteArrayOutputStream body = new ByteArrayOutputStream(Math.min(length, CHUNK));
+        byte[] chunk = new byte[Math.min(length, CHUNK)];
+        int left = length;
+        while (left > 0) {
+            int count = in.read(chunk, 0, Math.min(left, chunk.length));
+            if (count < 0) {
+                throw new EOFException("Batch part body is truncated");
+            }
+            body.write(chunk, 0, count);
+            left -= count;
+        }
+        return new Part(startLine, headers, body.toByteArray());
+    }
+
+    /** Read a CRLF (or LF) terminated line, or null at the end of the stream */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                if (line.size() >= MAX_LINE) {
+                    throw new IOException("Batch line too long");
+                }
+                line.write(b);
+            }
+        }
+        if (b < 0 && line.size() == 0) {
+            return null;
+        }
+        return new String(line.toByteArray(), ASCII);
+    }
+}
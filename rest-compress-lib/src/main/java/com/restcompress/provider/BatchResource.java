@@ -0,0 +1,208 @@
+package com.restcompress.provider;
+
+import org.jboss.resteasy.core.Dispatcher;
+import org.jboss.resteasy.mock.MockHttpRequest;
+import org.jboss.resteasy.mock.MockHttpResponse;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many REST calls sent in one request, and returns all their responses in one LZF-compressed body
+ * <p/>Small responses compressed one by one gain almost nothing, since each starts from an empty LZF window; in one
+ *  body, the JSON structure repeated across responses compresses together, and the client saves a round trip per
+ *  call.  Clients build batches with {@link BatchClient}; the body format is described in {@link BatchFormat}.
+ * <p/>Batches are opt-in: scanned jars would otherwise expose every resource in the application through a new
+ *  endpoint.  Subclass this with a class-level {@code @Path("/batch")} ({@link BatchClient} posts there) and
+ *  register the subclass, to enable them.  Each call goes through the normal
+ *  RESTEasy dispatcher (interceptors, exception mappers, content negotiation), on a worker thread, as if it were
+ *  its own request; calls run in order, or at the same time if {@link CompressionConfig#isBatchParallel()}.
+ *  Calls don't pass through servlet filters, so don't expose resources this way that rely on them for security.
+ * <p/>Calls ask for identity responses, since the batch response is compressed as a whole.  Batches of more than
+ *  {@link CompressionConfig#getBatchMaxParts()} calls get 413 Request Entity Too Large, and malformed batches
+ *  (including a call body declared larger than {@link CompressionConfig#getDecodeMaxBytes()}) get 400 Bad Request.
+ */
+public class BatchResource {
+
+    /** Media type of batch requests and responses */
+    public static final String MEDIA_TYPE = "application/x-restcompress-batch";
+
+    /** Lazily created, so applications not using batches never start threads */
+    private static class Holder {
+        static final ExecutorService EXECUTOR = create();
+    }
+
+    private static ExecutorService create() {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, CompressionConfig.getBatchThreads()), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "restcompress-batch-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Run a batch of calls
+     * @param body Batch of requests, with paths relative to the application root (ex: "GET /object HTTP/1.1")
+     * @return Batch of responses, in the same order
+     */
+    @POST
+    @LZF
+    @Consumes(MEDIA_TYPE)
+    @Produces(MEDIA_TYPE)
+    public StreamingEntity batch(InputStream body) throws IOException {
+        // Worker threads have no RESTEasy context of their own, so look up the real objects here
+        HttpRequest request = ResteasyProviderFactory.getContextData(HttpRequest.class);
+        Dispatcher dispatcher = ResteasyProviderFactory.getContextData(Dispatcher.class);
+        URI base = request.getUri().getBaseUri();
+        if (!base.getPath().endsWith("/")) { // So relative paths resolve under it, not beside it
+            base = base.resolve(base.getPath().substring(base.getPath().lastIndexOf('/') + 1) + "/");
+        }
+
+        List<BatchFormat.Part> parts = new ArrayList<BatchFormat.Part>();
+        InputStream in = new BufferedInputStream(body);
+        BatchFormat.Part part;
+        while ((part = readPart(in)) != null) {
+            if (parts.size() >= CompressionConfig.getBatchMaxParts()) {
+                throw new WebApplicationException(Response.status(413).entity("Batch has more than "
+                        + CompressionConfig.getBatchMaxParts() + " calls").type(MediaType.TEXT_PLAIN_TYPE).build());
+            }
+            parts.add(part);
+        }
+
+        final List<MockHttpResponse> responses = new ArrayList<MockHttpResponse>(parts.size());
+        if (CompressionConfig.isBatchParallel()) {
+            List<Future<MockHttpResponse>> futures = new ArrayList<Future<MockHttpResponse>>(parts.size());
+            for (BatchFormat.Part call : parts) {
+                futures.add(Holder.EXECUTOR.submit(new Call(dispatcher, base, call)));
+            }
+            for (Future<MockHttpResponse> future : futures) {
+                responses.add(await(future));
+            }
+        } else {
+            for (BatchFormat.Part call : parts) {
+                responses.add(await(Holder.EXECUTOR.submit(new Call(dispatcher, base, call))));
+            }
+        }
+
+        return new StreamingEntity() {
+            public void write(OutputStream output) throws IOException {
+                for (MockHttpResponse response : responses) {
+                    Response.Status status = Response.Status.fromStatusCode(response.getStatus());
+                    String reason = status != null ? status.getReasonPhrase() : "Unknown";
+                    byte[] body = response.getOutput();
+                    if (response.isErrorSent() && body.length == 0 && response.getErrorMessage() != null) {
+                        body = response.getErrorMessage().getBytes(BatchFormat.ASCII);
+                    }
+                    BatchFormat.write(output, "HTTP/1.1 " + response.getStatus() + " " + reason,
+                            response.getOutputHeaders(), body);
+                }
+            }
+        };
+    }
+
+    /** Read a part of the batch, a malformed one being the caller's mistake */
+    private static BatchFormat.Part readPart(InputStream in) {
+        try {
+            return BatchFormat.read(in);
+        } catch (IOException e) {
+            throw new WebApplicationException(Response.status(400).entity(e.getMessage())
+                    .type(MediaType.TEXT_PLAIN_TYPE).build());
+        }
+    }
+
+    private static MockHttpResponse await(Future<MockHttpResponse> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for batched call", ie);
+        } catch (ExecutionException ee) {
+            throw new IOException("Batched call failed", ee.getCause());
+        }
+    }
+
+    /** One call, dispatched as its own request */
+    private static final class Call implements Callable<MockHttpResponse> {
+        private final Dispatcher dispatcher;
+        private final URI base;
+        private final BatchFormat.Part part;
+
+        Call(Dispatcher dispatcher, URI base, BatchFormat.Part part) {
+            this.dispatcher = dispatcher;
+            this.base = base;
+            this.part = part;
+        }
+
+        public MockHttpResponse call() {
+            MockHttpResponse response = new MockHttpResponse();
+            try {
+                String[] line = part.startLine.split(" ");
+                if (line.length < 2) {
+                    throw new IllegalArgumentException("Malformed batch request line: " + part.startLine);
+                }
+                String target = line[1].startsWith("/") ? line[1].substring(1) : line[1];
+                MockHttpRequest request = MockHttpRequest.create(line[0], base.resolve(target), base);
+                for (String[] header : part.headers) {
+                    if (HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(header[0])) {
+                        continue; // The batch is compressed as a whole
+                    }
+                    request.header(header[0], header[1]);
+                    if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header[0])) {
+                        if (header[1].startsWith(MEDIA_TYPE)) {
+                            throw new IllegalArgumentException("Batches can't be nested");
+                        }
+                        request.contentType(header[1]);
+                    } else if (HttpHeaders.ACCEPT.equalsIgnoreCase(header[0])) {
+                        request.accept(parseAccept(header[1]));
+                    }
+                }
+                request.content(part.body);
+                dispatcher.invoke(request, response);
+            } catch (Exception e) { // Unmapped failures only fail this call, not the batch
+                response.reset();
+                response.setStatus(e instanceof IllegalArgumentException ? 400 : 500);
+                response.getOutputHeaders().putSingle(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN);
+                try {
+                    response.getOutputStream().write(String.valueOf(e.getMessage()).getBytes(BatchFormat.ASCII));
+                } catch (IOException ioe) {
+                    // In-memory stream
+                }
+            }
+            return response;
+        }
+
+        private static List<MediaType> parseAccept(String accept) {
+            List<MediaType> types = new ArrayList<MediaType>();
+            for (String type : accept.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    types.add(MediaType.valueOf(type.trim()));
+                }
+            }
+            return types;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.restcompress.provider;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Limits how much a compressed body may expand, checked on every chunk as it is decoded
+ * <p/>Fails with a {@link DecompressionLimitException} as soon as the decoded body passes
+ *  {@link CompressionConfig#getDecodeMaxBytes()}, or expands more than {@link CompressionConfig#getDecodeMaxRatio()}
+ *  times its compressed size (for clients, {@link CompressionConfig#getDecodeClientMaxRatio()}), so a small
+ *  "zip bomb" body never gets the chance to fill the heap.
+ *  The ratio is only checked past {@link #RATIO_MIN_BYTES}, since the first chunks of a body can legitimately
+ *  expand a lot (ex: runs of spaces).
+ * <p/>Wrap the raw body with {@link #source(InputStream)}, decompress that, then wrap the decompressing stream.
+ *  Decoding interceptors on the server turn a failure into 413 Request Entity Too Large with {@link #tooLarge()}.
+ */
+public class BoundedInputStream extends FilterInputStream {
+
+    /** Decoded bytes before the expansion ratio is checked */
+    public static final long RATIO_MIN_BYTES = 1024 * 1024;
+
+    /** Counts bytes of the compressed body */
+    public static class Source extends FilterInputStream {
+        private long count = 0;
+
+        Source(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        /** Compressed bytes read so far */
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private final Source source;
+    private final long maxBytes;
+    private final double maxRatio;
+    private long count = 0;
+    private DecompressionLimitException exceeded;
+
+    /**
+     * Limit a decompressing stream with the configured limits for request bodies, on the server
+     * @param decompressed Decompressing stream, reading from source
+     * @param source Compressed body, from {@link #source(InputStream)}
+     */
+    public BoundedInputStream(InputStream decompressed, Source source) {
+        this(decompressed, source, false);
+    }
+
+    /**
+     * Limit a decompressing stream with the configured limits
+     * @param decompressed Decompressing stream, reading from source
+     * @param source Compressed body, from {@link #source(InputStream)}
+     * @param client True for a response read by a client, false for a request body on the server
+     */
+    public BoundedInputStream(InputStream decompressed, Source source, boolean client) {
+        this(decompressed, source, CompressionConfig.getDecodeMaxBytes(), maxRatio(client));
+    }
+
+    /**
+     * @param decompressed Decompressing stream, reading from source
+     * @param source Compressed body, from {@link #source(InputStream)}
+     * @param maxBytes Most decoded bytes allowed, 0 for no limit
+     * @param maxRatio Most decoded bytes allowed per compressed byte, 0 for no limit
+     */
+    public BoundedInputStream(InputStream decompressed, Source source, long maxBytes, double maxRatio) {
+        super(decompressed);
+        this.source = source;
+        this.maxBytes = maxBytes;
+        this.maxRatio = maxRatio;
+    }
+
+    /** Wrap the compressed body, before decompressing it */
+    public static Source source(InputStream in) {
+        return new Source(in);
+    }
+
+    /** True if any limit is configured for request bodies, on the server */
+    public static boolean isEnabled() {
+        return isEnabled(false);
+    }
+
+    /**
+     * True if any limit is configured
+     * @param client True for responses read by clients, false for request bodies on the server
+     */
+    public static boolean isEnabled(boolean client) {
+        return CompressionConfig.getDecodeMaxBytes() > 0 || maxRatio(client) > 0;
+    }
+
+    private static double maxRatio(boolean client) {
+        return client ? CompressionConfig.getDecodeClientMaxRatio() : CompressionConfig.getDecodeMaxRatio();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            count++;
+            check();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            count += read;
+            check();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        count += skipped;
+        check();
+        return skipped;
+    }
+
+    private void check() throws DecompressionLimitException {
+        if (exceeded != null) {
+            throw exceeded;
+        }
+        if (maxBytes > 0 && count > maxBytes) {
+            exceeded = new DecompressionLimitException("Decompressed body exceeds " + maxBytes + " bytes");
+        } else if (maxRatio > 0 && count > RATIO_MIN_BYTES && count > source.getCount() * maxRatio) {
+            exceeded = new DecompressionLimitException("Body expands more than " + maxRatio + " times when decompressed");
+        }
+        if (exceeded != null) {
+            throw exceeded;
+        }
+    }
+
+    /** Decoded bytes read so far */
+    public long getCount() {
+        return count;
+    }
+
+    /** True once a limit has been passed; reads fail from then on */
+    public boolean isExceeded() {
+        return exceeded != null;
+    }
+
+    /** 413 Request Entity Too Large, for a body that passed a limit */
+    public WebApplicationException tooLarge() {
+        return tooLarge(exceeded != null ? exceeded.getMessage() : "Decompressed body too large");
+    }
+
+    /**
+     * 413 Request Entity Too Large
+     * @param message Reason, sent as the text/plain response body
+     */
+    public static WebApplicationException tooLarge(String message) {
+        return new WebApplicationException(Response.status(413).entity(message).type(MediaType.TEXT_PLAIN_TYPE).build());
+    }
+
+    /**
+     * Copy a stream to a channel (ex: a FileChannel) through one fixed-size buffer, so large bodies
+     *  never need to fit in memory
+     * @param in Stream to read to the end, not closed
+     * @param out Channel to write to, not closed
+     * @return Bytes copied
+     */
+    public static long transfer(InputStream in, WritableByteChannel out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        long total = 0;
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            wrapped.clear();
+            wrapped.limit(count);
+            while (wrapped.hasRemaining()) {
+                out.write(wrapped);
+            }
+            total += count;
+        }
+        return total;
+    }
+}
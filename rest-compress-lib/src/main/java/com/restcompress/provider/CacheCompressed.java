@@ -0,0 +1,26 @@
+package com.restcompress.provider;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Cache the final encoded response body of a GET method, so repeated requests skip serialization and compression
+ * <p/>Only for methods that return the same entity for the same request: the cache key is the resource method,
+ *  request URI (path and query parameters), Accept header, negotiated encoding and
+ *  {@link CompressedResponseCache#setVersion(String, String) version}; the negotiated media type is checked on hits.
+ *  Hits are written as a plain byte copy with a Content-Length and ETag, and requests with a matching
+ *  If-None-Match get 304 Not Modified without calling the method.
+ * <p/>Entries live until evicted (least recently used, see {@link CompressionConfig#getCacheMaxBytes()}),
+ *  the ttl passes, or the application calls {@link CompressedResponseCache#invalidate(String)}
+ *  or {@link CompressedResponseCache#setVersion(String, String)} when the data changes.
+ * <p/>Combine with @Compress or @LZF to cache compressed bodies.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheCompressed {
+
+    /** Seconds an entry stays valid, 0 for no expiry */
+    long ttl() default 0;
+}
@@ -0,0 +1,303 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.CompressionDictionary;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+import com.restcompress.provider.codec.DictionaryRegistry;
+import com.restcompress.provider.codec.LZFCodec;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.core.Headers;
+import org.jboss.resteasy.core.ResourceMethod;
+import org.jboss.resteasy.core.ServerResponse;
+import org.jboss.resteasy.spi.Failure;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.interception.AcceptedByMethod;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterInterceptor;
+import org.jboss.resteasy.spi.interception.PreProcessInterceptor;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Server interceptor serving @CacheCompressed GET methods from the {@link CompressedResponseCache}
+ * <p/>On a miss, the final encoded body (after serialization and compression) is held on its way out, sent with
+ *  Content-Length and ETag, and cached.  On a hit, the cached bytes are written directly with Content-Length and
+ *  ETag, skipping the entity writer and encoding interceptors.  Before the method is called, a request whose If-None-Match matches the cached
+ *  ETag gets 304 Not Modified.
+ * <p/>The Content-Encoding is negotiated here, the same as {@link CompressHeaderInterceptor}, since it is part of the key.
+ */
+@Provider
+@ServerInterceptor
+@HeaderDecoratorPrecedence
+public class CacheCompressedInterceptor implements PreProcessInterceptor, MessageBodyWriterInterceptor, AcceptedByMethod {
+
+    /**
+     * Holds the body back up to a limit, so its ETag and Content-Length can be set before the headers are committed
+     * <p/>Past the limit, what is held is written out and the rest streams through, without an ETag.  Flushes are
+     *  deferred while holding, as in {@link ContentLengthOutputStream}.
+     */
+    private static class CapturingOutputStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        CapturingOutputStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (captured != null && captured.size() < limit) {
+                captured.write(b);
+                return;
+            }
+            startStreaming();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (captured != null && captured.size() + len <= limit) {
+                captured.write(b, off, len);
+                return;
+            }
+            startStreaming();
+            out.write(b, off, len);
+        }
+
+        /** Too big to hold (or cache): send what is held, then pass everything through */
+        private void startStreaming() throws IOException {
+            if (captured != null) {
+                captured.writeTo(out);
+                captured = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (captured == null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        /**
+         * End of body: if still held, set the ETag (unless the resource did) and Content-Length, and send it
+         * @return Body sent, or null if it was over the limit and streamed
+         */
+        byte[] finish(MultivaluedMap<String, Object> headers) throws IOException {
+            if (captured == null) {
+                return null;
+            }
+            byte[] body = captured.toByteArray();
+            captured = null;
+            if (headers.getFirst(HttpHeaders.ETAG) == null) {
+                Object encoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING); // Removed if sent uncompressed
+                headers.putSingle(HttpHeaders.ETAG, CompressedResponseCache.etag(body, encoding == null ? null : encoding.toString()));
+            }
+            headers.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(body.length));
+            out.write(body);
+            return body;
+        }
+    }
+
+    @Context
+    protected HttpRequest request;
+
+    protected String endpoint;
+
+    /** Encodings available for this method, in preference order; empty if not compressed */
+    protected List<String> encodings;
+
+    protected long ttlMillis;
+
+    /**
+     * Only apply to methods (or classes) annotated with @CacheCompressed
+     * @param declaring Resource class
+     * @param method Resource method
+     * @return True if responses from this method should be cached
+     */
+    public boolean accept(Class declaring, Method method) {
+        CacheCompressed cache = CompressionPolicy.findAnnotation(CacheCompressed.class, declaring, method);
+        if (cache == null) {
+            return false;
+        }
+        endpoint = (declaring != null ? declaring : method.getDeclaringClass()).getSimpleName() + "." + method.getName();
+        ttlMillis = cache.ttl() * 1000;
+        Compress compress = CompressHeaderInterceptor.findAnnotation(declaring, method);
+        if (compress != null) {
+            encodings = CodecRegistry.available(compress.value());
+        } else if (CompressionPolicy.findAnnotation(LZF.class, declaring, method) != null) {
+            encodings = Collections.singletonList(LZFCodec.NAME);
+        } else {
+            encodings = Collections.emptyList();
+        }
+        return true;
+    }
+
+    /** Shared dictionary in common with the client, or null for none */
+    private static CompressionDictionary dictionary(HttpRequest request) {
+        return DictionaryRegistry.select(request.getHttpHeaders().getRequestHeader(DictionaryRegistry.ACCEPT_DICTIONARY));
+    }
+
+    /** Encoding the client gets from this method, or null for none */
+    private String negotiate(HttpRequest request, CompressionDictionary dictionary) {
+        if (encodings.isEmpty()) {
+            return null;
+        }
+        return AcceptEncoding.parse(request.getHttpHeaders().getRequestHeader(HttpHeaders.ACCEPT_ENCODING))
+                .negotiate(CompressionGovernor.order(DictionaryRegistry.usable(encodings, dictionary)));
+    }
+
+    /** Cache key for this request, or null if it is not cacheable; dictionary bodies are keyed by dictionary too */
+    private String key(HttpRequest request, String encoding, CompressionDictionary dictionary) {
+        if (!HttpMethod.GET.equals(request.getHttpMethod())) {
+            return null;
+        }
+        if (DeflateDictionaryCodec.NAME.equals(encoding) && dictionary != null) {
+            encoding = encoding + " " + dictionary.getId();
+        }
+        List<String> accept = request.getHttpHeaders().getRequestHeader(HttpHeaders.ACCEPT);
+        return CompressedResponseCache.key(endpoint, request.getUri().getRequestUri().toString(),
+                accept == null ? "" : accept.toString(), encoding == null ? "identity" : encoding);
+    }
+
+    /**
+     * Answer 304 Not Modified without calling the method, if the client already has the cached body
+     */
+    public ServerResponse preProcess(HttpRequest request, ResourceMethod method) throws Failure, WebApplicationException {
+        List<String> ifNoneMatch = request.getHttpHeaders().getRequestHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return null;
+        }
+        CompressionDictionary dictionary = dictionary(request);
+        String key = key(request, negotiate(request, dictionary), dictionary);
+        CompressedResponseCache.Entry entry = key == null ? null : CompressedResponseCache.get(key, false);
+        if (entry == null || !matches(ifNoneMatch, entry.etag)) {
+            return null;
+        }
+        Headers<Object> headers = new Headers<Object>();
+        headers.putSingle(HttpHeaders.ETAG, entry.etag);
+        if (!encodings.isEmpty()) {
+            headers.putSingle(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (encodings.contains(DeflateDictionaryCodec.NAME)) {
+            headers.add(HttpHeaders.VARY, DictionaryRegistry.ACCEPT_DICTIONARY);
+        }
+        return new ServerResponse(null, 304, headers);
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        for (String value : ifNoneMatch) {
+            for (String tag : value.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replay the cached body on a hit, or capture the encoded body on a miss
+     * @param context
+     * @throws IOException
+     * @throws WebApplicationException
+     */
+    public void write(MessageBodyWriterContext context) throws IOException, WebApplicationException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        Object current = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        CompressionDictionary dictionary = dictionary(request);
+        String encoding = current != null ? current.toString() : negotiate(request, dictionary);
+        String key = key(request, encoding, dictionary);
+        if (key == null || context.getMediaType() == null) {
+            context.proceed();
+            return;
+        }
+        if (current == null && encoding != null) {
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        if (DeflateDictionaryCodec.NAME.equals(encoding) && dictionary != null) {
+            headers.putSingle(DictionaryRegistry.CONTENT_DICTIONARY, dictionary.getId());
+        }
+        if (!encodings.isEmpty() && !containsVary(headers)) {
+            // Response depends on Accept-Encoding, so caches must not serve it to other clients
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (encodings.contains(DeflateDictionaryCodec.NAME)) {
+                headers.add(HttpHeaders.VARY, DictionaryRegistry.ACCEPT_DICTIONARY);
+            }
+        }
+
+        String mediaType = context.getMediaType().toString();
+        CompressedResponseCache.Entry entry = CompressedResponseCache.get(key, true);
+        if (entry != null && entry.mediaType.equals(mediaType)) {
+            if (entry.contentEncoding == null) {
+                headers.remove(HttpHeaders.CONTENT_ENCODING);
+            } else {
+                headers.putSingle(HttpHeaders.CONTENT_ENCODING, entry.contentEncoding);
+            }
+            if (!DeflateDictionaryCodec.NAME.equals(entry.contentEncoding)) {
+                headers.remove(DictionaryRegistry.CONTENT_DICTIONARY);
+            }
+            headers.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(entry.body.length));
+            headers.putSingle(HttpHeaders.ETAG, entry.etag);
+            context.getOutputStream().write(entry.body);
+            return;
+        }
+
+        // Held back, so even the first response has an ETag to revalidate with; bodies too large to cache but under
+        //  the buffer limit are held as well, since they would be buffered for their Content-Length anyway.
+        //  Flushing responses can't be held, so they go out as written, uncached.
+        int limit = CompressionPolicy.isFlushing(context.getEntity(), context.getMediaType()) ? 0
+                : Math.max(CompressionConfig.getCacheMaxEntryBytes(), CompressionPolicy.getBufferLimit(context.getEntity()));
+        OutputStream old = context.getOutputStream();
+        CapturingOutputStream capture = new CapturingOutputStream(old, limit);
+        context.setOutputStream(capture);
+        byte[] body;
+        try {
+            context.proceed();
+            body = capture.finish(headers);
+        } finally {
+            context.setOutputStream(old);
+        }
+        if (body != null && body.length <= CompressionConfig.getCacheMaxEntryBytes()) {
+            Object finalEncoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING); // Removed if sent uncompressed
+            String contentEncoding = finalEncoding == null ? null : finalEncoding.toString();
+            CompressedResponseCache.put(key, new CompressedResponseCache.Entry(endpoint, mediaType, contentEncoding,
+                    headers.getFirst(HttpHeaders.ETAG).toString(), body,
+                    ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0));
+        }
+    }
+
+    private static boolean containsVary(MultivaluedMap<String, Object> headers) {
+        List<Object> vary = headers.get(HttpHeaders.VARY);
+        if (vary != null) {
+            for (Object value : vary) {
+                if (value.toString().toLowerCase(Locale.ENGLISH).contains("accept-encoding")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+import org.jboss.resteasy.annotations.interception.ClientInterceptor;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.spi.interception.AcceptedByMethod;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterInterceptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Client interceptor to set Content-Encoding of POST/PUT bodies, for proxy methods annotated with @Compress
+ * <p/>Uses the first encoding in the annotation that has an available codec.  Shared-dictionary deflate is skipped,
+ *  since the client can't know which dictionaries the server has.
+ */
+@Provider
+@ClientInterceptor
+@HeaderDecoratorPrecedence
+public class ClientCompressHeaderInterceptor implements MessageBodyWriterInterceptor, AcceptedByMethod {
+
+    protected String encoding;
+
+    public boolean accept(Class declaring, Method method) {
+        Compress compress = CompressHeaderInterceptor.findAnnotation(declaring, method);
+        if (compress == null) {
+            return false;
+        }
+        List<String> available = new ArrayList<String>(CodecRegistry.available(compress.value()));
+        available.remove(DeflateDictionaryCodec.NAME);
+        if (available.isEmpty()) {
+            return false;
+        }
+        encoding = available.get(0);
+        return true;
+    }
+
+    public void write(MessageBodyWriterContext context) throws IOException, WebApplicationException {
+        if (context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING) == null) {
+            context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        context.proceed();
+    }
+}
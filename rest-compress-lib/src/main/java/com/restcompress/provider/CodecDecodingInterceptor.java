@@ -0,0 +1,76 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.CompressionCodec;
+import com.restcompress.provider.metrics.CompressionMetrics;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.MeteredInputStream;
+import org.jboss.resteasy.annotations.interception.ClientInterceptor;
+import org.jboss.resteasy.annotations.interception.DecoderPrecedence;
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.client.core.ClientMessageBodyReaderContext;
+import org.jboss.resteasy.spi.interception.MessageBodyReaderContext;
+import org.jboss.resteasy.spi.interception.MessageBodyReaderInterceptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Interceptor to decompress HTTP message bodies with any codec in the CodecRegistry, before doing deserialization
+ * <p/>Works on both Server (decompress POST/PUT request bodies), and Client (response bodies)
+ * <p/>LZF and GZIP are left to their dedicated interceptors, like {@link CodecEncodingInterceptor}
+ */
+@Provider
+@ServerInterceptor
+@ClientInterceptor
+@DecoderPrecedence
+public class CodecDecodingInterceptor implements MessageBodyReaderInterceptor {
+
+    /**
+     * Check if content encoding matches a registered codec.
+     * <p/>If so, wrap the InputStream for that message in the codec's decompressing stream, limited by
+     *  {@link BoundedInputStream} (413 Request Entity Too Large on the server if a limit is passed)
+     * @param context Context for HTTP request/response
+     * @return context.proceed()
+     * @throws IOException
+     * @throws WebApplicationException
+     */
+    public Object read(MessageBodyReaderContext context) throws IOException, WebApplicationException {
+        CompressionCodec codec = CodecEncodingInterceptor.getCodec(context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        if (codec == null) {
+            return context.proceed();
+        }
+
+        InputStream old = context.getInputStream();
+        EndpointMetrics metrics = CompressionMetrics.forEndpoint(EndpointInterceptor.getEndpoint(context), codec.getName());
+        MeteredInputStream.Raw raw = metrics == null ? null : MeteredInputStream.raw(old);
+        InputStream in = raw != null ? raw : old;
+        boolean client = context instanceof ClientMessageBodyReaderContext;
+        BoundedInputStream.Source source = BoundedInputStream.isEnabled(client) ? BoundedInputStream.source(in) : null;
+        if (source != null) in = source;
+        InputStream is = codec.decompress(in);
+        BoundedInputStream bounded = source != null ? new BoundedInputStream(is, source, client) : null;
+        InputStream decoded = bounded != null ? bounded : is;
+        MeteredInputStream metered = raw != null ? new MeteredInputStream(decoded, raw, metrics) : null;
+        context.setInputStream(metered != null ? metered : decoded);
+        boolean streamed = InputStream.class.isAssignableFrom(context.getType())
+                || Reader.class.isAssignableFrom(context.getType());
+        try {
+            return context.proceed();
+        } catch (Exception e) { // Readers may wrap the limit's exception in their own
+            if (bounded != null && bounded.isExceeded() && !client) {
+                throw bounded.tooLarge();
+            }
+            throw e;
+        } finally {
+            if (!streamed) {
+                is.close(); // Readers may stop before the end of the body, which would keep pooled inflaters
+                if (metered != null) metered.finish();
+            }
+            context.setInputStream(old);
+        }
+    }
+}
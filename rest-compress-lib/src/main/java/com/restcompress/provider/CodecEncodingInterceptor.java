@@ -0,0 +1,127 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.CompressionPolicy.EndpointRatio;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.CompressionCodec;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+import com.restcompress.provider.codec.DictionaryRegistry;
+import com.restcompress.provider.codec.GZIPCodec;
+import com.restcompress.provider.codec.LZFCodec;
+import com.restcompress.provider.metrics.CompressionMetrics;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.SkipReason;
+import org.jboss.resteasy.annotations.interception.ClientInterceptor;
+import org.jboss.resteasy.annotations.interception.EncoderPrecedence;
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.client.core.ClientMessageBodyWriterContext;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterInterceptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encode messages with any codec in the {@link CodecRegistry}, if content-encoding is set to its name (client and server)
+ * <p/>LZF and GZIP are left to their dedicated interceptors (LZFEncodingInterceptor and RESTEasy's GZIPEncodingInterceptor)
+ * <p/>
+ * <p/>Works the same as LZFEncodingInterceptor
+ */
+@Provider
+@ServerInterceptor
+@ClientInterceptor
+@EncoderPrecedence
+public class CodecEncodingInterceptor implements MessageBodyWriterInterceptor {
+
+    /** Provides committed compressed output, which does not compress headers, or small bodies */
+    private static class CommittedCodecOutputStream extends DeferredCompressionOutputStream {
+        private final CompressionCodec codec;
+
+        protected CommittedCodecOutputStream(OutputStream delegate, MultivaluedMap<String, Object> headers, int minSize, int bufferLimit, boolean client, CompressionCodec codec) {
+            super(delegate, headers, minSize, bufferLimit, client);
+            this.codec = codec;
+        }
+
+        @Override
+        protected OutputStream openCompressor(OutputStream out) throws IOException {
+            // Codecs may write a format header, so only wrap once the body is being written; closing writes any trailer
+            return codec.compress(out);
+        }
+    }
+
+    /** Check if this interceptor should handle the encoding, rather than a dedicated interceptor */
+    static CompressionCodec getCodec(Object encoding) {
+        if (encoding == null) {
+            return null;
+        }
+        CompressionCodec codec = CodecRegistry.get(encoding.toString());
+        if (codec == null || LZFCodec.NAME.equals(codec.getName()) || GZIPCodec.NAME.equals(codec.getName())) {
+            return null;
+        }
+        return codec;
+    }
+
+    /**
+     * Grab the outgoing message, if encoding is set to a registered codec, then wrap the OutputStream to compress it
+     * <p/>Applies the {@link CompressionPolicy}, like LZFEncodingInterceptor
+     * <p/>Note: strips out the content-length header because the compression changes that unpredictably
+     * @param context
+     * @throws IOException
+     * @throws WebApplicationException
+     */
+    public void write(MessageBodyWriterContext context) throws IOException, WebApplicationException {
+        CompressionCodec codec = getCodec(context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        if (codec == null) {
+            context.proceed();
+            return;
+        }
+        codec = DeflateDictionaryCodec.bind(codec, context.getHeaders().getFirst(DictionaryRegistry.CONTENT_DICTIONARY));
+        int minSize = CompressionGovernor.getMinSize(codec.getName());
+
+        String endpoint = EndpointInterceptor.getEndpoint(context);
+        EndpointRatio ratio = CompressionPolicy.forEndpoint(endpoint);
+        EndpointMetrics metrics = CompressionMetrics.forEndpoint(endpoint, codec.getName());
+        SkipReason skip = CompressionPolicy.checkSkip(context.getMediaType(), context.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH), ratio, minSize);
+        if (skip != null) {
+            if (metrics != null) metrics.recordSkip(skip);
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            context.getHeaders().remove(DictionaryRegistry.CONTENT_DICTIONARY);
+            context.proceed();
+            return;
+        }
+
+        // Client executors buffer the request body and set its length themselves, so it gets no Content-Length here
+        boolean client = context instanceof ClientMessageBodyWriterContext;
+        int bufferLimit = client ? 0 : CompressionPolicy.getBufferLimit(context.getEntity());
+        boolean timing = !client && ServerTiming.isRequested(ResteasyProviderFactory.getContextData(HttpHeaders.class));
+        if (timing) {
+            bufferLimit = ServerTiming.getBufferLimit(bufferLimit);
+        }
+        OutputStream old = context.getOutputStream();
+        CommittedCodecOutputStream codecOutputStream = new CommittedCodecOutputStream(old, context.getHeaders(), minSize,
+                bufferLimit, client, codec);
+
+        // Any content length set will be obsolete
+        context.getHeaders().remove("Content-Length");
+
+        if (timing) {
+            codecOutputStream.startTiming(codec.getName());
+        }
+        context.setOutputStream(codecOutputStream);
+        try {
+            context.proceed();
+            boolean compressed = codecOutputStream.finish();
+            if (compressed && ratio != null && ratio.shouldSample()) {
+                ratio.record(codecOutputStream.getUncompressedBytes(), codecOutputStream.getCompressedBytes());
+            }
+            codecOutputStream.recordMetrics(metrics);
+        } finally {
+            codecOutputStream.release();
+            context.setOutputStream(old);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.restcompress.provider;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to compress REST responses with the best encoding that both client and server support
+ * <p/><p/>
+ * The server parses the request's Accept-Encoding header (including q-values), and picks the encoding with
+ *  the highest quality value.  Ties go to the order listed here, and encodings without an available codec
+ *  (see {@link com.restcompress.provider.codec.CodecRegistry}) are skipped.
+ * <p/>For example, with the default order: Java clients advertising "lz4, lzf" get LZ4,
+ *  Python clients with "lzf" get LZF and browsers with "gzip, deflate" get GZIP.
+ * <p/><p/>
+ * On clients built from an annotated interface, POST/PUT bodies use the first available encoding, and
+ *  the response encodings are advertised in Accept-Encoding.
+ * <p/><p/>
+ * Use this instead of @GZIP and @LZF, rather than combining with them.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Compress {
+    /** Encodings to offer, most-preferred first */
+    String[] value() default {"lz4", "lzf", "snappy", "gzip"};
+}
@@ -0,0 +1,86 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.CompressionDictionary;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+import com.restcompress.provider.codec.DictionaryRegistry;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.interception.AcceptedByMethod;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterInterceptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Server interceptor that negotiates the response Content-Encoding for methods annotated with @Compress
+ * <p/>Picks the encoding from the request Accept-Encoding, using q-values and the annotation's preference order.
+ *  The matching encoding interceptor (LZF, GZIP or generic codec) then compresses the response.
+ * <p/>
+ * <p/>Based on the RESTEasy ServerContentEncodingHeaderInterceptor, which only supports a single fixed encoding
+ */
+@Provider
+@ServerInterceptor
+@HeaderDecoratorPrecedence
+public class CompressHeaderInterceptor implements MessageBodyWriterInterceptor, AcceptedByMethod {
+
+    @Context
+    protected HttpRequest request;
+
+    /** Encodings available on this server, for this method, in preference order */
+    protected List<String> encodings;
+
+    /**
+     * Only apply to methods (or classes) annotated with @Compress
+     * @param declaring Resource class
+     * @param method Resource method
+     * @return True if this method should be compressed
+     */
+    public boolean accept(Class declaring, Method method) {
+        Compress compress = findAnnotation(declaring, method);
+        if (compress == null) {
+            return false;
+        }
+        encodings = CodecRegistry.available(compress.value());
+        return !encodings.isEmpty();
+    }
+
+    /** Find @Compress on the method or class, including JAX-RS annotations on a shared interface */
+    static Compress findAnnotation(Class<?> declaring, Method method) {
+        return CompressionPolicy.findAnnotation(Compress.class, declaring, method);
+    }
+
+    /**
+     * Set Content-Encoding to the best encoding the client accepts, unless the resource already set one
+     * @param context
+     * @throws IOException
+     * @throws WebApplicationException
+     */
+    public void write(MessageBodyWriterContext context) throws IOException, WebApplicationException {
+        if (context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING) == null) {
+            AcceptEncoding accept = AcceptEncoding.parse(request.getHttpHeaders().getRequestHeader(HttpHeaders.ACCEPT_ENCODING));
+            CompressionDictionary dictionary = DictionaryRegistry.select(request.getHttpHeaders().getRequestHeader(DictionaryRegistry.ACCEPT_DICTIONARY));
+            String encoding = accept.negotiate(CompressionGovernor.order(DictionaryRegistry.usable(encodings, dictionary)));
+            if (encoding != null) {
+                context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+                if (DeflateDictionaryCodec.NAME.equals(encoding)) {
+                    context.getHeaders().putSingle(DictionaryRegistry.CONTENT_DICTIONARY, dictionary.getId());
+                }
+            }
+            // Response depends on Accept-Encoding, so caches must not serve it to other clients
+            context.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (encodings.contains(DeflateDictionaryCodec.NAME)) {
+                context.getHeaders().add(HttpHeaders.VARY, DictionaryRegistry.ACCEPT_DICTIONARY);
+            }
+        }
+        context.proceed();
+    }
+}
@@ -0,0 +1,174 @@
+package com.restcompress.provider;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Size-bounded LRU cache of final encoded response bodies, for methods annotated with {@link CacheCompressed}
+ * <p/>Bounded by total body bytes ({@link CompressionConfig#getCacheMaxBytes()}), evicting least recently used first.
+ *  Lookups are synchronized on the cache; a hit only takes the lock long enough to find the entry.
+ * <p/>Invalidation hooks: {@link #invalidate(String)} drops an endpoint's entries, and {@link #setVersion(String, String)}
+ *  changes the version that is part of every key for an endpoint, so old entries are never served again.
+ */
+public final class CompressedResponseCache {
+
+    /** One cached body, with the headers needed to replay it */
+    static final class Entry {
+        final String endpoint;
+        final String mediaType;
+        final String contentEncoding;
+        final String etag;
+        final byte[] body;
+        final long expires;
+
+        Entry(String endpoint, String mediaType, String contentEncoding, String etag, byte[] body, long expires) {
+            this.endpoint = endpoint;
+            this.mediaType = mediaType;
+            this.contentEncoding = contentEncoding;
+            this.etag = etag;
+            this.body = body;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expires > 0 && now >= expires;
+        }
+    }
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private static long size = 0;
+
+    private static final ConcurrentMap<String, String> versions = new ConcurrentHashMap<String, String>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private CompressedResponseCache() {
+    }
+
+    /** Build a cache key; the endpoint's current version is included, so changing it misses old entries */
+    static String key(String endpoint, String uri, String accept, String encoding) {
+        String version = versions.get(endpoint);
+        return endpoint + ' ' + uri + ' ' + accept + ' ' + encoding + ' ' + (version == null ? "" : version);
+    }
+
+    /**
+     * Get a live entry
+     * @param key Cache key
+     * @param count True to count this lookup in the hit/miss statistics
+     * @return Entry, or null if missing or expired
+     */
+    static Entry get(String key, boolean count) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+                removeEntry(key);
+                entry = null;
+            }
+        }
+        if (count) {
+            (entry == null ? misses : hits).incrementAndGet();
+        }
+        return entry;
+    }
+
+    static void put(String key, Entry entry) {
+        if (entry.body.length > CompressionConfig.getCacheMaxEntryBytes()) {
+            return;
+        }
+        synchronized (entries) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                size -= old.body.length;
+            }
+            size += entry.body.length;
+            long max = CompressionConfig.getCacheMaxBytes();
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (size > max && eldest.hasNext()) {
+                size -= eldest.next().getValue().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static void removeEntry(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.body.length;
+        }
+    }
+
+    /** Strong ETag for an encoded body: CRC32 and length, plus encoding since each encoding is its own representation */
+    static String etag(byte[] body, String encoding) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return "\"" + Long.toHexString(crc.getValue()) + '-' + Integer.toHexString(body.length)
+                + (encoding == null ? "" : "-" + encoding) + "\"";
+    }
+
+    /**
+     * Drop all cached bodies for an endpoint
+     * @param endpoint Endpoint name, "ResourceClass.method"
+     */
+    public static void invalidate(String endpoint) {
+        synchronized (entries) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.endpoint.equals(endpoint)) {
+                    size -= entry.body.length;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the data version for an endpoint (ex: a last-modified timestamp or database row version)
+     * <p/>The version is part of the cache key, so a new version is a cache miss, and old entries age out.
+     * @param endpoint Endpoint name, "ResourceClass.method"
+     * @param version New version, or null to clear it
+     */
+    public static void setVersion(String endpoint, String version) {
+        if (version == null) {
+            versions.remove(endpoint);
+        } else {
+            versions.put(endpoint, version);
+        }
+    }
+
+    /** Remove everything */
+    public static void clear() {
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /** Total bytes of cached bodies */
+    public static long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    /** Number of cached bodies */
+    public static int getEntryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,639 @@
+package com.restcompress.provider;
+
+import javax.ws.rs.core.MediaType;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Global tuning settings for the rest-compress interceptors
+ * <p/>Defaults can be overridden with system properties (ex: -Drestcompress.lzf.poolSize=64),
+ *  or by calling the setters at application startup.
+ */
+public final class CompressionConfig {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private static volatile int lzfPoolSize = Integer.getInteger("restcompress.lzf.poolSize", 4 * CPUS);
+
+    private static volatile int minSize = Integer.getInteger("restcompress.policy.minSize", 512);
+    private static volatile List<MediaType> excludedTypes = parseMediaTypes(System.getProperty("restcompress.policy.excludedTypes",
+            "image/*, audio/*, video/*, application/zip, application/gzip, application/x-gzip, application/x-lzf"));
+    private static volatile double maxRatio = Double.parseDouble(System.getProperty("restcompress.policy.maxRatio", "0.9"));
+    private static volatile int sampleRate = Integer.getInteger("restcompress.policy.sampleRate", 16);
+    private static volatile int probeInterval = Integer.getInteger("restcompress.policy.probeInterval", 100);
+
+    private static volatile int bufferLimit = Integer.getInteger("restcompress.buffer.limit", 64 * 1024);
+
+    private static volatile int flushMinChunk = Integer.getInteger("restcompress.flush.minChunk", 1024);
+    private static volatile long flushMaxLatency = Long.getLong("restcompress.flush.maxLatency", 50);
+
+    private static volatile boolean parallelEnabled = Boolean.getBoolean("restcompress.parallel.enabled");
+    private static volatile long parallelThreshold = Long.getLong("restcompress.parallel.threshold", 1024 * 1024);
+    private static volatile int parallelMaxInFlight = Integer.getInteger("restcompress.parallel.maxInFlight", 2 * CPUS);
+    private static volatile int parallelReadAhead = Integer.getInteger("restcompress.parallel.readAhead", 2 * CPUS);
+    private static final int parallelThreads = Integer.getInteger("restcompress.parallel.threads", CPUS);
+
+    private static volatile boolean governorEnabled = Boolean.getBoolean("restcompress.governor.enabled");
+    private static volatile double governorFastCpu = Double.parseDouble(System.getProperty("restcompress.governor.fastCpu", "0.75"));
+    private static volatile double governorIdentityCpu = Double.parseDouble(System.getProperty("restcompress.governor.identityCpu", "0.9"));
+    private static volatile double governorHysteresis = Double.parseDouble(System.getProperty("restcompress.governor.hysteresis", "0.1"));
+    private static volatile long governorInterval = Long.getLong("restcompress.governor.interval", 1000);
+    private static volatile int governorFastMinSize = Integer.getInteger("restcompress.governor.fastMinSize", 8192);
+
+    private static volatile boolean metricsEnabled = Boolean.parseBoolean(System.getProperty("restcompress.metrics.enabled", "true"));
+    private static volatile boolean metricsJmx = Boolean.parseBoolean(System.getProperty("restcompress.metrics.jmx", "true"));
+
+    private static volatile boolean timingEnabled = Boolean.getBoolean("restcompress.timing.enabled");
+    private static volatile String timingHeader = System.getProperty("restcompress.timing.header", "X-Compress-Timing");
+    private static volatile int timingBufferLimit = Integer.getInteger("restcompress.timing.bufferLimit", 8 * 1024 * 1024);
+
+    private static volatile int batchMaxParts = Integer.getInteger("restcompress.batch.maxParts", 100);
+    private static volatile boolean batchParallel = Boolean.getBoolean("restcompress.batch.parallel");
+    private static final int batchThreads = Integer.getInteger("restcompress.batch.threads", CPUS);
+
+    private static volatile long deltaMaxBytes = Long.getLong("restcompress.delta.maxBytes", 64 * 1024 * 1024);
+    private static volatile long deltaClientMaxBytes = Long.getLong("restcompress.delta.clientMaxBytes", 16 * 1024 * 1024);
+
+    private static volatile long cacheMaxBytes = Long.getLong("restcompress.cache.maxBytes", 64 * 1024 * 1024);
+    private static volatile int cacheMaxEntryBytes = Integer.getInteger("restcompress.cache.maxEntryBytes", 4 * 1024 * 1024);
+
+    private static volatile int dictionaryMinSize = Integer.getInteger("restcompress.dictionary.minSize", 64);
+
+    private static volatile long decodeMaxBytes = Long.getLong("restcompress.decode.maxBytes", 0);
+    private static volatile double decodeMaxRatio = Double.parseDouble(System.getProperty("restcompress.decode.maxRatio", "50"));
+    private static volatile double decodeClientMaxRatio = Double.parseDouble(System.getProperty("restcompress.decode.clientMaxRatio", "0"));
+
+    private static volatile String storeDirectory = System.getProperty("restcompress.store.dir",
+            new File(System.getProperty("java.io.tmpdir"), "restcompress-store").getPath());
+
+    private static volatile long clientCapabilityTtl = Long.getLong("restcompress.client.capabilityTtl", 10 * 60 * 1000);
+
+    private CompressionConfig() {
+    }
+
+    /** Parse "type/subtype" list without MediaType.valueOf, which needs the JAX-RS runtime loaded */
+    static List<MediaType> parseMediaTypes(String types) {
+        List<MediaType> parsed = new ArrayList<MediaType>();
+        if (types != null) {
+            for (String type : types.split(",")) {
+                String[] parts = type.split(";")[0].trim().split("/");
+                if (parts.length == 2) {
+                    parsed.add(new MediaType(parts[0].trim(), parts[1].trim()));
+                } else if (!parts[0].isEmpty()) {
+                    throw new IllegalArgumentException("Invalid media type: " + type);
+                }
+            }
+        }
+        return Collections.unmodifiableList(parsed);
+    }
+
+    /**
+     * Maximum number of idle LZF encoders and decoders (each with 64 kB buffers) kept for reuse
+     * <p/>Property: restcompress.lzf.poolSize, default 4 per CPU. Set to 0 to disable pooling.
+     */
+    public static int getLzfPoolSize() {
+        return lzfPoolSize;
+    }
+
+    public static void setLzfPoolSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Pool size must be >= 0");
+        }
+        lzfPoolSize = size;
+    }
+
+    /**
+     * Bodies smaller than this many bytes are sent uncompressed
+     * <p/>Property: restcompress.policy.minSize, default 512. Set to 0 to compress everything.
+     */
+    public static int getMinSize() {
+        return minSize;
+    }
+
+    public static void setMinSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Minimum size must be >= 0");
+        }
+        minSize = size;
+    }
+
+    /**
+     * Media types that are already compressed, and sent as-is
+     * <p/>Property: restcompress.policy.excludedTypes, comma-separated, wildcards allowed.
+     *  Default: images, audio, video and compressed archives.
+     */
+    public static List<MediaType> getExcludedTypes() {
+        return excludedTypes;
+    }
+
+    public static void setExcludedTypes(String commaSeparatedTypes) {
+        excludedTypes = parseMediaTypes(commaSeparatedTypes);
+    }
+
+    /**
+     * Endpoints whose average compressed/uncompressed size exceeds this stop being compressed
+     * <p/>Property: restcompress.policy.maxRatio, default 0.9 (must save at least 10%). Set to 1 or more to disable.
+     */
+    public static double getMaxRatio() {
+        return maxRatio;
+    }
+
+    public static void setMaxRatio(double ratio) {
+        maxRatio = ratio;
+    }
+
+    /**
+     * Measure the compression ratio of 1 in this many responses per endpoint
+     * <p/>Property: restcompress.policy.sampleRate, default 16
+     */
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+
+    public static void setSampleRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Sample rate must be >= 1");
+        }
+        sampleRate = rate;
+    }
+
+    /**
+     * For endpoints that stopped compressing, retry compression on 1 in this many responses in case the data changed
+     * <p/>Property: restcompress.policy.probeInterval, default 100
+     */
+    public static int getProbeInterval() {
+        return probeInterval;
+    }
+
+    public static void setProbeInterval(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Probe interval must be >= 1");
+        }
+        probeInterval = interval;
+    }
+
+    /**
+     * Compressed responses up to this many bytes are buffered and sent with a Content-Length;
+     *  larger ones fall back to chunked streaming, see {@link ContentLengthOutputStream}
+     * <p/>Property: restcompress.buffer.limit, default 64 kB. Set to 0 to always stream.
+     */
+    public static int getBufferLimit() {
+        return bufferLimit;
+    }
+
+    public static void setBufferLimit(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Buffer limit must be >= 0");
+        }
+        bufferLimit = bytes;
+    }
+
+    /**
+     * Smallest LZF chunk an application flush ends, for flushing responses (see {@link FlushingLZFOutputStream});
+     *  flushes with less data buffered wait for more, or for {@link #getFlushMaxLatency()}
+     * <p/>Property: restcompress.flush.minChunk, default 1024. Set to 0 to end a chunk on every flush.
+     */
+    public static int getFlushMinChunk() {
+        return flushMinChunk;
+    }
+
+    public static void setFlushMinChunk(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Minimum flush chunk must be >= 0");
+        }
+        flushMinChunk = bytes;
+    }
+
+    /**
+     * Longest a deferred flush of a flushing response waits before its data is sent anyway
+     * <p/>Property: restcompress.flush.maxLatency, in milliseconds, default 50. Set to 0 to wait for the minimum chunk.
+     */
+    public static long getFlushMaxLatency() {
+        return flushMaxLatency;
+    }
+
+    public static void setFlushMaxLatency(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Maximum flush latency must be >= 0");
+        }
+        flushMaxLatency = millis;
+    }
+
+    /**
+     * Compress large responses and decompress large bodies on several cores,
+     *  see {@link ParallelLZFOutputStream} and {@link ParallelLZFInputStream}
+     * <p/>Property: restcompress.parallel.enabled, default false
+     */
+    public static boolean isParallelEnabled() {
+        return parallelEnabled;
+    }
+
+    public static void setParallelEnabled(boolean enabled) {
+        parallelEnabled = enabled;
+    }
+
+    /**
+     * Bytes of a body compressed (or compressed bytes decoded) on the request thread before going parallel
+     * <p/>Property: restcompress.parallel.threshold, default 1 MB
+     */
+    public static long getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public static void setParallelThreshold(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Threshold must be >= 0");
+        }
+        parallelThreshold = bytes;
+    }
+
+    /**
+     * Maximum 64 kB chunks one stream may have queued or being worked on in parallel, which caps its memory use
+     * <p/>Property: restcompress.parallel.maxInFlight, default 2 per CPU
+     */
+    public static int getParallelMaxInFlight() {
+        return parallelMaxInFlight;
+    }
+
+    public static void setParallelMaxInFlight(int chunks) {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("In-flight chunks must be >= 1");
+        }
+        parallelMaxInFlight = chunks;
+    }
+
+    /**
+     * Maximum 64 kB chunks one decompressing stream reads ahead of the deserializer, which caps its memory use
+     * <p/>Property: restcompress.parallel.readAhead, default 2 per CPU
+     */
+    public static int getParallelReadAhead() {
+        return parallelReadAhead;
+    }
+
+    public static void setParallelReadAhead(int chunks) {
+        if (chunks < 1) {
+            throw new IllegalArgumentException("Read-ahead chunks must be >= 1");
+        }
+        parallelReadAhead = chunks;
+    }
+
+    /**
+     * Worker threads shared by all streams for parallel compression; fixed at startup
+     * <p/>Property: restcompress.parallel.threads, default 1 per CPU
+     */
+    public static int getParallelThreads() {
+        return parallelThreads;
+    }
+
+    /**
+     * Maximum total size of bodies held by the {@link CompressedResponseCache}, before least recently used are evicted
+     * <p/>Property: restcompress.cache.maxBytes, default 64 MB
+     */
+    public static long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public static void setCacheMaxBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Cache size must be >= 0");
+        }
+        cacheMaxBytes = bytes;
+    }
+
+    /**
+     * Encoded bodies larger than this are not cached
+     * <p/>Property: restcompress.cache.maxEntryBytes, default 4 MB
+     */
+    public static int getCacheMaxEntryBytes() {
+        return cacheMaxEntryBytes;
+    }
+
+    public static void setCacheMaxEntryBytes(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Entry size must be >= 0");
+        }
+        cacheMaxEntryBytes = bytes;
+    }
+
+    /**
+     * Let the {@link CompressionGovernor} reduce or stop compression when CPU is busy, or when compression costs
+     *  more time than it saves on the network
+     * <p/>Property: restcompress.governor.enabled, default false
+     */
+    public static boolean isGovernorEnabled() {
+        return governorEnabled;
+    }
+
+    public static void setGovernorEnabled(boolean enabled) {
+        governorEnabled = enabled;
+    }
+
+    /**
+     * System CPU utilization (0 to 1) where the governor switches to fast, low-effort compression
+     * <p/>Property: restcompress.governor.fastCpu, default 0.75
+     */
+    public static double getGovernorFastCpu() {
+        return governorFastCpu;
+    }
+
+    public static void setGovernorFastCpu(double cpu) {
+        if (cpu <= 0 || cpu > 1) {
+            throw new IllegalArgumentException("CPU must be > 0 and <= 1");
+        }
+        governorFastCpu = cpu;
+    }
+
+    /**
+     * System CPU utilization (0 to 1) where the governor stops compressing
+     * <p/>Property: restcompress.governor.identityCpu, default 0.9
+     */
+    public static double getGovernorIdentityCpu() {
+        return governorIdentityCpu;
+    }
+
+    public static void setGovernorIdentityCpu(double cpu) {
+        if (cpu <= 0 || cpu > 1) {
+            throw new IllegalArgumentException("CPU must be > 0 and <= 1");
+        }
+        governorIdentityCpu = cpu;
+    }
+
+    /**
+     * How far CPU must fall below a threshold before the governor steps back to more compression
+     * <p/>Property: restcompress.governor.hysteresis, default 0.1
+     */
+    public static double getGovernorHysteresis() {
+        return governorHysteresis;
+    }
+
+    public static void setGovernorHysteresis(double hysteresis) {
+        if (hysteresis < 0 || hysteresis >= 1) {
+            throw new IllegalArgumentException("Hysteresis must be >= 0 and < 1");
+        }
+        governorHysteresis = hysteresis;
+    }
+
+    /**
+     * Milliseconds between CPU samples, and so between governor mode changes
+     * <p/>Property: restcompress.governor.interval, default 1000
+     */
+    public static long getGovernorInterval() {
+        return governorInterval;
+    }
+
+    public static void setGovernorInterval(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("Interval must be >= 1");
+        }
+        governorInterval = millis;
+    }
+
+    /**
+     * Minimum body size to compress in the governor's fast mode
+     * <p/>Property: restcompress.governor.fastMinSize, default 8192
+     */
+    public static int getGovernorFastMinSize() {
+        return governorFastMinSize;
+    }
+
+    public static void setGovernorFastMinSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must be >= 0");
+        }
+        governorFastMinSize = size;
+    }
+
+    /**
+     * Record per-endpoint compression metrics, see {@link com.restcompress.provider.metrics.CompressionMetrics}
+     * <p/>Property: restcompress.metrics.enabled, default true
+     */
+    public static boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public static void setMetricsEnabled(boolean enabled) {
+        metricsEnabled = enabled;
+    }
+
+    /**
+     * Register metrics with the platform MBean server as they are created
+     * <p/>Property: restcompress.metrics.jmx, default true
+     */
+    public static boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+    public static void setMetricsJmx(boolean jmx) {
+        metricsJmx = jmx;
+    }
+
+    /**
+     * Bodies smaller than this many bytes are sent uncompressed, when compressing with a shared dictionary
+     * <p/>With a dictionary, even small bodies compress, so this is lower than {@link #getMinSize()}.
+     * <p/>Property: restcompress.dictionary.minSize, default 64
+     */
+    public static int getDictionaryMinSize() {
+        return dictionaryMinSize;
+    }
+
+    public static void setDictionaryMinSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Minimum size must be >= 0");
+        }
+        dictionaryMinSize = size;
+    }
+
+    /**
+     * How long clients remember which encodings a server accepts for request bodies, see {@link HostCapabilities}
+     * <p/>Property: restcompress.client.capabilityTtl, in milliseconds, default 600000 (10 minutes)
+     */
+    public static long getClientCapabilityTtl() {
+        return clientCapabilityTtl;
+    }
+
+    public static void setClientCapabilityTtl(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Capability TTL must be >= 0");
+        }
+        clientCapabilityTtl = millis;
+    }
+
+    /**
+     * Allow requests to ask for a Server-Timing header on compressed responses, see {@link ServerTiming}
+     * <p/>Property: restcompress.timing.enabled, default false
+     */
+    public static boolean isTimingEnabled() {
+        return timingEnabled;
+    }
+
+    public static void setTimingEnabled(boolean enabled) {
+        timingEnabled = enabled;
+    }
+
+    /**
+     * Request header asking for a Server-Timing header, when timing is enabled
+     * <p/>Property: restcompress.timing.header, default X-Compress-Timing
+     */
+    public static String getTimingHeader() {
+        return timingHeader;
+    }
+
+    public static void setTimingHeader(String header) {
+        if (header == null || header.isEmpty()) {
+            throw new IllegalArgumentException("Timing header must be set");
+        }
+        timingHeader = header;
+    }
+
+    /**
+     * Compressed bytes to buffer for responses asking for timing, so the Server-Timing header can still be set
+     *  once the body is done; larger bodies stream without it
+     * <p/>Property: restcompress.timing.bufferLimit, default 8 MB
+     */
+    public static int getTimingBufferLimit() {
+        return timingBufferLimit;
+    }
+
+    public static void setTimingBufferLimit(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Timing buffer limit must be >= 0");
+        }
+        timingBufferLimit = bytes;
+    }
+
+    /**
+     * Most calls in one batch request, see {@link BatchResource}; larger batches get 413 Request Entity Too Large
+     * <p/>Property: restcompress.batch.maxParts, default 100
+     */
+    public static int getBatchMaxParts() {
+        return batchMaxParts;
+    }
+
+    public static void setBatchMaxParts(int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("Batches need at least one part");
+        }
+        batchMaxParts = parts;
+    }
+
+    /**
+     * Run the calls of a batch at the same time, rather than one after another in order
+     * <p/>Only enable this if no call in a batch depends on the effects of an earlier one.
+     * <p/>Property: restcompress.batch.parallel, default false
+     */
+    public static boolean isBatchParallel() {
+        return batchParallel;
+    }
+
+    public static void setBatchParallel(boolean parallel) {
+        batchParallel = parallel;
+    }
+
+    /**
+     * Threads running batched calls, shared by all batch requests; only read at startup
+     * <p/>Property: restcompress.batch.threads, default one per CPU
+     */
+    public static int getBatchThreads() {
+        return batchThreads;
+    }
+
+    /**
+     * Maximum total size of past versions the server keeps to send deltas against, see {@link DeltaEncoded};
+     *  least recently used resources are dropped first
+     * <p/>Property: restcompress.delta.maxBytes, default 64 MB
+     */
+    public static long getDeltaMaxBytes() {
+        return deltaMaxBytes;
+    }
+
+    public static void setDeltaMaxBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Delta history size must be >= 0");
+        }
+        deltaMaxBytes = bytes;
+    }
+
+    /**
+     * Maximum total size of bodies a client keeps as delta bases, see {@link DeltaClientInterceptor}
+     * <p/>Property: restcompress.delta.clientMaxBytes, default 16 MB
+     */
+    public static long getDeltaClientMaxBytes() {
+        return deltaClientMaxBytes;
+    }
+
+    public static void setDeltaClientMaxBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Delta client cache size must be >= 0");
+        }
+        deltaClientMaxBytes = bytes;
+    }
+
+    /**
+     * Directory the {@link PrecompressedStore} keeps its files in
+     * <p/>Property: restcompress.store.dir, default restcompress-store in java.io.tmpdir
+     */
+    public static String getStoreDirectory() {
+        return storeDirectory;
+    }
+
+    public static void setStoreDirectory(String directory) {
+        if (directory == null || directory.isEmpty()) {
+            throw new IllegalArgumentException("Store directory must be set");
+        }
+        storeDirectory = directory;
+    }
+
+    /**
+     * Most bytes a compressed message body may decompress to, see {@link BoundedInputStream}
+     * <p/>Applies to responses read by clients as well as to request bodies, so it is off unless set: legitimate
+     *  bodies have no natural size limit, and the expansion ratio already stops bombs sent to the server.
+     * <p/>Property: restcompress.decode.maxBytes, default 0 (no limit)
+     */
+    public static long getDecodeMaxBytes() {
+        return decodeMaxBytes;
+    }
+
+    public static void setDecodeMaxBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Maximum decoded size must be >= 0");
+        }
+        decodeMaxBytes = bytes;
+    }
+
+    /**
+     * Most a compressed request body may expand on the server (decoded bytes per compressed byte), past the first
+     *  {@link BoundedInputStream#RATIO_MIN_BYTES} decoded
+     * <p/>LZF can't expand much more than 88 times (10 MB of zeros is 86:1), so the default is well under that, or
+     *  the limit would never stop an LZF bomb.  Gzip and deflate reach 1000:1.  Clients have their own limit,
+     *  {@link #getDecodeClientMaxRatio()}, since repetitive JSON or XML responses can legitimately pass this one.
+     * <p/>Property: restcompress.decode.maxRatio, default 50; 0 for no limit
+     */
+    public static double getDecodeMaxRatio() {
+        return decodeMaxRatio;
+    }
+
+    public static void setDecodeMaxRatio(double ratio) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("Maximum expansion ratio must be >= 0");
+        }
+        decodeMaxRatio = ratio;
+    }
+
+    /**
+     * Most a compressed response may expand when a client reads it, as {@link #getDecodeMaxRatio()} for servers
+     * <p/>Off by default: clients usually trust the servers they call.  Set it when calling untrusted servers.
+     * <p/>Property: restcompress.decode.clientMaxRatio, default 0 (no limit)
+     */
+    public static double getDecodeClientMaxRatio() {
+        return decodeClientMaxRatio;
+    }
+
+    public static void setDecodeClientMaxRatio(double ratio) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("Maximum expansion ratio must be >= 0");
+        }
+        decodeClientMaxRatio = ratio;
+    }
+}
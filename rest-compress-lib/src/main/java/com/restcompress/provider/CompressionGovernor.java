@@ -0,0 +1,240 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Trades compression ratio for throughput when the server is busy, so requests don't queue behind the compressor
+ * <p/>Moves between three modes, with hysteresis so it doesn't flap:
+ * <ul>
+ *     <li>{@link Mode#FULL}: normal compression</li>
+ *     <li>{@link Mode#FAST}: low effort.  Bodies under {@link CompressionConfig#getGovernorFastMinSize()} are sent
+ *      uncompressed, LZF uses the {@link LZF.Level#FAST} encoder and large LZF bodies are not spread over other
+ *      cores, and @Compress methods prefer the fastest codec the client accepts equally (lz4, snappy, lzf, then
+ *      the rest)</li>
+ *     <li>{@link Mode#IDENTITY}: nothing is compressed</li>
+ * </ul>
+ * CPU utilization drives the mode: FAST at {@link CompressionConfig#getGovernorFastCpu()}, IDENTITY at
+ *  {@link CompressionConfig#getGovernorIdentityCpu()}, stepping back down one mode at a time once it falls
+ *  {@link CompressionConfig#getGovernorHysteresis()} below the threshold.
+ * <p/>It also compares measured compression speed with the rate clients take compressed bytes.  Compression only
+ *  saves time while (1 - ratio) * compression speed exceeds the transfer rate (see the README); on links faster
+ *  than that, FULL drops to FAST even with spare CPU.
+ * <p/>CPU is sampled on request threads, at most once per {@link CompressionConfig#getGovernorInterval()},
+ *  so there is no background thread.  Disabled by default, see {@link CompressionConfig#isGovernorEnabled()}.
+ */
+public final class CompressionGovernor {
+
+    public enum Mode {
+        FULL, FAST, IDENTITY
+    }
+
+    /** Only bodies with at least this much compressed output measure the transfer rate; smaller ones fit in buffers */
+    static final long TRANSFER_SAMPLE_MIN = 64 * 1024;
+
+    /** Codecs in FAST mode preference order, fastest first */
+    private static final List<String> FAST_ORDER = Arrays.asList("lz4", "snappy", "lzf");
+
+    private static final Logger log = Logger.getLogger(CompressionGovernor.class.getName());
+
+    private static final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private static final AtomicLong nextSample = new AtomicLong(System.nanoTime());
+    private static volatile Mode mode = Mode.FULL;
+    private static volatile double cpuLoad = 0.0;
+
+    // Exponentially weighted moving averages of sampled bodies, guarded by the class lock
+    private static double compressRate = 0.0; // Uncompressed bytes per second of compression
+    private static double transferRate = 0.0; // Compressed bytes per second written to the client
+    private static double ratio = 0.0;
+
+    private CompressionGovernor() {
+    }
+
+    /**
+     * Current mode, re-evaluated if the sampling interval has passed
+     * @return Mode, always FULL if the governor is disabled
+     */
+    public static Mode getMode() {
+        if (!CompressionConfig.isGovernorEnabled()) {
+            return Mode.FULL;
+        }
+        long now = System.nanoTime();
+        long next = nextSample.get();
+        if (now - next >= 0 && nextSample.compareAndSet(next, now + TimeUnit.MILLISECONDS.toNanos(CompressionConfig.getGovernorInterval()))) {
+            update();
+        }
+        return mode;
+    }
+
+    /**
+     * Minimum body size to compress in the current mode
+     * @return {@link CompressionConfig#getMinSize()}, raised in FAST mode
+     */
+    public static int getMinSize() {
+        return getMinSize(null);
+    }
+
+    /**
+     * Minimum body size to compress with an encoding in the current mode
+     * @param encoding Content-Encoding, may be null
+     * @return {@link CompressionConfig#getDictionaryMinSize()} for shared-dictionary deflate,
+     *  otherwise {@link CompressionConfig#getMinSize()}; raised in FAST mode
+     */
+    public static int getMinSize(String encoding) {
+        int minSize = DeflateDictionaryCodec.NAME.equals(encoding) ? CompressionConfig.getDictionaryMinSize() : CompressionConfig.getMinSize();
+        return getMode() == Mode.FAST ? Math.max(minSize, CompressionConfig.getGovernorFastMinSize()) : minSize;
+    }
+
+    /** True if large LZF bodies may be compressed on several cores: parallel mode is enabled and there's CPU to spare */
+    public static boolean isParallelAllowed() {
+        return CompressionConfig.isParallelEnabled() && getMode() == Mode.FULL;
+    }
+
+    /**
+     * LZF encoder effort for the current mode
+     * @param level Level asked for, by the @LZF annotation
+     * @return {@link LZF.Level#FAST} in FAST mode, otherwise the level asked for
+     */
+    public static LZF.Level getLevel(LZF.Level level) {
+        return getMode() == Mode.FAST ? LZF.Level.FAST : level;
+    }
+
+    /**
+     * Encodings in preference order for the current mode; in FAST mode the fastest codecs come first
+     * @param encodings Encodings in configured preference order
+     * @return Same list, or a reordered copy
+     */
+    public static List<String> order(List<String> encodings) {
+        if (encodings.size() < 2 || getMode() != Mode.FAST) {
+            return encodings;
+        }
+        List<String> ordered = new ArrayList<String>(encodings.size());
+        for (String fast : FAST_ORDER) {
+            if (encodings.contains(fast)) {
+                ordered.add(fast);
+            }
+        }
+        for (String encoding : encodings) {
+            if (!FAST_ORDER.contains(encoding)) {
+                ordered.add(encoding);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Record a compressed body; 1 in {@link CompressionConfig#getSampleRate()} are measured
+     * @param uncompressed Bytes before compression
+     * @param compressed Bytes after compression
+     * @param compressNanos Time spent compressing
+     * @param transferNanos Time spent writing the compressed bytes to the client
+     */
+    public static void record(long uncompressed, long compressed, long compressNanos, long transferNanos) {
+        if (!CompressionConfig.isGovernorEnabled() || uncompressed <= 0 || compressNanos <= 0
+                || ThreadLocalRandom.current().nextInt(CompressionConfig.getSampleRate()) != 0) {
+            return;
+        }
+        double compressSample = uncompressed * 1e9 / compressNanos;
+        double ratioSample = (double) compressed / uncompressed;
+        synchronized (CompressionGovernor.class) {
+            compressRate = (compressRate == 0.0) ? compressSample : 0.8 * compressRate + 0.2 * compressSample;
+            ratio = (ratio == 0.0) ? ratioSample : 0.8 * ratio + 0.2 * ratioSample;
+            if (compressed >= TRANSFER_SAMPLE_MIN && transferNanos > 0) {
+                double transferSample = compressed * 1e9 / transferNanos;
+                transferRate = (transferRate == 0.0) ? transferSample : 0.8 * transferRate + 0.2 * transferSample;
+            }
+        }
+    }
+
+    /** Sample CPU and pick the mode */
+    private static void update() {
+        double cpu = sampleCpu();
+        cpuLoad = cpu;
+        double hysteresis = CompressionConfig.getGovernorHysteresis();
+        double fastCpu = CompressionConfig.getGovernorFastCpu();
+        double identityCpu = CompressionConfig.getGovernorIdentityCpu();
+        Mode current = mode;
+        Mode next;
+
+        if (cpu >= identityCpu) {
+            next = Mode.IDENTITY;
+        } else if (cpu >= fastCpu) {
+            next = current == Mode.IDENTITY && cpu >= identityCpu - hysteresis ? Mode.IDENTITY : Mode.FAST;
+        } else if (current == Mode.IDENTITY) {
+            next = Mode.FAST; // One step at a time
+        } else if (current == Mode.FAST && cpu >= fastCpu - hysteresis) {
+            next = Mode.FAST;
+        } else {
+            next = paysOff(current == Mode.FULL ? 1.0 : 1.0 - hysteresis) ? Mode.FULL : Mode.FAST;
+        }
+
+        if (next != current) {
+            mode = next;
+            log.info("Compression mode " + current + " -> " + next + " (CPU " + Math.round(cpu * 100) + "%, compress "
+                    + Math.round(getCompressionRate() / 1e6) + " MB/s, transfer " + Math.round(getTransferRate() / 1e6) + " MB/s)");
+        }
+    }
+
+    /**
+     * True if compressing saves more transfer time than it costs, or there isn't enough data to tell
+     * @param margin Fraction of the break-even point required, below 1 to only switch back clearly below it
+     */
+    private static synchronized boolean paysOff(double margin) {
+        if (compressRate == 0.0 || transferRate == 0.0) {
+            return true;
+        }
+        return transferRate < (1.0 - ratio) * compressRate * margin;
+    }
+
+    /** System CPU utilization from 0 to 1, or 0 if the JVM can't tell */
+    private static double sampleCpu() {
+        double load = -1;
+        try {
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                load = ((com.sun.management.OperatingSystemMXBean) os).getSystemCpuLoad();
+            }
+        } catch (LinkageError le) {
+            // Not a HotSpot-compatible JVM
+        }
+        if (load < 0) {
+            double average = os.getSystemLoadAverage();
+            load = average < 0 ? 0 : Math.min(1.0, average / CPUS);
+        }
+        return load;
+    }
+
+    /** Last sampled system CPU utilization, from 0 to 1 */
+    public static double getCpuLoad() {
+        return cpuLoad;
+    }
+
+    /** Average compression speed, in uncompressed bytes per second; 0 until measured */
+    public static synchronized double getCompressionRate() {
+        return compressRate;
+    }
+
+    /** Average rate clients take compressed bytes, in bytes per second; 0 until measured */
+    public static synchronized double getTransferRate() {
+        return transferRate;
+    }
+
+    /** Go back to FULL mode and forget measurements, ex: after changing settings */
+    public static synchronized void reset() {
+        mode = Mode.FULL;
+        compressRate = 0.0;
+        transferRate = 0.0;
+        ratio = 0.0;
+        nextSample.set(System.nanoTime());
+    }
+}
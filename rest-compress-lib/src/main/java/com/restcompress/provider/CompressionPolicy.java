@@ -0,0 +1,235 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.metrics.SkipReason;
+
+import javax.ws.rs.core.MediaType;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a response is worth compressing, before compression is committed
+ * <ul>
+ *     <li>Media types in {@link CompressionConfig#getExcludedTypes()} (already compressed) are skipped</li>
+ *     <li>Bodies under {@link CompressionConfig#getMinSize()} are skipped (checked by the encoding interceptors,
+ *      which hold back that many bytes before starting compression)</li>
+ *     <li>Each endpoint tracks its compression ratio from a sample of responses, and stops compressing
+ *      if it does not save enough, with an occasional probe to see if that has changed</li>
+ *     <li>Nothing is compressed while the {@link CompressionGovernor} is in IDENTITY mode, and the
+ *      minimum size is raised in its FAST mode</li>
+ * </ul>
+ * Settings are in {@link CompressionConfig}.
+ */
+public final class CompressionPolicy {
+
+    /** Endpoints always sample this many responses before deciding anything */
+    static final int MIN_SAMPLES = 8;
+
+    /** Server-sent events, always flushing */
+    static final MediaType SERVER_SENT_EVENTS = new MediaType("text", "event-stream");
+
+    private static final ConcurrentMap<String, EndpointRatio> endpoints = new ConcurrentHashMap<String, EndpointRatio>();
+
+    private CompressionPolicy() {
+    }
+
+    /**
+     * Compression ratio for one endpoint, as an exponentially weighted moving average of sampled responses
+     */
+    public static final class EndpointRatio {
+        private final AtomicLong responses = new AtomicLong();
+        private volatile double ratio = 0.0;
+        private volatile int samples = 0;
+        private volatile boolean disabled = false;
+
+        /**
+         * Decide if this response should be compressed
+         * @return Compress, unless the endpoint is disabled and this is not a probe
+         */
+        public boolean shouldCompress() {
+            long count = responses.incrementAndGet();
+            return !disabled || count % CompressionConfig.getProbeInterval() == 0;
+        }
+
+        /** Decide if this compressed response should be measured */
+        public boolean shouldSample() {
+            return disabled || samples < MIN_SAMPLES || responses.get() % CompressionConfig.getSampleRate() == 0;
+        }
+
+        /**
+         * Record a sampled response
+         * @param uncompressed Body size before compression
+         * @param compressed Body size after compression
+         */
+        public synchronized void record(long uncompressed, long compressed) {
+            if (uncompressed <= 0) {
+                return;
+            }
+            double sample = (double) compressed / uncompressed;
+            ratio = (samples == 0) ? sample : 0.8 * ratio + 0.2 * sample;
+            samples++;
+            disabled = samples >= MIN_SAMPLES && ratio > CompressionConfig.getMaxRatio();
+        }
+
+        /** Average compressed/uncompressed size, 0 if nothing sampled yet */
+        public double getRatio() {
+            return ratio;
+        }
+
+        /** True if this endpoint is currently sent uncompressed, because compression did not pay off */
+        public boolean isDisabled() {
+            return disabled;
+        }
+    }
+
+    /**
+     * Get ratio tracking for an endpoint
+     * @param endpoint Endpoint name, see {@link EndpointInterceptor}
+     * @return Ratio tracker, or null if endpoint is null
+     */
+    public static EndpointRatio forEndpoint(String endpoint) {
+        if (endpoint == null) {
+            return null;
+        }
+        EndpointRatio ratio = endpoints.get(endpoint);
+        if (ratio == null) {
+            EndpointRatio created = new EndpointRatio();
+            ratio = endpoints.putIfAbsent(endpoint, created);
+            if (ratio == null) {
+                ratio = created;
+            }
+        }
+        return ratio;
+    }
+
+    /** Check if the media type is compressible (not excluded) */
+    public static boolean isCompressible(MediaType type) {
+        if (type == null) {
+            return true;
+        }
+        for (MediaType excluded : CompressionConfig.getExcludedTypes()) {
+            if (excluded.isCompatible(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if a body of known size is too small to compress
+     * @param contentLength Content-Length header value, may be null
+     */
+    public static boolean isBelowMinSize(Object contentLength) {
+        return isBelowMinSize(contentLength, CompressionGovernor.getMinSize());
+    }
+
+    /**
+     * Check if a body of known size is too small to compress
+     * @param contentLength Content-Length header value, may be null
+     * @param minSize Minimum size, see {@link CompressionGovernor#getMinSize(String)}
+     */
+    public static boolean isBelowMinSize(Object contentLength, int minSize) {
+        if (contentLength == null) {
+            return false;
+        }
+        try {
+            long length = Long.parseLong(contentLength.toString());
+            return length >= 0 && length < minSize;
+        } catch (NumberFormatException nfe) {
+            return false;
+        }
+    }
+
+    /**
+     * Compressed bytes to buffer for a Content-Length, for an entity
+     * @param entity Response entity
+     * @return 0 to stream a {@link StreamingEntity} from the first chunk, otherwise {@link CompressionConfig#getBufferLimit()}
+     */
+    public static int getBufferLimit(Object entity) {
+        return entity instanceof StreamingEntity ? 0 : CompressionConfig.getBufferLimit();
+    }
+
+    /**
+     * Check if application flushes of a response should reach the client, see {@link FlushingLZFOutputStream}
+     * @param entity Response entity
+     * @param type Response media type, may be null
+     * @return True for a {@link FlushingEntity}, or server-sent events (text/event-stream)
+     */
+    public static boolean isFlushing(Object entity, MediaType type) {
+        return entity instanceof FlushingEntity || (type != null && SERVER_SENT_EVENTS.isCompatible(type));
+    }
+
+    /**
+     * Decide whether to compress a response, before the body is written
+     * @param type Response media type
+     * @param contentLength Content-Length header, if set
+     * @param ratio Endpoint ratio tracker, may be null
+     * @return True if compression should be attempted
+     */
+    public static boolean shouldCompress(MediaType type, Object contentLength, EndpointRatio ratio) {
+        return checkSkip(type, contentLength, ratio) == null;
+    }
+
+    /**
+     * Decide whether to compress a response, before the body is written, and why not
+     * @param type Response media type
+     * @param contentLength Content-Length header, if set
+     * @param ratio Endpoint ratio tracker, may be null
+     * @return Null if compression should be attempted, otherwise the reason to skip it
+     */
+    public static SkipReason checkSkip(MediaType type, Object contentLength, EndpointRatio ratio) {
+        return checkSkip(type, contentLength, ratio, CompressionGovernor.getMinSize());
+    }
+
+    /**
+     * Decide whether to compress a response with a given minimum size, before the body is written, and why not
+     * @param type Response media type
+     * @param contentLength Content-Length header, if set
+     * @param ratio Endpoint ratio tracker, may be null
+     * @param minSize Minimum size, see {@link CompressionGovernor#getMinSize(String)}
+     * @return Null if compression should be attempted, otherwise the reason to skip it
+     */
+    public static SkipReason checkSkip(MediaType type, Object contentLength, EndpointRatio ratio, int minSize) {
+        if (!isCompressible(type)) {
+            return SkipReason.MEDIA_TYPE;
+        }
+        if (isBelowMinSize(contentLength, minSize)) {
+            return SkipReason.MIN_SIZE;
+        }
+        if (CompressionGovernor.getMode() == CompressionGovernor.Mode.IDENTITY) {
+            return SkipReason.LOAD;
+        }
+        return ratio == null || ratio.shouldCompress() ? null : SkipReason.RATIO;
+    }
+
+    /**
+     * Find an annotation on the method or class, including JAX-RS annotations on a shared interface
+     * <p/>Used to find @Compress, @LZF and the other annotations, by the RESTEasy 2 and JAX-RS 2.0 providers alike.
+     * @param type Annotation to find
+     * @param declaring Resource class, or null to only look at the method
+     * @param method Resource method
+     * @return The annotation, or null if none
+     */
+    public static <A extends Annotation> A findAnnotation(Class<A> type, Class<?> declaring, Method method) {
+        A found = method.getAnnotation(type);
+        if (found != null || declaring == null) {
+            return found;
+        }
+        for (Class<?> iface : declaring.getInterfaces()) {
+            try {
+                found = iface.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(type);
+                if (found != null) return found;
+            } catch (NoSuchMethodException nsme) {
+                // Not declared by this interface
+            }
+        }
+        found = declaring.getAnnotation(type);
+        for (Class<?> iface : declaring.getInterfaces()) {
+            if (found != null) break;
+            found = iface.getAnnotation(type);
+        }
+        return found;
+    }
+}
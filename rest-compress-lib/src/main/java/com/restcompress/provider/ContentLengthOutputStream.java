@@ -0,0 +1,155 @@
+package com.restcompress.provider;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds compressed output in a pooled buffer, so small and medium bodies go out in one write with a Content-Length
+ * <p/>Without it, every compressed response uses chunked transfer-encoding.  If the output grows past the limit,
+ *  the buffer is written out and the rest streams through (chunked), so memory use per response stays bounded.
+ * <p/>Flushes are deferred while buffering.  Close only flushes; call {@link #finish(MultivaluedMap)} at the end
+ *  of the body, and {@link #release()} to return the buffer if the body fails part way.
+ */
+public class ContentLengthOutputStream extends OutputStream {
+
+    private static final Queue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger idleBuffers = new AtomicInteger();
+
+    private final OutputStream out;
+    private final int limit;
+    private byte[] buffer;
+    private int count = 0;
+    private boolean streaming = false;
+    private long writeNanos = 0;
+
+    /**
+     * @param out Stream to write to, with headers not yet committed
+     * @param limit Most bytes to buffer, see {@link CompressionConfig#getBufferLimit()}
+     */
+    public ContentLengthOutputStream(OutputStream out, int limit) {
+        this.out = out;
+        this.limit = limit;
+    }
+
+    private static byte[] borrow(int size) {
+        byte[] buffer = buffers.poll();
+        if (buffer == null) {
+            return new byte[size];
+        }
+        idleBuffers.decrementAndGet();
+        if (buffer.length != size) { // Limit was changed, drop the old size
+            return new byte[size];
+        }
+        return buffer;
+    }
+
+    private static void release(byte[] buffer) {
+        if (idleBuffers.incrementAndGet() <= CompressionConfig.getLzfPoolSize()) {
+            buffers.offer(buffer);
+        } else {
+            idleBuffers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!streaming && count < limit) {
+            if (buffer == null) {
+                buffer = borrow(limit);
+            }
+            buffer[count++] = (byte) b;
+            return;
+        }
+        startStreaming();
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!streaming && count + len <= limit) {
+            if (buffer == null) {
+                buffer = borrow(limit);
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+            return;
+        }
+        startStreaming();
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        writeNanos += System.nanoTime() - start;
+    }
+
+    /** Over the limit: send what is buffered, then pass everything through */
+    private void startStreaming() throws IOException {
+        if (streaming) {
+            return;
+        }
+        streaming = true;
+        if (count > 0) {
+            long start = System.nanoTime();
+            out.write(buffer, 0, count);
+            writeNanos += System.nanoTime() - start;
+        }
+        release();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (streaming) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * End of body: if still buffering, set Content-Length and send the body in one write
+     * @param headers Message headers, not yet committed if still buffering
+     * @return True if the body was sent with a Content-Length
+     */
+    public boolean finish(MultivaluedMap<String, Object> headers) throws IOException {
+        if (streaming) {
+            return false;
+        }
+        streaming = true;
+        try {
+            headers.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(count));
+            if (count > 0) {
+                long start = System.nanoTime();
+                out.write(buffer, 0, count);
+                writeNanos += System.nanoTime() - start;
+            }
+        } finally {
+            release();
+        }
+        return true;
+    }
+
+    /** Return the buffer to the pool; safe to call more than once */
+    public void release() {
+        if (buffer != null) {
+            byte[] released = buffer;
+            buffer = null;
+            release(released);
+        }
+    }
+
+    /** Time spent in bulk writes to the underlying stream */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /** True once output passed the limit and is streaming */
+    public boolean isStreaming() {
+        return streaming;
+    }
+}
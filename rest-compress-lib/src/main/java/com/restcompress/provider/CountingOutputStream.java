@@ -0,0 +1,46 @@
+package com.restcompress.provider;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts bytes written through to the underlying stream, and time spent writing them
+ * <p/>Close only flushes, so compressors closed to finish their format leave the response stream open.
+ */
+class CountingOutputStream extends FilterOutputStream {
+    private long count = 0;
+    private long nanos = 0;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        nanos += System.nanoTime() - start;
+        count += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /** Time spent in bulk writes to the underlying stream */
+    long getNanos() {
+        return nanos;
+    }
+}
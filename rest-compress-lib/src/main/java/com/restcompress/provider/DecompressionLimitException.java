@@ -0,0 +1,13 @@
+package com.restcompress.provider;
+
+import java.io.IOException;
+
+/**
+ * A compressed body passed a decompression limit, see {@link BoundedInputStream}
+ */
+public class DecompressionLimitException extends IOException {
+
+    public DecompressionLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,290 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.DictionaryRegistry;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.SkipReason;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Committed compressing output, which does not compress headers, and only starts compressing once the body
+ *  is larger than the minimum size
+ * <p/>Until then, the body is held back.  If the body ends below the minimum size, {@link #finish()} sends it
+ *  uncompressed with a Content-Length, removing the Content-Encoding header (headers are not committed yet).
+ * <p/>Compressed output up to {@link CompressionConfig#getBufferLimit()} is buffered too, and sent with a
+ *  Content-Length; past that, it streams with chunked transfer-encoding.
+ * <p/>Subclasses provide the compressing stream.  Containers commit headers on the first write to the entity
+ *  stream, which is {@link #commit()} here, so this works for the RESTEasy 2 interceptors and JAX-RS 2.0 alike.
+ */
+public abstract class DeferredCompressionOutputStream extends OutputStream {
+
+    private final OutputStream original;
+    /** Where writes go: the compressor, once committed */
+    private OutputStream delegate;
+    private boolean committed = false;
+    private final MultivaluedMap<String, Object> headers;
+    private byte[] pending;
+    private int pendingCount = 0;
+    private final int bufferLimit;
+    private final boolean client;
+    private ContentLengthOutputStream buffer;
+    private CountingOutputStream counter;
+    private OutputStream compressor;
+    private long uncompressedBytes = 0;
+    private long compressorNanos = 0;
+    private boolean finished = false;
+    private String timingEncoding;
+    private long timingStart = 0;
+
+    /**
+     * @param delegate Underlying HTTP output stream
+     * @param headers Message headers, updated if the body is sent uncompressed
+     * @param minSize Bytes to hold back before compressing, 0 to compress from the first byte
+     */
+    protected DeferredCompressionOutputStream(OutputStream delegate, MultivaluedMap<String, Object> headers, int minSize) {
+        this(delegate, headers, minSize, CompressionConfig.getBufferLimit());
+    }
+
+    /**
+     * @param delegate Underlying HTTP output stream
+     * @param headers Message headers, updated if the body is sent uncompressed or with a Content-Length
+     * @param minSize Bytes to hold back before compressing, 0 to compress from the first byte
+     * @param bufferLimit Compressed bytes to buffer, so the body can be sent with a Content-Length; 0 to always stream
+     */
+    protected DeferredCompressionOutputStream(OutputStream delegate, MultivaluedMap<String, Object> headers, int minSize, int bufferLimit) {
+        this(delegate, headers, minSize, bufferLimit, false);
+    }
+
+    /**
+     * @param delegate Underlying HTTP output stream
+     * @param headers Message headers, updated if the body is sent uncompressed or with a Content-Length
+     * @param minSize Bytes to hold back before compressing, 0 to compress from the first byte
+     * @param bufferLimit Compressed bytes to buffer, so the body can be sent with a Content-Length; 0 to always stream
+     * @param client True for a client request body: never buffered, and never given a Content-Length, which the
+     *  client runtime sets itself (HttpClient rejects a request that already has one)
+     */
+    protected DeferredCompressionOutputStream(OutputStream delegate, MultivaluedMap<String, Object> headers, int minSize, int bufferLimit, boolean client) {
+        this.original = delegate;
+        this.delegate = delegate;
+        this.headers = headers;
+        this.pending = minSize > 0 ? new byte[minSize] : null;
+        this.bufferLimit = client ? 0 : bufferLimit;
+        this.client = client;
+    }
+
+    /**
+     * Create the compressing stream, once the body is known to be large enough
+     * @param out Stream for compressed output
+     * @return Stream accepting uncompressed data
+     */
+    protected abstract OutputStream openCompressor(OutputStream out) throws IOException;
+
+    /**
+     * Finish the compressed format and release any resources; the stream given to the compressor ignores close(),
+     *  so the underlying stream stays open
+     * @param compressor Stream returned by {@link #openCompressor(OutputStream)}
+     */
+    protected void closeCompressor(OutputStream compressor) throws IOException {
+        compressor.close();
+    }
+
+    /**
+     * Start compressed output, on the first write past the minimum size; the headers are committed after this
+     * <p/>Subclasses may override to set headers first, calling this after.
+     */
+    protected void commit() {
+        if (committed) return;
+        committed = true;
+
+        // swap compressed OutputStream in when we are ready to write
+        if (bufferLimit > 0) {
+            buffer = new ContentLengthOutputStream(original, bufferLimit);
+        }
+        counter = new CountingOutputStream(buffer != null ? buffer : original);
+        long start = System.nanoTime(); // Codecs may write a format header here, which the counter times too
+        try {
+            compressor = openCompressor(counter);
+        } catch (IOException ioe) {
+            throw new WebApplicationException(ioe);
+        }
+        compressorNanos += System.nanoTime() - start;
+        delegate = compressor;
+    }
+
+    /**
+     * Add a Server-Timing header when the body is finished, if it is still possible then, see {@link ServerTiming}
+     * @param encoding Encoding being compressed with
+     */
+    public void startTiming(String encoding) {
+        timingEncoding = encoding;
+        timingStart = System.nanoTime();
+    }
+
+    /** Start compressing, sending the held-back bytes first */
+    private void startCompressing() throws IOException {
+        byte[] held = pending;
+        pending = null;
+        commit();
+        if (pendingCount > 0) {
+            long start = System.nanoTime();
+            delegate.write(held, 0, pendingCount);
+            compressorNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        uncompressedBytes++;
+        if (pending != null) {
+            if (pendingCount < pending.length) {
+                pending[pendingCount++] = (byte) b;
+                return;
+            }
+            startCompressing();
+        }
+        commit();
+        delegate.write(b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        uncompressedBytes += len;
+        if (pending != null) {
+            if (pendingCount + len <= pending.length) {
+                System.arraycopy(b, off, pending, pendingCount, len);
+                pendingCount += len;
+                return;
+            }
+            startCompressing();
+        }
+        commit();
+        long start = System.nanoTime(); // Single byte writes aren't timed, it would cost more than compressing them
+        delegate.write(b, off, len);
+        compressorNanos += System.nanoTime() - start;
+    }
+
+    /** Flushes are deferred while the body is still below minimum size */
+    @Override
+    public void flush() throws IOException {
+        if (pending == null) {
+            delegate.flush();
+        }
+    }
+
+    /** Entity writers closing the stream only flush it; the interceptor calls {@link #finish()} to end the body */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * End the body: send it uncompressed if below minimum size, or finish compression
+     * @return True if the body was compressed
+     */
+    public boolean finish() throws IOException {
+        if (finished) {
+            return isCompressed();
+        }
+        if (pending != null || !committed) { // Below minimum size, or empty
+            finished = true;
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+            headers.remove(DictionaryRegistry.CONTENT_DICTIONARY);
+            if (!client) {
+                headers.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(pendingCount));
+            }
+            if (timingStart != 0) {
+                ServerTiming.add(headers, System.nanoTime() - timingStart, 0, null, pendingCount, pendingCount);
+            }
+            if (pendingCount > 0) {
+                original.write(pending, 0, pendingCount);
+            }
+            pending = null;
+            return false;
+        }
+        endCompressor();
+        if (timingStart != 0 && buffer != null && !buffer.isStreaming()) { // Headers still open
+            long compressNanos = getCompressNanos();
+            ServerTiming.add(headers, System.nanoTime() - timingStart - compressNanos, compressNanos, timingEncoding,
+                    uncompressedBytes, getCompressedBytes());
+        }
+        if (buffer != null) {
+            buffer.finish(headers); // Sends the body with a Content-Length, unless it was too big and is streaming
+        }
+        return isCompressed();
+    }
+
+    private void endCompressor() throws IOException {
+        if (!finished) {
+            finished = true;
+            if (compressor != null) {
+                long start = System.nanoTime();
+                closeCompressor(compressor);
+                compressorNanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /** Close the compressor if open, releasing its resources; safe to call more than once, including after errors */
+    public void release() throws IOException {
+        try {
+            endCompressor();
+        } finally {
+            if (buffer != null) {
+                buffer.release();
+            }
+        }
+    }
+
+    /** True once compressed output has started */
+    public boolean isCompressed() {
+        return compressor != null;
+    }
+
+    /** Bytes of body written, before compression */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /** Bytes of compressed output so far */
+    public long getCompressedBytes() {
+        return counter == null ? 0 : counter.getCount();
+    }
+
+    /**
+     * Record this body in the endpoint's metrics, and the {@link CompressionGovernor}'s measurements, once finished
+     * @param metrics Metrics, or null if disabled
+     */
+    public void recordMetrics(EndpointMetrics metrics) {
+        if (isCompressed()) {
+            long nanos = getCompressNanos();
+            if (metrics != null) {
+                metrics.recordEncode(getUncompressedBytes(), getCompressedBytes(), nanos);
+            }
+            CompressionGovernor.record(getUncompressedBytes(), getCompressedBytes(), nanos, getTransferNanos());
+        } else if (metrics != null) {
+            metrics.recordSkip(SkipReason.MIN_SIZE);
+        }
+    }
+
+    /** Time spent compressing, not counting writes of the compressed output */
+    public long getCompressNanos() {
+        return counter == null ? 0 : Math.max(0, compressorNanos - counter.getNanos());
+    }
+
+    /** Time spent writing compressed output to the response, which blocks when the client is slower than the server */
+    public long getTransferNanos() {
+        if (buffer != null) {
+            return buffer.getWriteNanos();
+        }
+        return counter == null ? 0 : counter.getNanos();
+    }
+}
@@ -0,0 +1,157 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.CompressionCodec;
+import org.jboss.resteasy.annotations.interception.ClientInterceptor;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.client.ClientRequest;
+import org.jboss.resteasy.client.ClientResponse;
+import org.jboss.resteasy.client.core.BaseClientResponse;
+import org.jboss.resteasy.spi.interception.ClientExecutionContext;
+import org.jboss.resteasy.spi.interception.ClientExecutionInterceptor;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Client interceptor that asks @DeltaEncoded resources for deltas against the last version it received,
+ *  and rebuilds the whole body, so callers see an ordinary 200 response
+ * <p/>Keeps the uncompressed body of GET responses that carry an ETag and "Vary: A-IM" (see
+ *  {@link CompressionConfig#getDeltaClientMaxBytes()}).  The next GET of the same URI and Accept sends
+ *  "A-IM: lzf-delta" and If-None-Match with that version; a 226 IM Used delta is applied to it, and a 304
+ *  answered with it.  Requests that set their own If-None-Match are left alone.
+ * <p/>Register with clients, like AcceptLZFClientInterceptor.
+ */
+@Provider
+@ClientInterceptor
+@HeaderDecoratorPrecedence
+public class DeltaClientInterceptor implements ClientExecutionInterceptor {
+
+    /** Serves a body held in memory, releasing the real connection when done */
+    private static class BufferedStreamFactory implements BaseClientResponse.BaseClientResponseStreamFactory {
+        private final byte[] body;
+        private final BaseClientResponse.BaseClientResponseStreamFactory connection;
+
+        BufferedStreamFactory(byte[] body, BaseClientResponse.BaseClientResponseStreamFactory connection) {
+            this.body = body;
+            this.connection = connection;
+        }
+
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream(body);
+        }
+
+        public void performReleaseConnection() {
+            connection.performReleaseConnection();
+        }
+    }
+
+    public ClientResponse execute(ClientExecutionContext ctx) throws Exception {
+        ClientRequest request = ctx.getRequest();
+        if (!HttpMethod.GET.equals(request.getHttpMethod())) {
+            return ctx.proceed();
+        }
+        Object accept = request.getHeadersAsObjects().get(HttpHeaders.ACCEPT);
+        String key = request.getUri() + ' ' + (accept == null ? "" : accept.toString());
+        DeltaHistory.Version held = null;
+        if (request.getHeadersAsObjects().getFirst(HttpHeaders.IF_NONE_MATCH) == null) {
+            held = DeltaHistory.CLIENT.get(key, null);
+            if (held != null) {
+                request.header(LZFDelta.A_IM, LZFDelta.NAME);
+                request.header(HttpHeaders.IF_NONE_MATCH, held.etag);
+            }
+        }
+
+        ClientResponse<?> response = ctx.proceed();
+        if (!(response instanceof BaseClientResponse)) {
+            return response;
+        }
+        BaseClientResponse<?> base = (BaseClientResponse<?>) response;
+        MultivaluedMap<String, String> headers = base.getHeaders();
+        String etag = headers.getFirst(HttpHeaders.ETAG);
+
+        if (held != null && base.getStatus() == 304) {
+            headers.putSingle(HttpHeaders.CONTENT_TYPE, held.mediaType);
+            replace(base, held.body);
+        } else if (base.getStatus() == LZFDelta.IM_USED && LZFDelta.NAME.equalsIgnoreCase(headers.getFirst(LZFDelta.IM))) {
+            if (held == null || !held.etag.equals(headers.getFirst(LZFDelta.DELTA_BASE))) {
+                base.releaseConnection();
+                throw new IOException("Delta response for " + request.getUri() + " is not against the version held");
+            }
+            byte[] body = LZFDelta.decode(held.body, read(base));
+            headers.remove(LZFDelta.IM);
+            headers.remove(LZFDelta.DELTA_BASE);
+            if (etag != null) {
+                DeltaHistory.CLIENT.put(key, new DeltaHistory.Version(etag, held.mediaType, body), 1);
+            }
+            replace(base, body);
+        } else if (base.getStatus() == 200 && etag != null && variesOnIM(headers.get(HttpHeaders.VARY))) {
+            byte[] body = read(base);
+            String encoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+            if (encoding != null && !encoding.equalsIgnoreCase("identity")) {
+                CompressionCodec codec = CodecRegistry.get(encoding);
+                if (codec == null) { // Can't keep it as a base, leave it for the reader interceptors
+                    base.setStreamFactory(new BufferedStreamFactory(body, base.getStreamFactory()));
+                    return base;
+                }
+                body = decode(codec, body);
+                headers.remove(HttpHeaders.CONTENT_ENCODING);
+            }
+            String mediaType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+            DeltaHistory.CLIENT.put(key, new DeltaHistory.Version(etag, mediaType, body), 1);
+            replace(base, body);
+        }
+        return base;
+    }
+
+    /** Make the response a 200 with this body */
+    private static void replace(BaseClientResponse<?> response, byte[] body) {
+        response.setStatus(200);
+        response.getHeaders().putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(body.length));
+        response.setStreamFactory(new BufferedStreamFactory(body, response.getStreamFactory()));
+    }
+
+    private static byte[] read(BaseClientResponse<?> response) throws IOException {
+        InputStream in = response.getStreamFactory().getInputStream();
+        return in == null ? new byte[0] : copy(in);
+    }
+
+    private static byte[] decode(CompressionCodec codec, byte[] body) throws IOException {
+        BoundedInputStream.Source source = BoundedInputStream.source(new ByteArrayInputStream(body));
+        InputStream in = new BoundedInputStream(codec.decompress(source), source, true);
+        try {
+            return copy(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] copy(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean variesOnIM(List<String> vary) {
+        if (vary != null) {
+            for (String value : vary) {
+                if (value.toLowerCase(Locale.ENGLISH).contains(LZFDelta.A_IM.toLowerCase(Locale.ENGLISH))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package com.restcompress.provider;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Send deltas against a version the client already holds, instead of the whole body, for large GET resources
+ *  that change a little at a time (RFC 3229 delta encoding, with the {@link LZFDelta} format)
+ * <p/>Every response gets an ETag of its uncompressed body, and the server keeps the last few versions of each
+ *  resource (see {@link CompressionConfig#getDeltaMaxBytes()}).  A request with "A-IM: lzf-delta" and an
+ *  If-None-Match naming a kept version gets 226 IM Used, with the LZF-compressed delta; one naming the current
+ *  version gets 304 Not Modified.  Other requests get the whole body, compressed as usual.
+ *  {@link DeltaClientInterceptor} does all this for clients, and hands back the whole new body.
+ * <p/>Combine with @Compress or @LZF for the full responses.  The body is serialized and compressed by
+ *  {@link DeltaEncodingInterceptor} itself, like a @CacheCompressed hit, so don't combine it with @CacheCompressed.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DeltaEncoded {
+
+    /** Versions of each resource kept to compute deltas against */
+    int history() default 4;
+}
@@ -0,0 +1,213 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.CompressionCodec;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+import com.restcompress.provider.codec.DictionaryRegistry;
+import com.restcompress.provider.codec.LZFCodec;
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.HttpResponse;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+import org.jboss.resteasy.spi.interception.AcceptedByMethod;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterInterceptor;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Server interceptor sending deltas for @DeltaEncoded GET methods, see {@link DeltaEncoded}
+ * <p/>Serializes the entity itself, to get the uncompressed body to version and diff, then writes one of:
+ *  304 Not Modified, if the client holds the current version; 226 IM Used with an {@link LZFDelta}, if the client
+ *  accepts lzf-delta and holds a kept version; or the whole body, compressed with the negotiated encoding.
+ *  Deltas are only sent if they are less than half the size of the body.
+ * <p/>The ETag is of the uncompressed body (the instance, in RFC 3229 terms), so it is the same for every encoding.
+ */
+@Provider
+@ServerInterceptor
+@HeaderDecoratorPrecedence
+public class DeltaEncodingInterceptor implements MessageBodyWriterInterceptor, AcceptedByMethod {
+
+    @Context
+    protected HttpRequest request;
+
+    protected String endpoint;
+
+    /** Encodings available for full responses from this method, in preference order; empty if not compressed */
+    protected List<String> encodings;
+
+    protected int history;
+
+    /**
+     * Only apply to methods (or classes) annotated with @DeltaEncoded
+     * @param declaring Resource class
+     * @param method Resource method
+     * @return True if this method should send deltas
+     */
+    public boolean accept(Class declaring, Method method) {
+        DeltaEncoded delta = CompressionPolicy.findAnnotation(DeltaEncoded.class, declaring, method);
+        if (delta == null) {
+            return false;
+        }
+        endpoint = (declaring != null ? declaring : method.getDeclaringClass()).getSimpleName() + "." + method.getName();
+        history = delta.history();
+        Compress compress = CompressHeaderInterceptor.findAnnotation(declaring, method);
+        if (compress != null) {
+            encodings = DictionaryRegistry.usable(CodecRegistry.available(compress.value()), null);
+        } else if (CompressionPolicy.findAnnotation(LZF.class, declaring, method) != null) {
+            encodings = Collections.singletonList(LZFCodec.NAME);
+        } else {
+            encodings = Collections.emptyList();
+        }
+        return true;
+    }
+
+    /**
+     * Write a 304, a delta, or the whole body
+     * @param context
+     * @throws IOException
+     * @throws WebApplicationException
+     */
+    @SuppressWarnings("unchecked")
+    public void write(MessageBodyWriterContext context) throws IOException, WebApplicationException {
+        HttpResponse response = ResteasyProviderFactory.getContextData(HttpResponse.class);
+        if (!HttpMethod.GET.equals(request.getHttpMethod()) || response == null || context.getMediaType() == null) {
+            context.proceed();
+            return;
+        }
+        Providers providers = ResteasyProviderFactory.getContextData(Providers.class);
+        if (providers == null) {
+            providers = ResteasyProviderFactory.getInstance();
+        }
+        MessageBodyWriter writer = providers.getMessageBodyWriter(context.getType(), context.getGenericType(),
+                context.getAnnotations(), context.getMediaType());
+        if (writer == null) {
+            context.proceed(); // Fails as usual
+            return;
+        }
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        writer.writeTo(context.getEntity(), context.getType(), context.getGenericType(), context.getAnnotations(),
+                context.getMediaType(), headers, serialized);
+        byte[] body = serialized.toByteArray();
+
+        String mediaType = context.getMediaType().toString();
+        List<String> accept = request.getHttpHeaders().getRequestHeader(HttpHeaders.ACCEPT);
+        String key = endpoint + ' ' + request.getUri().getRequestUri() + ' ' + (accept == null ? "" : accept.toString());
+        String etag = CompressedResponseCache.etag(body, null);
+        DeltaHistory.SERVER.put(key, new DeltaHistory.Version(etag, mediaType, body), history);
+
+        headers.putSingle(HttpHeaders.ETAG, etag);
+        headers.add(HttpHeaders.VARY, LZFDelta.A_IM);
+        if (!encodings.isEmpty()) {
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+
+        List<String> ifNoneMatch = request.getHttpHeaders().getRequestHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+            response.setStatus(304);
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            return;
+        }
+
+        DeltaHistory.Version base = ifNoneMatch != null && acceptsDelta() ? findBase(key, ifNoneMatch) : null;
+        if (base != null) {
+            byte[] delta = LZFDelta.encode(base.body, body);
+            if (delta.length < body.length / 2) {
+                response.setStatus(LZFDelta.IM_USED);
+                headers.remove(HttpHeaders.CONTENT_ENCODING);
+                headers.remove(DictionaryRegistry.CONTENT_DICTIONARY);
+                headers.putSingle(LZFDelta.IM, LZFDelta.NAME);
+                headers.putSingle(LZFDelta.DELTA_BASE, base.etag);
+                write(context.getOutputStream(), headers, delta);
+                return;
+            }
+        }
+
+        Object current = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+        String encoding = current != null ? current.toString() : encodings.isEmpty() ? null
+                : AcceptEncoding.parse(request.getHttpHeaders().getRequestHeader(HttpHeaders.ACCEPT_ENCODING))
+                    .negotiate(CompressionGovernor.order(encodings));
+        CompressionCodec codec = encoding == null ? null : CodecRegistry.get(encoding);
+        if (codec != null && body.length >= CompressionGovernor.getMinSize(codec.getName())
+                && CompressionPolicy.isCompressible(context.getMediaType())) {
+            codec = DeflateDictionaryCodec.bind(codec, headers.getFirst(DictionaryRegistry.CONTENT_DICTIONARY));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            OutputStream out = codec.compress(compressed);
+            out.write(body);
+            out.close();
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, codec.getName());
+            write(context.getOutputStream(), headers, compressed.toByteArray());
+        } else {
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+            headers.remove(DictionaryRegistry.CONTENT_DICTIONARY);
+            write(context.getOutputStream(), headers, body);
+        }
+    }
+
+    private static void write(OutputStream out, MultivaluedMap<String, Object> headers, byte[] body) throws IOException {
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, Integer.toString(body.length));
+        out.write(body);
+    }
+
+    private boolean acceptsDelta() {
+        List<String> aim = request.getHttpHeaders().getRequestHeader(LZFDelta.A_IM);
+        if (aim != null) {
+            for (String value : aim) {
+                for (String im : value.split(",")) {
+                    int params = im.indexOf(';');
+                    if ((params >= 0 ? im.substring(0, params) : im).trim().equalsIgnoreCase(LZFDelta.NAME)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Newest kept version the client names in If-None-Match */
+    private static DeltaHistory.Version findBase(String key, List<String> ifNoneMatch) {
+        for (String value : ifNoneMatch) {
+            for (String tag : value.split(",")) {
+                DeltaHistory.Version base = DeltaHistory.SERVER.get(key, stripWeak(tag.trim()));
+                if (base != null) {
+                    return base;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        for (String value : ifNoneMatch) {
+            for (String tag : value.split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,116 @@
+package com.restcompress.provider;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recent versions of resources, by ETag, to compute or apply deltas against (see {@link DeltaEncoded})
+ * <p/>Keeps a few versions per resource, newest first, and is bounded by total body bytes, dropping the least
+ *  recently used resources first.  One instance for the server, one for clients, with their own limits.
+ */
+final class DeltaHistory {
+
+    /** One version of a resource */
+    static final class Version {
+        final String etag;
+        final String mediaType;
+        final byte[] body;
+
+        Version(String etag, String mediaType, byte[] body) {
+            this.etag = etag;
+            this.mediaType = mediaType;
+            this.body = body;
+        }
+    }
+
+    static final DeltaHistory SERVER = new DeltaHistory(false);
+    static final DeltaHistory CLIENT = new DeltaHistory(true);
+
+    private final boolean client;
+    private final LinkedHashMap<String, LinkedList<Version>> entries = new LinkedHashMap<String, LinkedList<Version>>(64, 0.75f, true);
+    private long size = 0;
+
+    private DeltaHistory(boolean client) {
+        this.client = client;
+    }
+
+    private long maxBytes() {
+        return client ? CompressionConfig.getDeltaClientMaxBytes() : CompressionConfig.getDeltaMaxBytes();
+    }
+
+    /**
+     * Add a version as the newest of its resource, unless it already is
+     * @param key Resource key
+     * @param version Version
+     * @param keep Versions of the resource to keep
+     */
+    synchronized void put(String key, Version version, int keep) {
+        if (version.body.length > maxBytes()) {
+            return;
+        }
+        LinkedList<Version> versions = entries.get(key);
+        if (versions == null) {
+            versions = new LinkedList<Version>();
+            entries.put(key, versions);
+        } else if (!versions.isEmpty() && versions.getFirst().etag.equals(version.etag)) {
+            return;
+        }
+        versions.addFirst(version);
+        size += version.body.length;
+        while (versions.size() > Math.max(1, keep)) {
+            size -= versions.removeLast().body.length;
+        }
+        Iterator<Map.Entry<String, LinkedList<Version>>> eldest = entries.entrySet().iterator();
+        while (size > maxBytes() && eldest.hasNext()) {
+            Map.Entry<String, LinkedList<Version>> entry = eldest.next();
+            if (entry.getValue() != versions) {
+                size -= total(entry.getValue());
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Find a version of a resource
+     * @param key Resource key
+     * @param etag ETag of the version, or null for the newest
+     * @return Version, or null if not kept
+     */
+    synchronized Version get(String key, String etag) {
+        LinkedList<Version> versions = entries.get(key);
+        if (versions == null || versions.isEmpty()) {
+            return null;
+        }
+        if (etag == null) {
+            return versions.getFirst();
+        }
+        for (Version version : versions) {
+            if (version.etag.equals(etag)) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /** Drop all versions */
+    synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /** @return Total body bytes held */
+    synchronized long getSize() {
+        return size;
+    }
+
+    private static long total(List<Version> versions) {
+        long total = 0;
+        for (Version version : versions) {
+            total += version.body.length;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,66 @@
+package com.restcompress.provider;
+
+import org.jboss.resteasy.annotations.interception.HeaderDecoratorPrecedence;
+import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.spi.interception.AcceptedByMethod;
+import org.jboss.resteasy.spi.interception.MessageBodyReaderContext;
+import org.jboss.resteasy.spi.interception.MessageBodyReaderInterceptor;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
+import org.jboss.resteasy.spi.interception.MessageBodyWriterInterceptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * Server interceptor that records which resource method produced a response, for per-endpoint compression statistics
+ * <p/>The name ("ResourceClass.method") is stored as a context attribute, so the encoding and decoding interceptors
+ *  (which are shared by all methods) can look it up with {@link #getEndpoint(MessageBodyWriterContext)}
+ *  or {@link #getEndpoint(MessageBodyReaderContext)}.
+ */
+@Provider
+@ServerInterceptor
+@HeaderDecoratorPrecedence
+public class EndpointInterceptor implements MessageBodyWriterInterceptor, MessageBodyReaderInterceptor, AcceptedByMethod {
+
+    /** Context attribute holding the endpoint name */
+    public static final String ATTRIBUTE = EndpointInterceptor.class.getName() + ".endpoint";
+
+    protected String endpoint;
+
+    public boolean accept(Class declaring, Method method) {
+        endpoint = (declaring != null ? declaring : method.getDeclaringClass()).getSimpleName() + "." + method.getName();
+        return true;
+    }
+
+    public void write(MessageBodyWriterContext context) throws IOException, WebApplicationException {
+        context.setAttribute(ATTRIBUTE, endpoint);
+        context.proceed();
+    }
+
+    public Object read(MessageBodyReaderContext context) throws IOException, WebApplicationException {
+        context.setAttribute(ATTRIBUTE, endpoint);
+        return context.proceed();
+    }
+
+    /**
+     * Get the name of the resource method writing this body
+     * @param context Writer context
+     * @return Name, or null if not known (client side, or not produced by a resource method)
+     */
+    public static String getEndpoint(MessageBodyWriterContext context) {
+        Object endpoint = context.getAttribute(ATTRIBUTE);
+        return endpoint == null ? null : endpoint.toString();
+    }
+
+    /**
+     * Get the name of the resource method reading this body
+     * @param context Reader context
+     * @return Name, or null if not known (client side)
+     */
+    public static String getEndpoint(MessageBodyReaderContext context) {
+        Object endpoint = context.getAttribute(ATTRIBUTE);
+        return endpoint == null ? null : endpoint.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package com.restcompress.provider;
+
+/**
+ * Streaming response entity whose flushes matter: progressive output, long-poll replies, event streams
+ * <p/>The LZF encoding interceptor ends a compressed chunk on each flush, so what has been written so far
+ *  reaches the client promptly while the rest of the body is still being produced.  Flushes of less than
+ *  {@link CompressionConfig#getFlushMinChunk()} bytes are held back for at most
+ *  {@link CompressionConfig#getFlushMaxLatency()}, so a burst of tiny writes doesn't become tiny chunks.
+ * <p/>Responses with media type text/event-stream are treated the same way, whatever their entity.
+ * @see FlushingLZFOutputStream
+ */
+public interface FlushingEntity extends StreamingEntity {
+}
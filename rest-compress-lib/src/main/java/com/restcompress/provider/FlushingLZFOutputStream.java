@@ -0,0 +1,179 @@
+package com.restcompress.provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pooled LZF compressing stream for responses written a piece at a time (see {@link FlushingEntity}),
+ *  where application flushes become chunk boundaries
+ * <p/>A flush with at least {@link CompressionConfig#getFlushMinChunk()} bytes buffered ends the current chunk and
+ *  flushes the response at once.  A smaller flush is deferred: the chunk is sent when enough data follows, or
+ *  after {@link CompressionConfig#getFlushMaxLatency()}, from a flusher thread, whichever comes first.  So clients
+ *  get output promptly, and a burst of tiny writes and flushes still compresses as one chunk.
+ * <p/>Writes, flushes and deferred flushes are synchronized on the stream, so the response is only ever written by
+ *  one thread at a time.  A failure writing a deferred flush is thrown by the next write or flush.
+ */
+public class FlushingLZFOutputStream extends PooledLZFOutputStream {
+
+    /** Lazily created, so applications that never flush-stream never start the threads */
+    private static class Holder {
+        static final ScheduledThreadPoolExecutor TIMER = createTimer();
+        static final ExecutorService FLUSHER = createFlusher();
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "restcompress-flush-timer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        timer.setRemoveOnCancelPolicy(true); // Most deferred flushes are cancelled by more data
+        return timer;
+    }
+
+    /** One thread per deferred flush in progress, since each may block on a slow client; idle ones end */
+    private static ExecutorService createFlusher() {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "restcompress-flush-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    private final int minChunk;
+    private final long maxLatency;
+    private boolean flushRequested = false;
+    private ScheduledFuture<?> timer;
+    private IOException failure;
+
+    private final Runnable deferredFlush = new Runnable() {
+        public void run() {
+            synchronized (FlushingLZFOutputStream.this) {
+                if (timer != null && timer.isDone()) {
+                    timer = null;
+                }
+                if (flushRequested && buffers != null) {
+                    try {
+                        writeChunk();
+                    } catch (IOException ioe) {
+                        failure = ioe;
+                    }
+                }
+            }
+        }
+    };
+
+    /** Runs on the timer thread, which only hands the flush over, so one slow client can't hold up the others */
+    private final Runnable dispatchFlush = new Runnable() {
+        public void run() {
+            Holder.FLUSHER.execute(deferredFlush);
+        }
+    };
+
+    protected FlushingLZFOutputStream(OutputStream out) {
+        this(out, LZF.Level.DEFAULT);
+    }
+
+    protected FlushingLZFOutputStream(OutputStream out, LZF.Level level) {
+        this(out, level, CompressionConfig.getFlushMinChunk(), CompressionConfig.getFlushMaxLatency());
+    }
+
+    /**
+     * @param out Stream to write LZF data to, not closed when this stream is closed
+     * @param minChunk Smallest chunk a flush ends straight away, 0 for every flush
+     * @param maxLatency Milliseconds a deferred flush waits at most, 0 to wait for more data or the end of the body
+     */
+    protected FlushingLZFOutputStream(OutputStream out, int minChunk, long maxLatency) {
+        this(out, LZF.Level.DEFAULT, minChunk, maxLatency);
+    }
+
+    /**
+     * @param out Stream to write LZF data to, not closed when this stream is closed
+     * @param level Compression level
+     * @param minChunk Smallest chunk a flush ends straight away, 0 for every flush
+     * @param maxLatency Milliseconds a deferred flush waits at most, 0 to wait for more data or the end of the body
+     */
+    protected FlushingLZFOutputStream(OutputStream out, LZF.Level level, int minChunk, long maxLatency) {
+        super(out, level);
+        this.minChunk = minChunk;
+        this.maxLatency = maxLatency;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        checkFailed();
+        super.write(b);
+        if (flushRequested && position >= minChunk) {
+            writeChunk();
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        checkFailed();
+        super.write(b, off, len);
+        if (flushRequested && position >= minChunk) {
+            writeChunk();
+        }
+    }
+
+    /** Sends a deferred flush along with the chunk, since the chunk holds everything written before it */
+    @Override
+    protected void writeChunk() throws IOException {
+        super.writeChunk();
+        if (flushRequested) {
+            flushRequested = false;
+            cancelTimer();
+            out.flush();
+        }
+    }
+
+    /** Ends the current chunk and flushes the response, unless less than the minimum chunk is buffered */
+    @Override
+    public synchronized void flush() throws IOException {
+        checkNotClosed();
+        checkFailed();
+        if (position == 0 || position >= minChunk) {
+            flushRequested = false;
+            cancelTimer();
+            super.flush();
+        } else if (!flushRequested) {
+            flushRequested = true;
+            if (maxLatency > 0) {
+                timer = Holder.TIMER.schedule(dispatchFlush, maxLatency, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flushRequested = false;
+        cancelTimer();
+        super.close();
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    private void checkFailed() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.AcceptEncoding;
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What each server accepts for request bodies, as learned by clients from its responses, so clients can
+ *  compress POST/PUT bodies without an annotation
+ * <p/>A server is taken to accept an encoding if:
+ * <ul>
+ *     <li>It lists it in an Accept-Encoding response header (RFC 7694), or</li>
+ *     <li>It sends responses in that encoding (rest-compress servers decode what they encode)</li>
+ * </ul>
+ * A 415 Unsupported Media Type reply to a compressed body marks the server as not accepting compressed bodies.
+ *  Entries expire after {@link CompressionConfig#getClientCapabilityTtl()}, and are then learned again.
+ */
+public final class HostCapabilities {
+
+    /** Encodings clients prefer for request bodies, when a server accepts several */
+    private static final String[] PREFERENCE = {"lzf", "lz4", "snappy", "gzip"};
+
+    /** Hosts remembered, the cache is cleared if it grows past this */
+    static final int MAX_HOSTS = 1024;
+
+    private static final ConcurrentMap<String, Capability> hosts = new ConcurrentHashMap<String, Capability>();
+
+    private HostCapabilities() {
+    }
+
+    /** Encoding a host accepts, or null if it accepts none */
+    private static final class Capability {
+        final String encoding;
+        final long expires;
+
+        Capability(String encoding) {
+            this.encoding = encoding;
+            this.expires = System.currentTimeMillis() + CompressionConfig.getClientCapabilityTtl();
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - expires >= 0;
+        }
+    }
+
+    /**
+     * Cache key for a request URI: scheme, host and port
+     * @param uri Request URI
+     */
+    public static String key(URI uri) {
+        int port = uri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ENGLISH);
+        return uri.getScheme() + "://" + host + ":" + port;
+    }
+
+    private static Capability get(String host) {
+        Capability capability = hosts.get(host);
+        if (capability != null && capability.isExpired()) {
+            hosts.remove(host, capability);
+            return null;
+        }
+        return capability;
+    }
+
+    private static void put(String host, Capability capability) {
+        if (hosts.size() >= MAX_HOSTS && !hosts.containsKey(host)) {
+            hosts.clear();
+        }
+        hosts.put(host, capability);
+    }
+
+    /**
+     * Encoding to compress request bodies to a host with
+     * @param host Key from {@link #key(URI)}
+     * @return Encoding, or null if the host is not known to accept any
+     */
+    public static String getEncoding(String host) {
+        Capability capability = get(host);
+        return capability == null ? null : capability.encoding;
+    }
+
+    /** True if the host rejected a compressed body, and that has not expired yet */
+    public static boolean isUnsupported(String host) {
+        Capability capability = get(host);
+        return capability != null && capability.encoding == null;
+    }
+
+    /**
+     * Learn from a response
+     * @param host Key from {@link #key(URI)}
+     * @param contentEncoding Content-Encoding of the response, may be null
+     * @param acceptEncoding Accept-Encoding header values of the response, may be null
+     */
+    public static void learn(String host, String contentEncoding, List<String> acceptEncoding) {
+        if (acceptEncoding != null && !acceptEncoding.isEmpty()) { // Explicit: overrides anything learned before
+            String encoding = AcceptEncoding.parse(acceptEncoding).negotiate(CodecRegistry.available(PREFERENCE));
+            put(host, new Capability(encoding));
+            return;
+        }
+        if (contentEncoding == null || isUnsupported(host) || getEncoding(host) != null) {
+            return;
+        }
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ENGLISH);
+        if (CodecRegistry.isAvailable(encoding) && !DeflateDictionaryCodec.NAME.equals(encoding)) {
+            put(host, new Capability(CodecRegistry.get(encoding).getName()));
+        }
+    }
+
+    /**
+     * Record a 415 reply to a compressed body: don't compress bodies to this host until the entry expires
+     * @param host Key from {@link #key(URI)}
+     * @param acceptEncoding Accept-Encoding header values of the 415 response, may be null
+     */
+    public static void rejected(String host, List<String> acceptEncoding) {
+        String encoding = null;
+        if (acceptEncoding != null && !acceptEncoding.isEmpty()) {
+            encoding = AcceptEncoding.parse(acceptEncoding).negotiate(CodecRegistry.available(PREFERENCE));
+        }
+        put(host, new Capability(encoding));
+    }
+
+    /** Hosts known to accept compressed bodies, or known not to, for diagnostics */
+    public static List<String> getHosts() {
+        return Collections.unmodifiableList(new ArrayList<String>(hosts.keySet()));
+    }
+
+    /** Forget everything learned */
+    public static void clear() {
+        hosts.clear();
+    }
+}
@@ -13,11 +13,27 @@ import java.lang.annotation.Target;
  * Behaves *exactly* the same as the @GZIP annotation:  if request has header "Accept-Encoding: lzf",
  *  they'll get LZF-compressed responses. Similarly, the server can accept LZF encoding POST bodies.
  * <p/><p/>
- * Warning: for now, do not combine with the GZIP annotation
+ * Warning: do not combine with the GZIP annotation, use {@link Compress} to offer both LZF and GZIP
+ * <p/><p/>
+ * {@link #level()} trades speed for ratio, for example @LZF(level = LZF.Level.FAST) for services called over a fast
+ *  LAN, or HIGH for large responses to clients on slow links.  Every level writes standard LZF, so clients need nothing new.
  *
  */
 @Target({ElementType.TYPE, ElementType.METHOD, ElementType.PARAMETER})
 @Retention(RetentionPolicy.RUNTIME)
 @ContentEncoding("lzf")
 public @interface LZF {
+
+    /** How hard the encoder looks for matches */
+    enum Level {
+        /** Small hash table and fewer match attempts: fastest, for cheap bandwidth */
+        FAST,
+        /** The Compress-LZF encoder */
+        DEFAULT,
+        /** Hash chains, longest and lazy matches: best LZF ratio, for expensive bandwidth */
+        HIGH
+    }
+
+    /** Compression effort for responses (and request bodies, for client proxies) */
+    Level level() default Level.DEFAULT;
 }
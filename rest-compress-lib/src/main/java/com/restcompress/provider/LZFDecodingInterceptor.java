@@ -1,10 +1,14 @@
 package com.restcompress.provider;
 
 
-import com.ning.compress.lzf.LZFInputStream;
+import com.restcompress.provider.codec.LZFCodec;
+import com.restcompress.provider.metrics.CompressionMetrics;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.MeteredInputStream;
 import org.jboss.resteasy.annotations.interception.ClientInterceptor;
 import org.jboss.resteasy.annotations.interception.DecoderPrecedence;
 import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.client.core.ClientMessageBodyReaderContext;
 import org.jboss.resteasy.spi.interception.MessageBodyReaderContext;
 import org.jboss.resteasy.spi.interception.MessageBodyReaderInterceptor;
 
@@ -13,6 +17,7 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 
 /**
  * Interceptor to decompress HTTP message bodies with LZF, if the content encoding is LZF, before doing deserializtion
@@ -30,7 +35,12 @@ public class LZFDecodingInterceptor implements MessageBodyReaderInterceptor {
 
     /**
      * Check if content encoding is LZF.
-     * <p/>If encoding is LZF, wrap the InputStream for that message in LZFInputStream to decode it
+     * <p/>If encoding is LZF, wrap the InputStream for that message in a pooled LZF stream to decode it,
+     *  or a {@link ParallelLZFInputStream} if parallel mode is enabled
+     * <p/>Decoding stops with 413 Request Entity Too Large (on the server) if the body passes the limits
+     *  of {@link BoundedInputStream}
+     * <p/>Decoder buffers go back to the pool once the body is read, unless the entity is the stream itself
+     *  (InputStream/Reader parameters), in which case they are returned when the application closes it
      * @param context Context for HTTP request/response
      * @return context.proceed()
      * @throws IOException
@@ -41,11 +51,32 @@ public class LZFDecodingInterceptor implements MessageBodyReaderInterceptor {
         Object encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
         if (encoding != null && encoding.toString().equalsIgnoreCase("lzf")) {
             InputStream old = context.getInputStream();
-            LZFInputStream is = new LZFInputStream(old);
-            context.setInputStream(is);
+            EndpointMetrics metrics = CompressionMetrics.forEndpoint(EndpointInterceptor.getEndpoint(context), LZFCodec.NAME);
+            MeteredInputStream.Raw raw = metrics == null ? null : MeteredInputStream.raw(old);
+            InputStream in = raw != null ? raw : old;
+            boolean client = context instanceof ClientMessageBodyReaderContext;
+            BoundedInputStream.Source source = BoundedInputStream.isEnabled(client) ? BoundedInputStream.source(in) : null;
+            if (source != null) in = source;
+            InputStream is = CompressionConfig.isParallelEnabled()
+                    ? new ParallelLZFInputStream(in) : LZFStreamPool.getInputStream(in);
+            BoundedInputStream bounded = source != null ? new BoundedInputStream(is, source, client) : null;
+            InputStream decoded = bounded != null ? bounded : is;
+            MeteredInputStream metered = raw != null ? new MeteredInputStream(decoded, raw, metrics) : null;
+            context.setInputStream(metered != null ? metered : decoded);
+            boolean streamed = InputStream.class.isAssignableFrom(context.getType())
+                    || Reader.class.isAssignableFrom(context.getType());
             try {
                 return context.proceed();
+            } catch (Exception e) { // Readers may wrap the limit's exception in their own
+                if (bounded != null && bounded.isExceeded() && !client) {
+                    throw bounded.tooLarge();
+                }
+                throw e;
             } finally{
+                if (!streamed) {
+                    is.close();
+                    if (metered != null) metered.finish();
+                }
                 context.setInputStream(old);
             }
         } else {
@@ -0,0 +1,252 @@
+package com.restcompress.provider;
+
+import com.ning.compress.lzf.LZFDecoder;
+import com.ning.compress.lzf.LZFEncoder;
+import com.ning.compress.lzf.LZFException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Binary delta between two versions of a body, compressed with LZF: the "lzf-delta" instance manipulation (RFC 3229)
+ * <p/>A delta is a list of operations building the new version: copy a range of the base version, or insert literal
+ *  bytes.  Copies are found by indexing the base in 16 byte blocks, so any run of 32 or more unchanged bytes
+ *  is copied, wherever it moved to; inserted bytes are what changed.  The operations are then LZF-compressed,
+ *  which also compresses the inserted text.
+ * <p/>Format, before compression: varint length of the new version, then operations, each a tag byte and varints:
+ *  0 = copy (base offset, length), 1 = insert (length, then the bytes).  Varints are unsigned LEB128.
+ */
+public final class LZFDelta {
+
+    /** Instance manipulation name, for the A-IM and IM headers */
+    public static final String NAME = "lzf-delta";
+
+    /** Request header listing instance manipulations the client accepts */
+    public static final String A_IM = "A-IM";
+
+    /** Response header naming the instance manipulation used */
+    public static final String IM = "IM";
+
+    /** Response header with the ETag of the version the delta applies to */
+    public static final String DELTA_BASE = "Delta-Base";
+
+    /** 226 IM Used status, for delta responses */
+    public static final int IM_USED = 226;
+
+    private static final int COPY = 0;
+    private static final int INSERT = 1;
+
+    /** Shortest match looked for; also the block size the base is indexed in */
+    private static final int BLOCK = 16;
+
+    private static final int PRIME = 0x01000193;
+
+    /** Largest version an array can hold */
+    private static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private LZFDelta() {
+    }
+
+    /**
+     * Compute the delta that builds a new version from a base
+     * @param base Version the client holds
+     * @param target New version
+     * @return LZF-compressed delta
+     */
+    public static byte[] encode(byte[] base, byte[] target) {
+        ByteArrayOutputStream ops = new ByteArrayOutputStream(Math.max(64, target.length / 8));
+        writeVarint(ops, target.length);
+
+        int[] table = index(base);
+        int mask = table.length - 1;
+        int pow = 1; // PRIME^(BLOCK-1), to roll the oldest byte out of the hash
+        for (int i = 1; i < BLOCK; i++) {
+            pow *= PRIME;
+        }
+
+        int literal = 0; // Start of bytes not yet covered by an operation
+        int i = 0;
+        int hash = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            int candidate = table.length > 0 ? table[mix(hash) & mask] : -1;
+            if (candidate >= 0 && matches(base, candidate, target, i)) {
+                int start = i;
+                int from = candidate;
+                while (start > literal && from > 0 && base[from - 1] == target[start - 1]) {
+                    start--;
+                    from--;
+                }
+                int end = i + BLOCK;
+                int to = candidate + BLOCK;
+                while (end < target.length && to < base.length && base[to] == target[end]) {
+                    end++;
+                    to++;
+                }
+                writeInsert(ops, target, literal, start);
+                ops.write(COPY);
+                writeVarint(ops, from);
+                writeVarint(ops, end - start);
+                i = end;
+                literal = end;
+                if (i + BLOCK <= target.length) {
+                    hash = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    hash = (hash - target[i] * pow) * PRIME + target[i + BLOCK];
+                }
+                i++;
+            }
+        }
+        writeInsert(ops, target, literal, target.length);
+        return LZFEncoder.encode(ops.toByteArray());
+    }
+
+    /**
+     * Rebuild a new version from the base and a delta, of at most {@link CompressionConfig#getDecodeMaxBytes()}
+     * @param base Version the delta was computed against
+     * @param delta LZF-compressed delta, from {@link #encode(byte[], byte[])}
+     * @return New version
+     * @throws IOException If the delta is corrupt, doesn't fit the base, or builds too large a version
+     */
+    public static byte[] decode(byte[] base, byte[] delta) throws IOException {
+        long max = CompressionConfig.getDecodeMaxBytes();
+        return decode(base, delta, max > 0 ? Math.min(max, MAX_LENGTH) : MAX_LENGTH);
+    }
+
+    /**
+     * Rebuild a new version from the base and a delta
+     * <p/>The delta is untrusted: every length in it is checked before it is used, and the result grows as the
+     *  operations fill it, rather than being allocated at the size the delta claims.
+     * @param base Version the delta was computed against
+     * @param delta LZF-compressed delta, from {@link #encode(byte[], byte[])}
+     * @param maxLength Longest new version accepted
+     * @return New version
+     * @throws IOException If the delta is corrupt, doesn't fit the base, or builds a version over maxLength
+     */
+    public static byte[] decode(byte[] base, byte[] delta, long maxLength) throws IOException {
+        byte[] ops;
+        try {
+            ops = LZFDecoder.decode(delta);
+        } catch (LZFException e) {
+            throw new IOException("Corrupt delta", e);
+        }
+        int[] pos = {0};
+        long length = readVarint(ops, pos);
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Corrupt delta: length " + length);
+        }
+        if (length > maxLength) {
+            throw new IOException("Delta builds " + length + " bytes, more than the " + maxLength + " allowed");
+        }
+        byte[] target = new byte[(int) Math.min(length, Math.max(base.length, ops.length))];
+        int out = 0;
+        while (pos[0] < ops.length) {
+            int tag = ops[pos[0]++];
+            if (tag == COPY) {
+                long from = readVarint(ops, pos);
+                long count = readVarint(ops, pos);
+                if (from < 0 || from > base.length || count < 0 || count > base.length - from || count > length - out) {
+                    throw new IOException("Corrupt delta: copy outside the base or result");
+                }
+                target = ensureCapacity(target, out + (int) count, (int) length);
+                System.arraycopy(base, (int) from, target, out, (int) count);
+                out += count;
+            } else if (tag == INSERT) {
+                long count = readVarint(ops, pos);
+                if (count < 0 || count > ops.length - pos[0] || count > length - out) {
+                    throw new IOException("Corrupt delta: insert past the end");
+                }
+                target = ensureCapacity(target, out + (int) count, (int) length);
+                System.arraycopy(ops, pos[0], target, out, (int) count);
+                pos[0] += count;
+                out += count;
+            } else {
+                throw new IOException("Corrupt delta: unknown operation " + tag);
+            }
+        }
+        if (out != length) {
+            throw new IOException("Corrupt delta: built " + out + " of " + length + " bytes");
+        }
+        return target.length == out ? target : Arrays.copyOf(target, out);
+    }
+
+    /** Grow the result as operations fill it, at most to the length the delta declares */
+    private static byte[] ensureCapacity(byte[] target, int needed, int length) {
+        if (needed <= target.length) {
+            return target;
+        }
+        return Arrays.copyOf(target, (int) Math.max(needed, Math.min(length, target.length * 2L)));
+    }
+
+    /** Hash table of base offsets, one per block; later blocks replace earlier ones with the same hash */
+    private static int[] index(byte[] base) {
+        int blocks = base.length / BLOCK;
+        if (blocks == 0) {
+            return new int[0];
+        }
+        int[] table = new int[Integer.highestOneBit(blocks * 2 - 1) << 1];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+        for (int offset = 0; offset + BLOCK <= base.length; offset += BLOCK) {
+            table[mix(hash(base, offset)) & mask] = offset;
+        }
+        return table;
+    }
+
+    private static int hash(byte[] b, int offset) {
+        int hash = 0;
+        for (int i = offset; i < offset + BLOCK; i++) {
+            hash = hash * PRIME + b[i];
+        }
+        return hash;
+    }
+
+    private static boolean matches(byte[] base, int from, byte[] target, int at) {
+        for (int i = 0; i < BLOCK; i++) {
+            if (base[from + i] != target[at + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Spread the rolling hash's low bits, which only depend on the last few bytes */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+    private static void writeInsert(ByteArrayOutputStream ops, byte[] target, int from, int to) {
+        if (to > from) {
+            ops.write(INSERT);
+            writeVarint(ops, to - from);
+            ops.write(target, from, to - from);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] in, int[] pos) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= in.length) {
+                throw new IOException("Corrupt delta: truncated");
+            }
+            int b = in[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt delta: varint too long");
+    }
+}
@@ -1,14 +1,20 @@
 package com.restcompress.provider;
-import com.ning.compress.lzf.LZFOutputStream;
+import com.restcompress.provider.CompressionPolicy.EndpointRatio;
+import com.restcompress.provider.codec.LZFCodec;
+import com.restcompress.provider.metrics.CompressionMetrics;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.SkipReason;
 import org.jboss.resteasy.annotations.interception.ClientInterceptor;
 import org.jboss.resteasy.annotations.interception.EncoderPrecedence;
 import org.jboss.resteasy.annotations.interception.ServerInterceptor;
+import org.jboss.resteasy.client.core.ClientMessageBodyWriterContext;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.jboss.resteasy.spi.interception.MessageBodyWriterContext;
 import org.jboss.resteasy.spi.interception.MessageBodyWriterInterceptor;
-import org.jboss.resteasy.util.CommitHeaderOutputStream;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -28,34 +34,41 @@ import java.io.OutputStream;
 public class LZFEncodingInterceptor implements MessageBodyWriterInterceptor
 {
 
-    /** Provides committed LZF output, which does not compress headers */
-    private static class CommittedLZFOutputStream extends CommitHeaderOutputStream {
-        protected CommittedLZFOutputStream(OutputStream delegate, CommitCallback headers) {
-            super(delegate, headers);
-        }
-
-        protected LZFOutputStream lzf;
+    /** Provides committed LZF output, which does not compress headers, or small bodies */
+    private static class CommittedLZFOutputStream extends DeferredCompressionOutputStream {
+        private final boolean flushing;
+        private final LZF.Level level;
 
-        public LZFOutputStream getLzf() {
-            return lzf;
+        protected CommittedLZFOutputStream(OutputStream delegate, MultivaluedMap<String, Object> headers, int minSize, int bufferLimit, boolean client, boolean flushing, LZF.Level level) {
+            super(delegate, headers, minSize, bufferLimit, client);
+            this.flushing = flushing;
+            this.level = level;
         }
 
         @Override
-        public void commit() {
-            if (isHeadersCommitted) return;
-            isHeadersCommitted = true;
-
-            // constructor writes to underlying OutputStream causing headers to be written.
-            // so we swap compressed OutputStream in when we are ready to write.
-            lzf = new LZFOutputStream(delegate);
-            delegate = lzf;
+        protected OutputStream openCompressor(OutputStream out) {
+            // borrow the compressor's buffers from the pool; parallel mode only goes parallel past its threshold
+            if (flushing) {
+                return LZFStreamPool.getFlushingOutputStream(out, level);
+            }
+            if (CompressionGovernor.isParallelAllowed()) {
+                return new ParallelLZFOutputStream(out, level);
+            }
+            return LZFStreamPool.getOutputStream(out, level); // Closing returns the buffers to the pool
         }
-
     }
 
     /**
      * Grab the outgoing message, if encoding is set to LZF, then wrap the OutputStream in an LZF OutputStream
      *   before sending it on its merry way, compressing all the time.
+     * <p/>The {@link CompressionPolicy} is checked first: excluded media types, endpoints that don't compress well,
+     *  and bodies under the minimum size are sent uncompressed, with the Content-Encoding header removed.
+     * <p/>With parallel mode enabled ({@link CompressionConfig#setParallelEnabled(boolean)}), large bodies
+     *  are compressed on several cores.  The {@link CompressionGovernor} can reduce or skip compression under load.
+     * <p/>Flushing responses ({@link FlushingEntity}, text/event-stream) compress from the first byte, and each
+     *  application flush ends a chunk, see {@link FlushingLZFOutputStream}.
+     * <p/>The encoder effort is the {@link LZF#level()} of the @LZF annotation, if there is one, or FAST while
+     *  the governor is in FAST mode.
      *
      * Note: strips out the content-length header because the compression changes that unpredictably
      * @param context
@@ -66,18 +79,47 @@ public class LZFEncodingInterceptor implements MessageBodyWriterInterceptor
         Object encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
 
         if (encoding != null && encoding.toString().equalsIgnoreCase("lzf")) {
+            String endpoint = EndpointInterceptor.getEndpoint(context);
+            EndpointRatio ratio = CompressionPolicy.forEndpoint(endpoint);
+            EndpointMetrics metrics = CompressionMetrics.forEndpoint(endpoint, LZFCodec.NAME);
+            SkipReason skip = CompressionPolicy.checkSkip(context.getMediaType(), context.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH), ratio);
+            if (skip != null) {
+                if (metrics != null) metrics.recordSkip(skip);
+                context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+                context.proceed();
+                return;
+            }
+
+            // Client executors buffer the request body and set its length themselves, so it gets no Content-Length here
+            boolean client = context instanceof ClientMessageBodyWriterContext;
+            // Flushing responses can't hold anything back, or the first flushes would not reach the client
+            boolean flushing = !client && CompressionPolicy.isFlushing(context.getEntity(), context.getMediaType());
+            int bufferLimit = client || flushing ? 0 : CompressionPolicy.getBufferLimit(context.getEntity());
+            boolean timing = !client && ServerTiming.isRequested(ResteasyProviderFactory.getContextData(HttpHeaders.class));
+            if (timing) {
+                bufferLimit = ServerTiming.getBufferLimit(bufferLimit);
+            }
             OutputStream old = context.getOutputStream();
-            // constructor writes to underlying OS causing headers to be written.
-            CommittedLZFOutputStream lzfOutputStream = new CommittedLZFOutputStream(old, null);
+            CommittedLZFOutputStream lzfOutputStream = new CommittedLZFOutputStream(old, context.getHeaders(),
+                    flushing ? 0 : CompressionGovernor.getMinSize(), bufferLimit, client, flushing,
+                    CompressionGovernor.getLevel(LZFStreamPool.levelOf(context.getAnnotations())));
 
             // Any content length set will be obsolete
             context.getHeaders().remove("Content-Length");
 
+            if (timing) {
+                lzfOutputStream.startTiming(LZFCodec.NAME);
+            }
             context.setOutputStream(lzfOutputStream);
             try {
                 context.proceed();
+                boolean compressed = lzfOutputStream.finish();
+                if (compressed && ratio != null && ratio.shouldSample()) {
+                    ratio.record(lzfOutputStream.getUncompressedBytes(), lzfOutputStream.getCompressedBytes());
+                }
+                lzfOutputStream.recordMetrics(metrics);
             } finally {
-                if (lzfOutputStream.getLzf() != null) lzfOutputStream.getLzf().flush();
+                lzfOutputStream.release();
                 context.setOutputStream(old);
             }
             return;
@@ -0,0 +1,225 @@
+package com.restcompress.provider;
+
+import com.ning.compress.lzf.ChunkEncoder;
+import com.ning.compress.lzf.LZFChunk;
+import com.ning.compress.lzf.LZFEncoder;
+import com.ning.compress.lzf.util.ChunkEncoderFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * LZF chunk encoder for the {@link LZF.Level#FAST} and {@link LZF.Level#HIGH} levels; output is standard LZF
+ * <p/>FAST compresses with the Compress-LZF encoder, as DEFAULT does, until a chunk saves less than 10%.  Then it
+ *  switches to a scan with a 4k entry hash table that skips ahead faster the longer it goes without a match, so
+ *  data that doesn't compress (ids, base64, embedded binary) costs a fraction of a full match search.  It goes back
+ *  as soon as a chunk compresses again.
+ * <p/>HIGH keeps a hash chain through every position of the chunk, tries up to 16 earlier positions for the longest
+ *  match in the 8 kB window LZF allows, and defers a match by a byte if the next position has a longer one.
+ * <p/>Both write the usual LZF operations (literal runs of up to 32 bytes, back references of 3 to 264 bytes up to
+ *  8 kB back), so any LZF decoder reads the result.
+ */
+final class LZFLevelEncoder extends ChunkEncoder {
+
+    private static final int WINDOW = 8192;
+    private static final int MIN_MATCH = 3;
+    private static final int MAX_MATCH = 264;
+    private static final int MAX_LITERAL_RUN = LZFChunk.MAX_LITERAL;
+
+    /** Smallest chunk that decides whether FAST scans, so small flushed chunks don't */
+    private static final int SCAN_MIN_CHUNK = 4096;
+    private static final int SCAN_HASH_BITS = 12;
+    /** Misses before the scan steps 2 bytes at a time, then 3, and so on */
+    private static final int SCAN_SKIP_SHIFT = 4;
+    private static final int HIGH_HASH_BITS = 16;
+    private static final int HIGH_MAX_CHAIN = 16;
+
+    private final boolean high;
+    private final int hashShift;
+
+    /** Position + 1 of the last occurrence of each hash in this chunk, relative to the chunk start; 0 for none */
+    private final int[] head;
+
+    /** HIGH only: previous position + 1 with the same hash, for each position of the chunk */
+    private final int[] chain;
+
+    /** FAST only: encoder for chunks that compress, and buffer for one encoded chunk */
+    private final ChunkEncoder library;
+    private final byte[] encoded;
+
+    /** FAST only: the last chunk barely compressed, so scan the next one */
+    private boolean scanning = false;
+
+    /** Distance of the match found by the last {@link #findMatch} */
+    private int matchDistance;
+
+    LZFLevelEncoder(LZF.Level level) {
+        super(LZFChunk.MAX_CHUNK_LEN);
+        if (level != LZF.Level.FAST && level != LZF.Level.HIGH) {
+            throw new IllegalArgumentException("No level encoder for " + level);
+        }
+        high = level == LZF.Level.HIGH;
+        int bits = high ? HIGH_HASH_BITS : SCAN_HASH_BITS;
+        hashShift = 32 - bits;
+        head = new int[1 << bits];
+        chain = high ? new int[LZFChunk.MAX_CHUNK_LEN] : null;
+        library = high ? null : ChunkEncoderFactory.optimalInstance(LZFChunk.MAX_CHUNK_LEN);
+        encoded = high ? null : new byte[LZFEncoder.estimateMaxWorkspaceSize(LZFChunk.MAX_CHUNK_LEN)];
+    }
+
+    @Override
+    public void encodeAndWriteChunk(byte[] data, int offset, int len, OutputStream out) throws IOException {
+        if (high) {
+            super.encodeAndWriteChunk(data, offset, len, out);
+        } else {
+            out.write(encoded, 0, appendEncodedChunk(data, offset, len, encoded, 0));
+        }
+    }
+
+    @Override
+    public int appendEncodedChunk(byte[] input, int inputPtr, int inputLength, byte[] outputBuffer, int outputPos) {
+        if (high) {
+            return super.appendEncodedChunk(input, inputPtr, inputLength, outputBuffer, outputPos);
+        }
+        int end = scanning ? super.appendEncodedChunk(input, inputPtr, inputLength, outputBuffer, outputPos)
+                : library.appendEncodedChunk(input, inputPtr, inputLength, outputBuffer, outputPos);
+        if (inputLength >= SCAN_MIN_CHUNK) {
+            scanning = (long) (end - outputPos) * 10 > (long) inputLength * 9;
+        }
+        return end;
+    }
+
+    @Override
+    protected int tryCompress(byte[] in, int inPos, int inEnd, byte[] out, int outPos) {
+        Arrays.fill(head, 0);
+        return high ? compressHigh(in, inPos, inEnd, out, outPos) : scan(in, inPos, inEnd, out, outPos);
+    }
+
+    private int scan(byte[] in, int start, int end, byte[] out, int op) {
+        int anchor = start; // Start of the literals not written yet
+        int ip = start;
+        int limit = end - MIN_MATCH;
+        int misses = 0;
+        while (ip <= limit) {
+            int seq = read3(in, ip);
+            int h = hashOf(seq);
+            int ref = head[h] - 1 + start;
+            head[h] = ip - start + 1;
+            if (ref >= start && ip - ref <= WINDOW && read3(in, ref) == seq) {
+                int len = matchLength(in, ref, ip, end);
+                op = writeMatch(in, anchor, ip, len, ip - ref, out, op);
+                ip += len;
+                anchor = ip;
+                misses = 0;
+            } else {
+                ip += 1 + (misses++ >> SCAN_SKIP_SHIFT);
+            }
+        }
+        return writeLiterals(in, anchor, end, out, op);
+    }
+
+    private int compressHigh(byte[] in, int start, int end, byte[] out, int op) {
+        int anchor = start;
+        int ip = start;
+        int limit = end - MIN_MATCH;
+        while (ip <= limit) {
+            int len = findMatch(in, start, ip, end);
+            int distance = matchDistance;
+            insert(in, start, ip);
+            if (len < MIN_MATCH) {
+                ip++;
+                continue;
+            }
+            if (len < MAX_MATCH && ip + 1 <= limit && findMatch(in, start, ip + 1, end) > len) {
+                ip++; // Lazy matching: the match one byte on is longer, so take this byte as a literal
+                continue;
+            }
+            op = writeMatch(in, anchor, ip, len, distance, out, op);
+            int matchEnd = ip + len;
+            for (int p = ip + 1; p < matchEnd && p <= limit; p++) {
+                insert(in, start, p);
+            }
+            ip = matchEnd;
+            anchor = ip;
+        }
+        return writeLiterals(in, anchor, end, out, op);
+    }
+
+    /** Longest match for ip among earlier positions on its hash chain, setting {@link #matchDistance} */
+    private int findMatch(byte[] in, int start, int ip, int end) {
+        int max = Math.min(MAX_MATCH, end - ip);
+        int best = 0;
+        int candidate = head[hashOf(read3(in, ip))];
+        for (int tries = 0; candidate != 0 && tries < HIGH_MAX_CHAIN; tries++) {
+            int ref = candidate - 1 + start;
+            if (ip - ref > WINDOW) {
+                break;
+            }
+            if (in[ref + best] == in[ip + best]) {
+                int len = 0;
+                while (len < max && in[ref + len] == in[ip + len]) {
+                    len++;
+                }
+                if (len > best) {
+                    best = len;
+                    matchDistance = ip - ref;
+                    if (best == max) {
+                        break;
+                    }
+                }
+            }
+            candidate = chain[ref - start];
+        }
+        return best;
+    }
+
+    private void insert(byte[] in, int start, int p) {
+        int h = hashOf(read3(in, p));
+        chain[p - start] = head[h];
+        head[h] = p - start + 1;
+    }
+
+    private static int matchLength(byte[] in, int ref, int ip, int end) {
+        int max = Math.min(MAX_MATCH, end - ip);
+        int len = MIN_MATCH;
+        while (len < max && in[ref + len] == in[ip + len]) {
+            len++;
+        }
+        return len;
+    }
+
+    /** Write the pending literals, then a back reference */
+    private static int writeMatch(byte[] in, int anchor, int ip, int len, int distance, byte[] out, int op) {
+        op = writeLiterals(in, anchor, ip, out, op);
+        int l = len - 2;
+        int off = distance - 1;
+        if (l < 7) {
+            out[op++] = (byte) ((off >> 8) + (l << 5));
+        } else {
+            out[op++] = (byte) ((off >> 8) + (7 << 5));
+            out[op++] = (byte) (l - 7);
+        }
+        out[op++] = (byte) off;
+        return op;
+    }
+
+    private static int writeLiterals(byte[] in, int from, int to, byte[] out, int op) {
+        while (from < to) {
+            int run = Math.min(MAX_LITERAL_RUN, to - from);
+            out[op++] = (byte) (run - 1);
+            System.arraycopy(in, from, out, op, run);
+            op += run;
+            from += run;
+        }
+        return op;
+    }
+
+    private static int read3(byte[] in, int p) {
+        return ((in[p] & 0xFF) << 16) | ((in[p + 1] & 0xFF) << 8) | (in[p + 2] & 0xFF);
+    }
+
+    private int hashOf(int seq) {
+        return (seq * 0x9E3779B1) >>> hashShift;
+    }
+}
@@ -0,0 +1,215 @@
+package com.restcompress.provider;
+
+import com.ning.compress.lzf.ChunkDecoder;
+import com.ning.compress.lzf.ChunkEncoder;
+import com.ning.compress.lzf.LZFChunk;
+import com.ning.compress.lzf.LZFEncoder;
+import com.ning.compress.lzf.util.ChunkDecoderFactory;
+import com.ning.compress.lzf.util.ChunkEncoderFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of LZF encoders, decoders and their 64 kB chunk buffers, shared by all request threads
+ * <p/>A new LZFOutputStream allocates ~200 kB (chunk buffers + encoder hash table), and LZFInputStream ~128 kB.
+ *  At thousands of requests/second that is a lot of young-gen garbage, so the interceptors borrow them from here instead.
+ * <p/>Streams are cheap wrappers: only the buffers are pooled, and they are returned when the stream is closed
+ *  (or the input reaches the end).  A stream that is never closed just leaves its buffers to the garbage collector.
+ * <p/>Encoders are pooled per {@link LZF.Level}, since their hash tables differ.
+ * <p/>Idle pool size is set by {@link CompressionConfig#setLzfPoolSize(int)}.
+ */
+public final class LZFStreamPool {
+
+    /** Chunk size used by the LZF format, also the size of each buffer */
+    public static final int CHUNK_SIZE = LZFChunk.MAX_CHUNK_LEN;
+
+    /** Decoder is stateless, so one instance serves all threads */
+    private static final ChunkDecoder DECODER = ChunkDecoderFactory.optimalInstance();
+
+    private static final EncoderPool[] encoders = new EncoderPool[LZF.Level.values().length];
+    static {
+        for (int i = 0; i < encoders.length; i++) {
+            encoders[i] = new EncoderPool();
+        }
+    }
+
+    /** Size of buffer needed to hold one encoded chunk, even if it does not compress */
+    static final int ENCODED_CHUNK_SIZE = LZFEncoder.estimateMaxWorkspaceSize(CHUNK_SIZE);
+
+    private static final Queue<byte[]> encodedBuffers = new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger idleEncodedBuffers = new AtomicInteger();
+    private static final Queue<DecoderBuffers> decoders = new ConcurrentLinkedQueue<DecoderBuffers>();
+    private static final AtomicInteger idleDecoders = new AtomicInteger();
+
+    /** Encoder with its hash table, plus buffer to collect one chunk of input */
+    static final class EncoderBuffers {
+        final LZF.Level level;
+        final ChunkEncoder encoder;
+        final byte[] buffer = new byte[CHUNK_SIZE];
+
+        EncoderBuffers(LZF.Level level) {
+            this.level = level;
+            this.encoder = level == LZF.Level.DEFAULT ? ChunkEncoderFactory.optimalInstance(CHUNK_SIZE) : new LZFLevelEncoder(level);
+        }
+    }
+
+    /** Idle encoders of one level */
+    private static final class EncoderPool {
+        final Queue<EncoderBuffers> idle = new ConcurrentLinkedQueue<EncoderBuffers>();
+        final AtomicInteger count = new AtomicInteger();
+    }
+
+    /** Buffers for one chunk of compressed input, and its decoded output */
+    static final class DecoderBuffers {
+        final byte[] input = new byte[CHUNK_SIZE];
+        final byte[] decoded = new byte[CHUNK_SIZE];
+    }
+
+    private LZFStreamPool() {
+    }
+
+    /**
+     * Get an LZF compressing stream using pooled buffers
+     * @param out Stream to write LZF data to, not closed when the returned stream is closed
+     * @return Stream to write uncompressed data to, close it when done to return buffers to the pool
+     */
+    public static PooledLZFOutputStream getOutputStream(OutputStream out) {
+        return new PooledLZFOutputStream(out);
+    }
+
+    /**
+     * Get an LZF compressing stream using pooled buffers, with an encoder of the given effort level
+     * @param out Stream to write LZF data to, not closed when the returned stream is closed
+     * @param level Compression level
+     * @return Stream to write uncompressed data to, close it when done to return buffers to the pool
+     */
+    public static PooledLZFOutputStream getOutputStream(OutputStream out, LZF.Level level) {
+        return new PooledLZFOutputStream(out, level);
+    }
+
+    /**
+     * Get an LZF compressing stream using pooled buffers, where flushes end chunks, see {@link FlushingLZFOutputStream}
+     * @param out Stream to write LZF data to, not closed when the returned stream is closed
+     * @return Stream to write uncompressed data to, close it when done to return buffers to the pool
+     */
+    public static FlushingLZFOutputStream getFlushingOutputStream(OutputStream out) {
+        return new FlushingLZFOutputStream(out);
+    }
+
+    /**
+     * Get a flushing LZF compressing stream using pooled buffers, with an encoder of the given effort level
+     * @param out Stream to write LZF data to, not closed when the returned stream is closed
+     * @param level Compression level
+     * @return Stream to write uncompressed data to, close it when done to return buffers to the pool
+     */
+    public static FlushingLZFOutputStream getFlushingOutputStream(OutputStream out, LZF.Level level) {
+        return new FlushingLZFOutputStream(out, level);
+    }
+
+    /**
+     * Get an LZF decompressing stream using pooled buffers
+     * @param in Stream of LZF data, not closed when the returned stream is closed
+     * @return Stream of decompressed data, which returns buffers on end of stream or close
+     */
+    public static PooledLZFInputStream getInputStream(InputStream in) throws IOException {
+        return new PooledLZFInputStream(in);
+    }
+
+    /**
+     * Find the compression level for a message
+     * @param annotations Annotations of the resource method, or proxy method parameter
+     * @return Level of the @LZF annotation among them, DEFAULT if there is none (as for @Compress)
+     */
+    public static LZF.Level levelOf(Annotation[] annotations) {
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof LZF) {
+                    return ((LZF) annotation).level();
+                }
+            }
+        }
+        return LZF.Level.DEFAULT;
+    }
+
+    static ChunkDecoder decoder() {
+        return DECODER;
+    }
+
+    static EncoderBuffers borrowEncoder() {
+        return borrowEncoder(LZF.Level.DEFAULT);
+    }
+
+    static EncoderBuffers borrowEncoder(LZF.Level level) {
+        EncoderPool pool = encoders[level.ordinal()];
+        EncoderBuffers buffers = pool.idle.poll();
+        if (buffers == null) {
+            return new EncoderBuffers(level);
+        }
+        pool.count.decrementAndGet();
+        return buffers;
+    }
+
+    static void release(EncoderBuffers buffers) {
+        EncoderPool pool = encoders[buffers.level.ordinal()];
+        if (pool.count.incrementAndGet() <= CompressionConfig.getLzfPoolSize()) {
+            pool.idle.offer(buffers);
+        } else {
+            pool.count.decrementAndGet();
+        }
+    }
+
+    /** Borrow a buffer for one encoded chunk, used by parallel compression */
+    static byte[] borrowEncodedBuffer() {
+        byte[] buffer = encodedBuffers.poll();
+        if (buffer == null) {
+            return new byte[ENCODED_CHUNK_SIZE];
+        }
+        idleEncodedBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    static void releaseEncodedBuffer(byte[] buffer) {
+        if (idleEncodedBuffers.incrementAndGet() <= CompressionConfig.getLzfPoolSize()) {
+            encodedBuffers.offer(buffer);
+        } else {
+            idleEncodedBuffers.decrementAndGet();
+        }
+    }
+
+    static DecoderBuffers borrowDecoder() {
+        DecoderBuffers buffers = decoders.poll();
+        if (buffers == null) {
+            return new DecoderBuffers();
+        }
+        idleDecoders.decrementAndGet();
+        return buffers;
+    }
+
+    static void release(DecoderBuffers buffers) {
+        if (idleDecoders.incrementAndGet() <= CompressionConfig.getLzfPoolSize()) {
+            decoders.offer(buffers);
+        } else {
+            idleDecoders.decrementAndGet();
+        }
+    }
+
+    /** Number of idle encoders available for reuse, of all levels, for monitoring */
+    public static int getIdleEncoders() {
+        int idle = 0;
+        for (EncoderPool pool : encoders) {
+            idle += pool.count.get();
+        }
+        return idle;
+    }
+
+    /** Number of idle decoders available for reuse, for monitoring */
+    public static int getIdleDecoders() {
+        return idleDecoders.get();
+    }
+}
@@ -0,0 +1,45 @@
+package com.restcompress.provider;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded worker pool shared by all streams doing parallel LZF compression or decompression
+ * <p/>Threads are daemons, created on first use, and there are {@link CompressionConfig#getParallelThreads()} of them.
+ *  When every worker is busy and the queue is full, the submitting request thread runs the task itself,
+ *  so load spikes slow down large requests rather than queueing without limit.
+ */
+final class LZFWorkerPool {
+
+    private LZFWorkerPool() {
+    }
+
+    /** Lazily created, so applications not using parallel mode never start threads */
+    private static class Holder {
+        static final ExecutorService EXECUTOR = create();
+    }
+
+    private static ExecutorService create() {
+        int threads = Math.max(1, CompressionConfig.getParallelThreads());
+        final AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "restcompress-lzf-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 4), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    static ExecutorService executor() {
+        return Holder.EXECUTOR;
+    }
+}
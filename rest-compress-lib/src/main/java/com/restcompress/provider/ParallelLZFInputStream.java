@@ -0,0 +1,217 @@
+package com.restcompress.provider;
+
+import com.ning.compress.lzf.LZFChunk;
+import com.ning.compress.lzf.LZFException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * LZF decompressing stream that decodes chunks on several cores while the caller consumes earlier ones
+ * <p/>The calling thread reads compressed chunks ahead (headers and payloads), and hands them to the
+ *  {@link LZFWorkerPool} to decode, so the deserializer is parsing chunk N while chunks N+1... are decoded.
+ *  Read-ahead is bounded to {@link CompressionConfig#getParallelReadAhead()} chunks.
+ * <p/>The first {@link CompressionConfig#getParallelThreshold()} compressed bytes are decoded inline, with no
+ *  read-ahead, so small bodies behave exactly like {@link PooledLZFInputStream}.
+ * <p/>Buffers come from the {@link LZFStreamPool}, and are returned at end of stream or on close();
+ *  the underlying stream is never closed.
+ */
+public class ParallelLZFInputStream extends InputStream {
+
+    /** Decoded chunk, with the pooled buffers holding it */
+    private static final class DecodedChunk {
+        final LZFStreamPool.DecoderBuffers buffers;
+        final byte[] data;
+        final int length;
+
+        DecodedChunk(LZFStreamPool.DecoderBuffers buffers, byte[] data, int length) {
+            this.buffers = buffers;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    protected final InputStream in;
+    private final long threshold;
+    private final int readAhead;
+    private final Deque<Future<DecodedChunk>> inFlight = new ArrayDeque<Future<DecodedChunk>>();
+    private final byte[] header = new byte[LZFChunk.MAX_HEADER_LEN];
+    private DecodedChunk current;
+    private int position = 0;
+    private long bytesRead = 0;
+    private boolean eof = false;
+    private boolean closed = false;
+
+    public ParallelLZFInputStream(InputStream in) {
+        this(in, CompressionConfig.getParallelThreshold(), CompressionConfig.getParallelReadAhead());
+    }
+
+    /**
+     * @param in Stream of LZF data
+     * @param threshold Compressed bytes to decode inline before reading ahead in parallel
+     * @param readAhead Maximum chunks read ahead
+     */
+    public ParallelLZFInputStream(InputStream in, long threshold, int readAhead) {
+        this.in = in;
+        this.threshold = threshold;
+        this.readAhead = Math.max(1, readAhead);
+    }
+
+    /**
+     * Make sure decoded data is available, reading ahead and waiting for the next chunk if needed
+     * @return False at end of the LZF data
+     */
+    protected boolean readyBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (current == null || position >= current.length) {
+            releaseCurrent();
+            int limit = bytesRead > threshold ? readAhead : 1;
+            while (!eof && inFlight.size() < limit) {
+                readChunk();
+            }
+            if (inFlight.isEmpty()) {
+                return false;
+            }
+            current = take(inFlight.removeFirst());
+            position = 0;
+        }
+        return true;
+    }
+
+    /** Read the next chunk's header and payload, then decode it inline or on the worker pool */
+    private void readChunk() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            eof = true;
+            return;
+        }
+        header[0] = (byte) first;
+        readFully(header, 1, LZFChunk.HEADER_LEN_NOT_COMPRESSED - 1);
+        if (header[0] != LZFChunk.BYTE_Z || header[1] != LZFChunk.BYTE_V) {
+            throw new LZFException("Corrupt input data, block did not start with 'ZV' signature bytes");
+        }
+        int type = header[2];
+        final int length = uint16(header, 3);
+        final LZFStreamPool.DecoderBuffers buffers = LZFStreamPool.borrowDecoder();
+        Callable<DecodedChunk> decode;
+        if (type == LZFChunk.BLOCK_TYPE_NON_COMPRESSED) {
+            readFully(buffers.input, 0, length);
+            decode = new Callable<DecodedChunk>() {
+                public DecodedChunk call() {
+                    return new DecodedChunk(buffers, buffers.input, length);
+                }
+            };
+        } else if (type == LZFChunk.BLOCK_TYPE_COMPRESSED) {
+            readFully(header, LZFChunk.HEADER_LEN_NOT_COMPRESSED, 2);
+            final int uncompressedLength = uint16(header, LZFChunk.HEADER_LEN_NOT_COMPRESSED);
+            readFully(buffers.input, 0, length);
+            decode = new Callable<DecodedChunk>() {
+                public DecodedChunk call() throws LZFException {
+                    LZFStreamPool.decoder().decodeChunk(buffers.input, 0, buffers.decoded, 0, uncompressedLength);
+                    return new DecodedChunk(buffers, buffers.decoded, uncompressedLength);
+                }
+            };
+        } else {
+            LZFStreamPool.release(buffers);
+            throw new LZFException("Corrupt input data, unrecognized LZF block type " + type);
+        }
+        bytesRead += length;
+
+        if (bytesRead > threshold && type == LZFChunk.BLOCK_TYPE_COMPRESSED) {
+            inFlight.addLast(LZFWorkerPool.executor().submit(decode));
+        } else {
+            FutureTask<DecodedChunk> inline = new FutureTask<DecodedChunk>(decode);
+            inline.run();
+            inFlight.addLast(inline);
+        }
+    }
+
+    private static int uint16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = in.read(buffer, offset, length);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of LZF input, in middle of a chunk");
+            }
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private DecodedChunk take(Future<DecodedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for LZF decompression");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Parallel LZF decompression failed", cause);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!readyBuffer()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!readyBuffer()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    private void releaseCurrent() {
+        if (current != null) {
+            LZFStreamPool.release(current.buffers);
+            current = null;
+            position = 0;
+        }
+    }
+
+    /** Return buffers to the pool, and stop any read-ahead; the underlying stream is left open */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseCurrent();
+        for (Future<DecodedChunk> pending : inFlight) {
+            pending.cancel(false); // Buffers of chunks being decoded are left to the garbage collector
+        }
+        inFlight.clear();
+    }
+}
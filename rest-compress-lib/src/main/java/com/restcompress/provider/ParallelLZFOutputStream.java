@@ -0,0 +1,190 @@
+package com.restcompress.provider;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * LZF compressing stream that compresses 64 kB chunks on several cores, for large bodies
+ * <p/>LZF chunks are independent, so they can be compressed in any order and written out in sequence.
+ *  The first {@link CompressionConfig#getParallelThreshold()} bytes are compressed on the calling thread,
+ *  exactly like {@link PooledLZFOutputStream}, so small bodies never touch the worker pool.
+ *  After that, each full chunk is handed to the {@link LZFWorkerPool}, and at most
+ *  {@link CompressionConfig#getParallelMaxInFlight()} chunks are outstanding at once, to cap memory use.
+ * <p/>Output is standard LZF, identical to sequential compression.  As with PooledLZFOutputStream,
+ *  flush() ends the current chunk, and close() does not close the underlying stream.
+ */
+public class ParallelLZFOutputStream extends OutputStream {
+
+    /** One compressed chunk, in a pooled buffer */
+    private static final class EncodedChunk {
+        final byte[] data;
+        final int length;
+
+        EncodedChunk(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    protected final OutputStream out;
+    private final long threshold;
+    private final int maxInFlight;
+    private final LZF.Level level;
+    private final Deque<Future<EncodedChunk>> inFlight = new ArrayDeque<Future<EncodedChunk>>();
+    private LZFStreamPool.EncoderBuffers current;
+    private int position = 0;
+    private long bytesIn = 0;
+
+    public ParallelLZFOutputStream(OutputStream out) {
+        this(out, LZF.Level.DEFAULT);
+    }
+
+    public ParallelLZFOutputStream(OutputStream out, LZF.Level level) {
+        this(out, level, CompressionConfig.getParallelThreshold(), CompressionConfig.getParallelMaxInFlight());
+    }
+
+    /**
+     * @param out Stream to write LZF data to
+     * @param threshold Bytes to compress on the calling thread before going parallel
+     * @param maxInFlight Maximum chunks being compressed at once for this stream
+     */
+    public ParallelLZFOutputStream(OutputStream out, long threshold, int maxInFlight) {
+        this(out, LZF.Level.DEFAULT, threshold, maxInFlight);
+    }
+
+    /**
+     * @param out Stream to write LZF data to
+     * @param level Compression level
+     * @param threshold Bytes to compress on the calling thread before going parallel
+     * @param maxInFlight Maximum chunks being compressed at once for this stream
+     */
+    public ParallelLZFOutputStream(OutputStream out, LZF.Level level, long threshold, int maxInFlight) {
+        this.out = out;
+        this.level = level;
+        this.threshold = threshold;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.current = LZFStreamPool.borrowEncoder(level);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkNotClosed();
+        if (position >= current.buffer.length) {
+            writeChunk();
+        }
+        current.buffer[position++] = (byte) b;
+        bytesIn++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkNotClosed();
+        while (len > 0) {
+            int count = Math.min(len, current.buffer.length - position);
+            System.arraycopy(b, off, current.buffer, position, count);
+            position += count;
+            bytesIn += count;
+            off += count;
+            len -= count;
+            if (position == current.buffer.length) {
+                writeChunk();
+            }
+        }
+    }
+
+    /** Compress the buffered chunk, inline while under the threshold and otherwise on the worker pool */
+    protected void writeChunk() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        if (bytesIn <= threshold && inFlight.isEmpty()) {
+            current.encoder.encodeAndWriteChunk(current.buffer, 0, position, out);
+            position = 0;
+            return;
+        }
+
+        while (inFlight.size() >= maxInFlight) {
+            writeNext();
+        }
+        final LZFStreamPool.EncoderBuffers chunk = current;
+        final int length = position;
+        inFlight.addLast(LZFWorkerPool.executor().submit(new Callable<EncodedChunk>() {
+            public EncodedChunk call() {
+                try {
+                    byte[] encoded = LZFStreamPool.borrowEncodedBuffer();
+                    int encodedLength = chunk.encoder.appendEncodedChunk(chunk.buffer, 0, length, encoded, 0);
+                    return new EncodedChunk(encoded, encodedLength);
+                } finally {
+                    LZFStreamPool.release(chunk);
+                }
+            }
+        }));
+        current = LZFStreamPool.borrowEncoder(level);
+        position = 0;
+
+        // Keep output moving for chunks that are already done
+        while (!inFlight.isEmpty() && inFlight.peekFirst().isDone()) {
+            writeNext();
+        }
+    }
+
+    /** Wait for the oldest outstanding chunk, and write it out */
+    private void writeNext() throws IOException {
+        EncodedChunk chunk;
+        try {
+            chunk = inFlight.removeFirst().get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for LZF compression");
+        } catch (ExecutionException ee) {
+            throw new IOException("Parallel LZF compression failed", ee.getCause());
+        }
+        try {
+            out.write(chunk.data, 0, chunk.length);
+        } finally {
+            LZFStreamPool.releaseEncodedBuffer(chunk.data);
+        }
+    }
+
+    /** Ends the current chunk, waits for all outstanding chunks to be written, then flushes underlying stream */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+        writeChunk();
+        while (!inFlight.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    /** Write remaining data and return buffers to the pool; the underlying stream is left open */
+    @Override
+    public void close() throws IOException {
+        if (current == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            for (Future<EncodedChunk> pending : inFlight) { // Only left after an error
+                pending.cancel(false);
+            }
+            inFlight.clear();
+            LZFStreamPool.EncoderBuffers released = current;
+            current = null;
+            LZFStreamPool.release(released);
+        }
+    }
+
+    protected void checkNotClosed() throws IOException {
+        if (current == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.restcompress.provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * LZF decompressing stream, like com.ning.compress.lzf.LZFInputStream, but with buffers from the {@link LZFStreamPool}
+ * <p/>Buffers are returned to the pool as soon as the end of the LZF data is reached, or on close().
+ *  Closing does not close the underlying stream, since it belongs to the container.
+ */
+public class PooledLZFInputStream extends InputStream {
+
+    protected final InputStream in;
+    protected LZFStreamPool.DecoderBuffers buffers;
+    protected int position = 0;
+    protected int length = 0;
+    protected boolean closed = false;
+
+    protected PooledLZFInputStream(InputStream in) {
+        this.in = in;
+        this.buffers = LZFStreamPool.borrowDecoder();
+    }
+
+    /**
+     * Make sure decoded data is available, decoding the next chunk if needed
+     * @return False if the end of the LZF data was reached
+     */
+    protected boolean readyBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (buffers == null) {
+            return false; // Already at end of stream
+        }
+        while (position >= length) {
+            int decoded = LZFStreamPool.decoder().decodeChunk(in, buffers.input, buffers.decoded);
+            if (decoded < 0) {
+                releaseBuffers();
+                return false;
+            }
+            position = 0;
+            length = decoded;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!readyBuffer()) {
+            return -1;
+        }
+        return buffers.decoded[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!readyBuffer()) {
+            return -1;
+        }
+        int count = Math.min(len, length - position);
+        System.arraycopy(buffers.decoded, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && readyBuffer()) {
+            int count = (int) Math.min(n - skipped, length - position);
+            position += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffers == null ? 0 : length - position;
+    }
+
+    /** Return buffers to the pool; the underlying stream is left open */
+    @Override
+    public void close() {
+        closed = true;
+        releaseBuffers();
+    }
+
+    protected void releaseBuffers() {
+        if (buffers != null) {
+            LZFStreamPool.DecoderBuffers released = buffers;
+            buffers = null;
+            position = length = 0;
+            LZFStreamPool.release(released);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.restcompress.provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * LZF compressing stream, like com.ning.compress.lzf.LZFOutputStream, but with buffers from the {@link LZFStreamPool}
+ * <p/>Output is standard LZF format, one chunk per 64 kB of input, and flush() ends the current chunk.
+ * <p/>close() writes any buffered data and returns the buffers, but does not close the underlying stream,
+ *  since it belongs to the container.
+ */
+public class PooledLZFOutputStream extends OutputStream {
+
+    protected final OutputStream out;
+    protected LZFStreamPool.EncoderBuffers buffers;
+    protected int position = 0;
+
+    protected PooledLZFOutputStream(OutputStream out) {
+        this(out, LZF.Level.DEFAULT);
+    }
+
+    protected PooledLZFOutputStream(OutputStream out, LZF.Level level) {
+        this.out = out;
+        this.buffers = LZFStreamPool.borrowEncoder(level);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkNotClosed();
+        if (position >= buffers.buffer.length) {
+            writeChunk();
+        }
+        buffers.buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkNotClosed();
+        byte[] buffer = buffers.buffer;
+
+        // Whole chunks can be compressed straight from the caller's array
+        while (position == 0 && len >= buffer.length) {
+            buffers.encoder.encodeAndWriteChunk(b, off, buffer.length, out);
+            off += buffer.length;
+            len -= buffer.length;
+        }
+        while (len > 0) {
+            int count = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, count);
+            position += count;
+            off += count;
+            len -= count;
+            if (position == buffer.length) {
+                writeChunk();
+            }
+        }
+    }
+
+    /** Compress and write out the buffered data as a chunk */
+    protected void writeChunk() throws IOException {
+        if (position > 0) {
+            buffers.encoder.encodeAndWriteChunk(buffers.buffer, 0, position, out);
+            position = 0;
+        }
+    }
+
+    /** Ends the current chunk, then flushes underlying stream */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+        writeChunk();
+        out.flush();
+    }
+
+    /** Write remaining data and return buffers to the pool; the underlying stream is left open */
+    @Override
+    public void close() throws IOException {
+        if (buffers == null) {
+            return;
+        }
+        try {
+            writeChunk();
+            out.flush();
+        } finally {
+            LZFStreamPool.EncoderBuffers released = buffers;
+            buffers = null;
+            LZFStreamPool.release(released);
+        }
+    }
+
+    protected void checkNotClosed() throws IOException {
+        if (buffers == null) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
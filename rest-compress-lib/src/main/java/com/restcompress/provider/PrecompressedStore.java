@@ -0,0 +1,308 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.CodecRegistry;
+import com.restcompress.provider.codec.CompressionCodec;
+import com.restcompress.provider.codec.DeflateDictionaryCodec;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Disk-backed store of large, rarely changing response bodies, serialized and compressed once into files
+ * <p/>Register a payload at startup with the codecs to precompress it in, and return {@link #get(String)} from
+ *  the resource method: {@link PrecompressedWriter} sends the file for the encoding the client accepts with
+ *  FileChannel.transferTo, with a Content-Length and ETag.  Requests cost no serialization, no compression,
+ *  and no heap for the body.
+ * <p/>Call {@link #refresh(String)} when the data changes: new files are written next to the old ones, then the entry
+ *  is swapped in one step, so requests see either the old body or the new one, never a mix.  Files of the
+ *  generation before the old one are deleted, so requests still sending the old body are not cut off.
+ * <p/>Files are kept in {@link CompressionConfig#getStoreDirectory()}.
+ */
+public final class PrecompressedStore {
+
+    /** Encoding name used for the uncompressed file */
+    public static final String IDENTITY = "identity";
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    /** One generation of a stored payload: the uncompressed file and one file per encoding */
+    public static final class Entry {
+        final String name;
+        final MediaType mediaType;
+        final long generation;
+        final String etag;
+        final Map<String, File> files;
+        final Map<String, Long> lengths;
+
+        Entry(String name, MediaType mediaType, long generation, String etag, Map<String, File> files, Map<String, Long> lengths) {
+            this.name = name;
+            this.mediaType = mediaType;
+            this.generation = generation;
+            this.etag = etag;
+            this.files = files;
+            this.lengths = lengths;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        /** Generation number, increasing with every refresh */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /** Encodings stored, in preference order, not including identity; encodings that didn't shrink the body are left out */
+        public List<String> getEncodings() {
+            List<String> encodings = new ArrayList<String>(files.keySet());
+            encodings.remove(IDENTITY);
+            return encodings;
+        }
+
+        /**
+         * Length of the stored body
+         * @param encoding Encoding, or null for uncompressed
+         */
+        public long getLength(String encoding) {
+            return lengths.get(encoding == null ? IDENTITY : encoding);
+        }
+
+        /**
+         * Strong ETag of the stored body; each encoding is its own representation
+         * @param encoding Encoding, or null for uncompressed
+         */
+        public String getETag(String encoding) {
+            return "\"" + etag + (encoding == null ? "" : "-" + encoding) + "\"";
+        }
+
+        /**
+         * Send the stored body with FileChannel.transferTo, without copying it onto the heap
+         * @param encoding Encoding, or null for uncompressed
+         * @param out Stream to write to, left open
+         */
+        public void transferTo(String encoding, OutputStream out) throws IOException {
+            FileInputStream in = new FileInputStream(files.get(encoding == null ? IDENTITY : encoding));
+            try {
+                FileChannel channel = in.getChannel();
+                WritableByteChannel target = Channels.newChannel(out);
+                long size = getLength(encoding);
+                long position = 0;
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /** How to regenerate a payload */
+    private static final class Source {
+        final MediaType mediaType;
+        final StreamingOutput body;
+        final List<String> encodings;
+
+        Source(MediaType mediaType, StreamingOutput body, List<String> encodings) {
+            this.mediaType = mediaType;
+            this.body = body;
+            this.encodings = encodings;
+        }
+    }
+
+    private static final ConcurrentMap<String, Source> sources = new ConcurrentHashMap<String, Source>();
+    private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private static final ConcurrentMap<String, Entry> previous = new ConcurrentHashMap<String, Entry>();
+
+    /** Generations start from the clock, so files left by an earlier run are never reused */
+    private static final AtomicLong generations = new AtomicLong(System.currentTimeMillis());
+
+    private PrecompressedStore() {
+    }
+
+    /**
+     * Register a payload, and write its files
+     * @param name Name of the payload: letters, digits, '.', '_' and '-'
+     * @param mediaType Media type of the body
+     * @param body Writes the uncompressed body; called again by {@link #refresh(String)}
+     * @param encodings Encodings to store, in preference order; unavailable ones (and deflate-dict) are skipped
+     * @return Stored entry
+     * @throws IOException If the files could not be written
+     */
+    public static Entry register(String name, MediaType mediaType, StreamingOutput body, String... encodings) throws IOException {
+        if (name == null || !VALID_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid payload name: " + name);
+        }
+        List<String> available = new ArrayList<String>(CodecRegistry.available(encodings));
+        available.remove(DeflateDictionaryCodec.NAME); // Depends on the client's dictionary
+        sources.put(name, new Source(mediaType, body, available));
+        return refresh(name);
+    }
+
+    /**
+     * Write a new generation of a payload's files and swap it in
+     * @param name Registered payload name
+     * @return New entry
+     * @throws IOException If the files could not be written; the previous generation is still served
+     */
+    public static Entry refresh(String name) throws IOException {
+        Source source = sources.get(name);
+        if (source == null) {
+            throw new IllegalArgumentException("No payload registered as: " + name);
+        }
+        synchronized (source) {
+            File directory = getDirectory();
+            long generation = generations.incrementAndGet();
+            Map<String, File> files = new LinkedHashMap<String, File>();
+            Map<String, Long> lengths = new LinkedHashMap<String, Long>();
+            try {
+                File identity = new File(directory, name + '.' + generation + '.' + IDENTITY);
+                CRC32 crc = new CRC32();
+                File tmp = File.createTempFile(name + '.', ".tmp", directory);
+                try {
+                    OutputStream out = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024), crc);
+                    try {
+                        source.body.write(out);
+                    } finally {
+                        out.close();
+                    }
+                    move(tmp, identity);
+                } finally {
+                    tmp.delete(); // Only left if writing failed
+                }
+                long length = identity.length();
+                files.put(IDENTITY, identity);
+                lengths.put(IDENTITY, length);
+
+                for (String encoding : source.encodings) {
+                    File encoded = new File(directory, name + '.' + generation + '.' + encoding);
+                    compress(CodecRegistry.get(encoding), identity, encoded);
+                    if (encoded.length() < length) {
+                        files.put(encoding, encoded);
+                        lengths.put(encoding, encoded.length());
+                    } else if (!encoded.delete()) { // Doesn't compress, not worth storing
+                        encoded.deleteOnExit();
+                    }
+                }
+                Entry entry = new Entry(name, source.mediaType, generation,
+                        Long.toHexString(crc.getValue()) + '-' + Long.toHexString(length),
+                        Collections.unmodifiableMap(files), Collections.unmodifiableMap(lengths));
+
+                Entry replaced = entries.put(name, entry);
+                Entry expired = replaced != null ? previous.put(name, replaced) : null;
+                if (expired != null) {
+                    delete(expired.files.values());
+                }
+                return entry;
+            } catch (IOException ioe) {
+                delete(files.values());
+                throw ioe;
+            }
+        }
+    }
+
+    private static void compress(CompressionCodec codec, File from, File to) throws IOException {
+        File tmp = File.createTempFile(to.getName() + '.', ".tmp", to.getParentFile());
+        try {
+            InputStream in = new FileInputStream(from);
+            try {
+                OutputStream out = codec.compress(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+                try {
+                    byte[] buffer = new byte[64 * 1024];
+                    int count;
+                    while ((count = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, count);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            move(tmp, to);
+        } finally {
+            tmp.delete(); // Only left if compression failed
+        }
+    }
+
+    private static void move(File from, File to) throws IOException {
+        Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void delete(Iterable<File> files) {
+        for (File file : files) {
+            if (!file.delete() && file.exists()) { // Still open somewhere, on platforms that care
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private static File getDirectory() throws IOException {
+        File directory = new File(CompressionConfig.getStoreDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Cannot create precompressed store directory: " + directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Current entry for a payload, to return from a resource method
+     * @param name Registered payload name
+     * @return Entry, or null if there is no such payload
+     */
+    public static Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /** Names of the stored payloads */
+    public static List<String> names() {
+        return new ArrayList<String>(entries.keySet());
+    }
+
+    /**
+     * Forget a payload and delete its files
+     * @param name Payload name
+     */
+    public static void remove(String name) {
+        Source source = sources.remove(name);
+        if (source == null) {
+            return;
+        }
+        synchronized (source) { // Waits for a refresh in progress
+            Entry entry = entries.remove(name);
+            if (entry != null) {
+                delete(entry.files.values());
+            }
+            Entry old = previous.remove(name);
+            if (old != null) {
+                delete(old.files.values());
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.restcompress.provider;
+
+import com.restcompress.provider.codec.AcceptEncoding;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Sends a {@link PrecompressedStore.Entry} returned by a resource method, in the encoding the client accepts
+ * <p/>Sets Content-Encoding, Content-Length, ETag and Vary, then copies the stored file to the response.
+ *  The method's @Produces should match the media type the payload was registered with.
+ * <p/>Methods returning stored payloads don't need @LZF or @Compress.  If they have one anyway, the body is
+ *  already being compressed by an encoding interceptor, so the uncompressed file is sent to it.
+ */
+@Provider
+@Produces("*/*")
+public class PrecompressedWriter implements MessageBodyWriter<PrecompressedStore.Entry> {
+
+    @Context
+    protected HttpHeaders requestHeaders;
+
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return PrecompressedStore.Entry.class.isAssignableFrom(type);
+    }
+
+    public long getSize(PrecompressedStore.Entry entry, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1; // Depends on the encoding, set in writeTo
+    }
+
+    public void writeTo(PrecompressedStore.Entry entry, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        if (httpHeaders.getFirst(HttpHeaders.CONTENT_ENCODING) != null) { // An encoding interceptor is compressing it
+            entry.transferTo(null, entityStream);
+            return;
+        }
+        String encoding = null;
+        if (!entry.getEncodings().isEmpty()) {
+            encoding = AcceptEncoding.parse(requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING))
+                    .negotiate(entry.getEncodings());
+            httpHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (encoding != null) {
+            httpHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, Long.toString(entry.getLength(encoding)));
+        httpHeaders.putSingle(HttpHeaders.ETAG, entry.getETag(encoding));
+        entry.transferTo(encoding, entityStream);
+    }
+}
@@ -0,0 +1,79 @@
+package com.restcompress.provider;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-request breakdown of where a compressed response's time went, sent as a Server-Timing header
+ * <p/>Enabled with {@link CompressionConfig#setTimingEnabled(boolean)}, then requested per request by sending the
+ *  {@link CompressionConfig#getTimingHeader()} header (any value), so slow endpoints can be profiled in production
+ *  without a profiler.  Responses get, for example:
+ * <pre>
+ * Server-Timing: serialize;dur=12.410, compress;dur=1.032;desc="lzf", size;desc="180294 -> 17335"
+ * </pre>
+ *  serialize is the time in the entity writer, not counting compression; compress is the time inside the compressor.
+ * <p/>The header has to go out before the body, so it is only sent for bodies buffered for a Content-Length:
+ *  when timing is requested, bodies are buffered up to {@link CompressionConfig#getTimingBufferLimit()}, and larger
+ *  ones stream without it.  The final write of the buffered body happens after the header, and is not included.
+ */
+public final class ServerTiming {
+
+    /** Response header name */
+    public static final String HEADER = "Server-Timing";
+
+    private ServerTiming() {
+    }
+
+    /**
+     * Check if a request asks for timing
+     * @param headers Request headers, null on the client side
+     * @return True if timing is enabled and the request sent the timing header
+     */
+    public static boolean isRequested(HttpHeaders headers) {
+        return headers != null && isRequested(headers.getRequestHeader(CompressionConfig.getTimingHeader()));
+    }
+
+    /**
+     * Check if a request asks for timing
+     * @param values Values of the request's {@link CompressionConfig#getTimingHeader()} header, may be null
+     * @return True if timing is enabled and the request sent the timing header
+     */
+    public static boolean isRequested(List<String> values) {
+        return CompressionConfig.isTimingEnabled() && values != null && !values.isEmpty();
+    }
+
+    /**
+     * Compressed bytes to buffer for a Content-Length, when timing is requested
+     * @param bufferLimit Usual limit, 0 if the body streams anyway
+     * @return Raised limit, so the timing header can still be set once the body is done
+     */
+    public static int getBufferLimit(int bufferLimit) {
+        return bufferLimit > 0 ? Math.max(bufferLimit, CompressionConfig.getTimingBufferLimit()) : 0;
+    }
+
+    /**
+     * Add the timing header to the response headers, before they are committed
+     * @param headers Response headers
+     * @param serializeNanos Time in the entity writer, not counting compression
+     * @param compressNanos Time in the compressor
+     * @param encoding Encoding used, or null if sent uncompressed
+     * @param uncompressed Body size before compression
+     * @param compressed Body size sent
+     */
+    public static void add(MultivaluedMap<String, Object> headers, long serializeNanos, long compressNanos, String encoding,
+                           long uncompressed, long compressed) {
+        StringBuilder timing = new StringBuilder();
+        timing.append("serialize;dur=").append(millis(serializeNanos));
+        if (encoding != null) {
+            timing.append(", compress;dur=").append(millis(compressNanos)).append(";desc=\"").append(encoding).append('"');
+        }
+        timing.append(", size;desc=\"").append(uncompressed).append(" -> ").append(compressed).append('"');
+        headers.add(HEADER, timing.toString());
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", Math.max(0, nanos) / 1000000.0);
+    }
+}
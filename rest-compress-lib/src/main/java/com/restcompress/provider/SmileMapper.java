@@ -0,0 +1,43 @@
+package com.restcompress.provider;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Shared Jackson mapper used by {@link SmileProvider}
+ * <p/>Change its serialization settings at application startup, like any ObjectMapper.  Leaves streams open,
+ *  since the compression interceptors finish them.  Only use this if {@link SmileProvider#isAvailable()}.
+ */
+public final class SmileMapper {
+
+    private static final ObjectMapper mapper = create();
+
+    private SmileMapper() {
+    }
+
+    private static ObjectMapper create() {
+        SmileFactory factory = new SmileFactory();
+        factory.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        factory.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+        return new ObjectMapper(factory);
+    }
+
+    public static ObjectMapper get() {
+        return mapper;
+    }
+
+    /**
+     * Read a Smile body
+     * @param in Body, left open
+     * @param type Type to read, may be generic (ex: List&lt;KeyValue&gt;)
+     */
+    static Object read(InputStream in, Type type) throws IOException {
+        return mapper.readValue(in, mapper.getTypeFactory().constructType(type));
+    }
+}
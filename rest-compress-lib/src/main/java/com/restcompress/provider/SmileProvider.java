@@ -0,0 +1,87 @@
+package com.restcompress.provider;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes entities as Smile (binary JSON, "application/x-jackson-smile"), with the same Jackson
+ *  bean mapping as JSON
+ * <p/>Smile bodies are smaller than JSON and much cheaper to parse, since numbers and repeated keys are not text.
+ *  They still compress well with LZF, so a Smile body with Content-Encoding lzf is the cheapest for clients to read.
+ * <p/>Add "application/x-jackson-smile" to the @Produces/@Consumes of a method to offer it; clients asking for it
+ *  in their Accept header (see {@link AcceptSmileClientInterceptor}) get Smile, others keep getting JSON or XML.
+ * <p/>Requires the optional org.codehaus.jackson:jackson-smile dependency; without it, this provider declines
+ *  every type, so it is safe to register (or scan) anyway.  Jackson is only used through {@link SmileMapper},
+ *  so nothing here needs it to load.
+ */
+@Provider
+@Produces(SmileProvider.APPLICATION_SMILE)
+@Consumes(SmileProvider.APPLICATION_SMILE)
+public class SmileProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = new MediaType("application", "x-jackson-smile");
+
+    private static final boolean available = isLoadable("org.codehaus.jackson.smile.SmileFactory");
+
+    private static boolean isLoadable(String className) {
+        try {
+            Class.forName(className, true, SmileProvider.class.getClassLoader());
+            return true;
+        } catch (Throwable t) { // ClassNotFound, or NoClassDefFound for jackson-mapper itself
+            return false;
+        }
+    }
+
+    /** True if jackson-smile is on the classpath */
+    public static boolean isAvailable() {
+        return available;
+    }
+
+    private static boolean isSmile(MediaType mediaType) {
+        return mediaType != null && APPLICATION_SMILE_TYPE.isCompatible(mediaType) && !mediaType.isWildcardType();
+    }
+
+    /** Leave raw bodies (streams, bytes, strings) to the built-in providers */
+    private static boolean isMappable(Class<?> type) {
+        return !(String.class == type || byte[].class == type || InputStream.class.isAssignableFrom(type)
+                || Reader.class.isAssignableFrom(type) || StreamingOutput.class.isAssignableFrom(type));
+    }
+
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return available && isSmile(mediaType) && isMappable(type);
+    }
+
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
+            throws IOException, WebApplicationException {
+        return SmileMapper.read(entityStream, genericType != null ? genericType : type);
+    }
+
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return available && isSmile(mediaType) && isMappable(type);
+    }
+
+    public long getSize(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    public void writeTo(Object o, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        SmileMapper.get().writeValue(entityStream, o);
+    }
+}
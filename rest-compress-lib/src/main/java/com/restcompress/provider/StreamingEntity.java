@@ -0,0 +1,15 @@
+package com.restcompress.provider;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Response entity that serializes itself straight into the (compressing) entity stream, as it goes
+ * <p/>Return one from a resource method instead of a String or byte[] built up front, for large bodies.
+ *  The encoding interceptors recognise it, and stream compressed output from the first chunk rather than
+ *  buffering it for a Content-Length (see {@link CompressionConfig#getBufferLimit()}), so memory per response
+ *  stays bounded by the compressor's chunk size, not the body size.
+ * <p/>Implementations should write in large pieces, and avoid flushing until the end: every flush ends a
+ *  compressed chunk early.  For output that should reach the client as it is flushed, see {@link FlushingEntity}.
+ */
+public interface StreamingEntity extends StreamingOutput {
+}
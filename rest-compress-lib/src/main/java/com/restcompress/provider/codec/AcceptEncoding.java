@@ -0,0 +1,127 @@
+package com.restcompress.provider.codec;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parsed HTTP Accept-Encoding header, with quality values (RFC 2616 section 14.3)
+ * <p/>Example: "gzip;q=0.5, lzf, *;q=0" accepts lzf (q=1.0) over gzip, and nothing else.
+ * <p/>Used to pick the best encoding both the client and server support:
+ *  ties on quality value go to the server's preference order.
+ */
+public class AcceptEncoding {
+    public static final String WILDCARD = "*";
+
+    /** Encoding name (lower-case) to quality value, in header order */
+    private final Map<String, Float> qualities = new LinkedHashMap<String, Float>();
+
+    private AcceptEncoding() {
+    }
+
+    /**
+     * Parse one or more Accept-Encoding header values
+     * <p/>Malformed quality values are treated as q=0, so the encoding is not used
+     * @param headerValues Header values, may be null or contain nulls
+     * @return Parsed header, empty if there were no values
+     */
+    public static AcceptEncoding parse(List<String> headerValues) {
+        AcceptEncoding result = new AcceptEncoding();
+        if (headerValues != null) {
+            for (String value : headerValues) {
+                result.parseValue(value);
+            }
+        }
+        return result;
+    }
+
+    /** Parse a single header value, see {@link #parse(java.util.List)} */
+    public static AcceptEncoding parse(String headerValue) {
+        AcceptEncoding result = new AcceptEncoding();
+        result.parseValue(headerValue);
+        return result;
+    }
+
+    private void parseValue(String value) {
+        if (value == null) {
+            return;
+        }
+        for (String element : value.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+            if (name.isEmpty()) {
+                continue;
+            }
+            float q = 1.0f;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        q = Float.parseFloat(param.substring(2).trim());
+                    } catch (NumberFormatException nfe) {
+                        q = 0f;
+                    }
+                    if (q < 0f || q > 1f || Float.isNaN(q)) {
+                        q = 0f;
+                    }
+                }
+            }
+            qualities.put(name, q);
+        }
+    }
+
+    /** True if the header did not list any encodings */
+    public boolean isEmpty() {
+        return qualities.isEmpty();
+    }
+
+    /**
+     * Get quality value the client gives an encoding, applying the "*" wildcard if not listed explicitly
+     * @param encoding Encoding name
+     * @return Quality from 0 (not acceptable) to 1
+     */
+    public float getQuality(String encoding) {
+        if (encoding == null) {
+            return 0f;
+        }
+        Float q = qualities.get(encoding.toLowerCase(Locale.ENGLISH));
+        if (q == null) {
+            q = qualities.get(WILDCARD);
+        }
+        return q == null ? 0f : q;
+    }
+
+    /** Check if the header names this encoding explicitly (with any q-value) */
+    public boolean isListed(String encoding) {
+        return encoding != null && qualities.containsKey(encoding.toLowerCase(Locale.ENGLISH));
+    }
+
+    /** Check if client accepts this encoding with q > 0 */
+    public boolean accepts(String encoding) {
+        return getQuality(encoding) > 0f;
+    }
+
+    /**
+     * Pick the best encoding from the server's list
+     * @param serverPreference Encodings the server supports, most-preferred first
+     * @return Encoding with highest client quality value (first in server order on ties), or null to send unencoded
+     */
+    public String negotiate(List<String> serverPreference) {
+        String best = null;
+        float bestQ = 0f;
+        for (String encoding : serverPreference) {
+            float q = getQuality(encoding);
+            if (q > bestQ) {
+                best = encoding;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        return qualities.toString();
+    }
+}
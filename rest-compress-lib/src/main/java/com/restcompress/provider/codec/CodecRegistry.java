@@ -0,0 +1,107 @@
+package com.restcompress.provider.codec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the compression codecs available, looked up by content-coding name
+ * <p/>On startup, this registers:
+ * <ul>
+ *     <li>LZF and GZIP (always available)</li>
+ *     <li>LZ4 and Snappy, if their (optional) libraries are on the classpath</li>
+ *     <li>Any codec listed in META-INF/services/com.restcompress.provider.codec.CompressionCodec</li>
+ *     <li>Deflate with shared dictionaries, if any are configured (see {@link DictionaryRegistry})</li>
+ * </ul>
+ * Codecs can also be added with {@link #register(CompressionCodec)} at startup, before serving requests.
+ */
+public final class CodecRegistry {
+
+    private static final ConcurrentMap<String, CompressionCodec> codecs = new ConcurrentHashMap<String, CompressionCodec>();
+
+    static {
+        register(new LZFCodec());
+        register(new GZIPCodec());
+        if (isLoadable("net.jpountz.lz4.LZ4FrameOutputStream")) {
+            register(new LZ4Codec());
+        }
+        if (isLoadable("org.xerial.snappy.Snappy")) { // Initializing this loads the native library
+            register(new SnappyCodec());
+        }
+        try {
+            Iterator<CompressionCodec> it = ServiceLoader.load(CompressionCodec.class, CodecRegistry.class.getClassLoader()).iterator();
+            while (it.hasNext()) {
+                register(it.next());
+            }
+        } catch (ServiceConfigurationError sce) {
+            // Misconfigured plugin codecs should not prevent use of the built-in ones
+        }
+        DictionaryRegistry.loadConfigured(); // Registers DeflateDictionaryCodec if there are any
+    }
+
+    private CodecRegistry() {
+    }
+
+    private static boolean isLoadable(String className) {
+        try {
+            Class.forName(className, true, CodecRegistry.class.getClassLoader());
+            return true;
+        } catch (Throwable t) { // Missing class, or native library failing to load
+            return false;
+        }
+    }
+
+    /**
+     * Add or replace a codec, under its {@link CompressionCodec#getName()}
+     * @param codec Codec to register
+     */
+    public static void register(CompressionCodec codec) {
+        if (codec == null || codec.getName() == null) {
+            throw new IllegalArgumentException("Codec and codec name must not be null");
+        }
+        codecs.put(codec.getName().toLowerCase(Locale.ENGLISH), codec);
+    }
+
+    /**
+     * Get codec for a content-coding
+     * @param name Encoding name, case-insensitive
+     * @return Codec, or null if the encoding is not supported
+     */
+    public static CompressionCodec get(String name) {
+        if (name == null) {
+            return null;
+        }
+        return codecs.get(name.trim().toLowerCase(Locale.ENGLISH));
+    }
+
+    /** Check if an encoding is supported */
+    public static boolean isAvailable(String name) {
+        return get(name) != null;
+    }
+
+    /**
+     * Filter a list of encodings to the ones supported, preserving order
+     * @param names Encoding names, in order of preference
+     * @return Supported encodings, lower-case
+     */
+    public static List<String> available(String... names) {
+        List<String> out = new ArrayList<String>(names.length);
+        for (String name : names) {
+            CompressionCodec codec = get(name);
+            if (codec != null && !out.contains(codec.getName())) {
+                out.add(codec.getName());
+            }
+        }
+        return out;
+    }
+
+    /** Names of all registered codecs */
+    public static List<String> names() {
+        return new ArrayList<String>(codecs.keySet());
+    }
+}
@@ -0,0 +1,37 @@
+package com.restcompress.provider.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Service Provider Interface for a compression algorithm usable as an HTTP content-coding
+ * <p/>Implementations are registered in the {@link CodecRegistry}, either built-in or discovered with
+ *  {@link java.util.ServiceLoader} from META-INF/services/com.restcompress.provider.codec.CompressionCodec
+ * <p/>Codecs must be thread-safe: one instance is shared by all requests.
+ */
+public interface CompressionCodec {
+
+    /**
+     * Content-coding token used in the Accept-Encoding and Content-Encoding headers (ex: "lzf")
+     * @return Lower-case encoding name
+     */
+    public String getName();
+
+    /**
+     * Wrap a stream so data written to it is compressed
+     * <p/>Closing the returned stream must finish the compressed format, and will close the delegate.
+     * @param out Stream to write compressed data to
+     * @return Stream accepting uncompressed data
+     * @throws IOException
+     */
+    public OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Wrap a stream of compressed data so it can be read uncompressed
+     * @param in Stream of compressed data
+     * @return Stream returning uncompressed data
+     * @throws IOException
+     */
+    public InputStream decompress(InputStream in) throws IOException;
+}
@@ -0,0 +1,167 @@
+package com.restcompress.provider.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A preset dictionary for {@link DeflateDictionaryCodec}: bytes typical of the bodies being compressed
+ *  (JSON keys, common values), which small bodies can match against from their first byte
+ * <p/>The ID is the Adler-32 checksum of the bytes, as 8 hex digits: the same DICTID the zlib format
+ *  puts in the stream header, so decoders can find the right dictionary without any other information.
+ * <p/>Deflaters and inflaters are pooled, since each holds a few hundred kB of native memory.
+ */
+public final class CompressionDictionary {
+
+    /** Deflate only looks back 32 kB, so any more of a dictionary is never used */
+    public static final int MAX_SIZE = 32 * 1024;
+
+    private static final int MAX_IDLE = 4 * Runtime.getRuntime().availableProcessors();
+
+    private final byte[] bytes;
+    private final int adler;
+    private final String id;
+
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+    private final AtomicInteger idleDeflaters = new AtomicInteger();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+    private final AtomicInteger idleInflaters = new AtomicInteger();
+
+    /**
+     * @param bytes Dictionary content, most useful content last; only the last 32 kB are kept
+     */
+    public CompressionDictionary(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new IllegalArgumentException("Dictionary must not be empty");
+        }
+        if (bytes.length > MAX_SIZE) {
+            byte[] tail = new byte[MAX_SIZE];
+            System.arraycopy(bytes, bytes.length - MAX_SIZE, tail, 0, MAX_SIZE);
+            bytes = tail;
+        }
+        this.bytes = bytes;
+        Adler32 checksum = new Adler32();
+        checksum.update(bytes, 0, bytes.length);
+        this.adler = (int) checksum.getValue();
+        this.id = formatId(adler);
+    }
+
+    /** Dictionary ID for an Adler-32 value, as used in headers */
+    static String formatId(int adler) {
+        String hex = Integer.toHexString(adler);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Load a dictionary file (raw bytes, as written by {@link DictionaryTrainer})
+     * @param file Dictionary file
+     */
+    public static CompressionDictionary load(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Load a dictionary from a stream, which is left open */
+    public static CompressionDictionary load(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return new CompressionDictionary(out.toByteArray());
+    }
+
+    /** ID sent in the Accept-Dictionary and Content-Dictionary headers: Adler-32 as 8 lower-case hex digits */
+    public String getId() {
+        return id;
+    }
+
+    /** Adler-32 of the dictionary, as in the zlib stream header */
+    public int getAdler() {
+        return adler;
+    }
+
+    public int getSize() {
+        return bytes.length;
+    }
+
+    /** Deflater primed with this dictionary; return it with {@link #release(Deflater)} */
+    Deflater borrowDeflater() {
+        Deflater deflater = deflaters.poll();
+        if (deflater != null) {
+            idleDeflaters.decrementAndGet();
+        } else {
+            // Fastest level: small bodies gain far more from dictionary matches than from a deeper search
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+        deflater.setDictionary(bytes);
+        return deflater;
+    }
+
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (idleDeflaters.incrementAndGet() <= MAX_IDLE) {
+            deflaters.offer(deflater);
+        } else {
+            idleDeflaters.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /** Inflater ready for a stream using this dictionary; return it with {@link #release(Inflater)} */
+    Inflater borrowInflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater != null) {
+            idleInflaters.decrementAndGet();
+            return inflater;
+        }
+        return new Inflater();
+    }
+
+    void release(Inflater inflater) {
+        inflater.reset();
+        if (idleInflaters.incrementAndGet() <= MAX_IDLE) {
+            inflaters.offer(inflater);
+        } else {
+            idleInflaters.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionDictionary[" + id + ", " + bytes.length + " bytes]";
+    }
+
+    /** Parse a dictionary ID from a header, or return null if malformed */
+    static String normalizeId(String id) {
+        id = id.trim().toLowerCase(Locale.ENGLISH);
+        if (id.length() != 8) {
+            return null;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (Character.digit(id.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        return id;
+    }
+}
@@ -0,0 +1,186 @@
+package com.restcompress.provider.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Deflate with a shared preset dictionary ("deflate-dict" content-coding), for small JSON/XML bodies
+ * <p/>Small bodies barely compress on their own: repeated keys like "id", "date" and "login" have nothing earlier
+ *  to match against.  With a dictionary trained on typical responses ({@link DictionaryTrainer}), they match from
+ *  the first byte.  The output is a standard zlib stream (RFC 1950) with the FDICT flag, and the dictionary's
+ *  Adler-32 as DICTID, so any zlib library holding the same dictionary can decode it.
+ * <p/>Only registered once a dictionary is, see {@link DictionaryRegistry}.  The server only uses it with clients
+ *  that list a dictionary it has in Accept-Dictionary, and the encoding interceptors bind the dictionary
+ *  named by the Content-Dictionary header with {@link #bind(CompressionCodec, Object)}.
+ */
+public class DeflateDictionaryCodec implements CompressionCodec {
+    public static final String NAME = "deflate-dict";
+
+    private final CompressionDictionary dictionary;
+
+    /** Codec for the registry: compresses with the first registered dictionary unless bound to another */
+    public DeflateDictionaryCodec() {
+        this(null);
+    }
+
+    /**
+     * @param dictionary Dictionary to compress with, null for the first registered one
+     */
+    public DeflateDictionaryCodec(CompressionDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Bind the dictionary chosen for a message, if the codec is this one
+     * @param codec Codec from the registry
+     * @param dictionaryId Content-Dictionary header value, may be null
+     * @return Codec using that dictionary, or the codec passed in
+     */
+    public static CompressionCodec bind(CompressionCodec codec, Object dictionaryId) {
+        if (!(codec instanceof DeflateDictionaryCodec) || dictionaryId == null) {
+            return codec;
+        }
+        CompressionDictionary bound = DictionaryRegistry.get(dictionaryId.toString());
+        return bound == null ? codec : new DeflateDictionaryCodec(bound);
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+    /** Dictionary this codec compresses with */
+    public CompressionDictionary getDictionary() throws IOException {
+        if (dictionary != null) {
+            return dictionary;
+        }
+        if (DictionaryRegistry.getAll().isEmpty()) {
+            throw new IOException("No compression dictionaries registered");
+        }
+        return DictionaryRegistry.getAll().get(0);
+    }
+
+    public OutputStream compress(OutputStream out) throws IOException {
+        final CompressionDictionary used = getDictionary();
+        final Deflater deflater = used.borrowDeflater();
+        return new DeflaterOutputStream(out, deflater, 512) {
+            private boolean closed = false;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close(); // Finishes the stream
+                } finally {
+                    used.release(deflater);
+                }
+            }
+        };
+    }
+
+    /**
+     * Read the zlib header, find the dictionary by its DICTID, and decompress with it
+     * <p/>Streams without a dictionary are plain zlib, and are decompressed too.
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        byte[] header = new byte[6];
+        readFully(in, header, 0, 2);
+        if (((header[0] & 0xFF) << 8 | (header[1] & 0xFF)) % 31 != 0 || (header[0] & 0x0F) != Deflater.DEFLATED) {
+            throw new ZipException("Not a zlib stream");
+        }
+        boolean hasDictionary = (header[1] & 0x20) != 0;
+        int headerLength = 2;
+        CompressionDictionary used = null;
+        if (hasDictionary) {
+            readFully(in, header, 2, 4);
+            headerLength = 6;
+            int adler = (header[2] & 0xFF) << 24 | (header[3] & 0xFF) << 16 | (header[4] & 0xFF) << 8 | (header[5] & 0xFF);
+            used = DictionaryRegistry.get(adler);
+            if (used == null) {
+                throw new ZipException("Unknown compression dictionary: " + CompressionDictionary.formatId(adler));
+            }
+        }
+
+        final Inflater inflater = used != null ? used.borrowInflater() : new Inflater();
+        inflater.setInput(header, 0, headerLength);
+        if (used != null) {
+            try {
+                inflater.inflate(new byte[1]); // Reads the header, then stops to ask for the dictionary
+            } catch (DataFormatException dfe) {
+                throw new ZipException(dfe.getMessage());
+            }
+            inflater.setDictionary(used.bytes());
+        }
+        return new DictionaryInflaterInputStream(in, inflater, used);
+    }
+
+    /** Returns its inflater to the dictionary's pool at the end of the body, or when closed */
+    private static class DictionaryInflaterInputStream extends InflaterInputStream {
+        private final CompressionDictionary dictionary;
+        private boolean released = false;
+
+        DictionaryInflaterInputStream(InputStream in, Inflater inflater, CompressionDictionary dictionary) {
+            super(in, inflater, 512);
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (released) {
+                return -1;
+            }
+            int count = super.read(b, off, len);
+            if (count < 0) {
+                release();
+            }
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return released ? 0 : super.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (dictionary != null) {
+                dictionary.release(inf);
+            } else {
+                inf.end();
+            }
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int off, int len) throws IOException {
+        while (len > 0) {
+            int count = in.read(buffer, off, len);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of zlib stream");
+            }
+            off += count;
+            len -= count;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.restcompress.provider.codec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared dictionaries known to this server or client, looked up by ID, and negotiated with the other side
+ * <p/>Clients list the dictionaries they have in the {@link #ACCEPT_DICTIONARY} request header
+ *  (ex: "Accept-Dictionary: 1f3c0a7e, 0b9d52c4").  When a response is encoded with {@link DeflateDictionaryCodec},
+ *  the server names the dictionary it used in {@link #CONTENT_DICTIONARY}.  The first dictionary registered
+ *  here that the client also has is used, so register the preferred one first.
+ * <p/>On startup, dictionaries are loaded from the comma-separated list in the restcompress.dictionary.path
+ *  system property.  Each entry is a file, a directory (every *.dict file in it, by name), or "classpath:"
+ *  and a resource name.  More can be added with {@link #register(CompressionDictionary)}, before serving requests.
+ *  The same dictionaries must be available on both sides.
+ */
+public final class DictionaryRegistry {
+
+    /** Request header listing the dictionary IDs the client has */
+    public static final String ACCEPT_DICTIONARY = "Accept-Dictionary";
+
+    /** Response header naming the dictionary a body was compressed with */
+    public static final String CONTENT_DICTIONARY = "Content-Dictionary";
+
+    private static final Logger log = Logger.getLogger(DictionaryRegistry.class.getName());
+
+    private static final List<CompressionDictionary> dictionaries = new CopyOnWriteArrayList<CompressionDictionary>();
+    private static final Map<String, CompressionDictionary> byId = new ConcurrentHashMap<String, CompressionDictionary>();
+
+    static {
+        CodecRegistry.names(); // Starts the CodecRegistry, which loads the configured dictionaries
+    }
+
+    private DictionaryRegistry() {
+    }
+
+    /** Load the dictionaries in restcompress.dictionary.path, called when the CodecRegistry starts */
+    static void loadConfigured() {
+        String path = System.getProperty("restcompress.dictionary.path");
+        if (path == null) {
+            return;
+        }
+        for (String entry : path.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            try {
+                load(entry);
+            } catch (IOException ioe) { // A missing dictionary should not stop the other codecs from working
+                log.log(Level.WARNING, "Could not load compression dictionary " + entry, ioe);
+            }
+        }
+    }
+
+    /**
+     * Load and register dictionaries
+     * @param location File, directory of *.dict files, or "classpath:" and a resource name
+     */
+    public static void load(String location) throws IOException {
+        if (location.startsWith("classpath:")) {
+            String resource = location.substring("classpath:".length());
+            InputStream in = DictionaryRegistry.class.getClassLoader().getResourceAsStream(resource);
+            if (in == null) {
+                throw new IOException("Resource not found: " + resource);
+            }
+            try {
+                register(CompressionDictionary.load(in));
+            } finally {
+                in.close();
+            }
+            return;
+        }
+        File file = new File(location);
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files == null) {
+                throw new IOException("Can't list directory: " + file);
+            }
+            List<File> sorted = new ArrayList<File>();
+            for (File child : files) {
+                if (child.isFile() && child.getName().endsWith(".dict")) {
+                    sorted.add(child);
+                }
+            }
+            Collections.sort(sorted);
+            for (File child : sorted) {
+                register(CompressionDictionary.load(child));
+            }
+        } else {
+            register(CompressionDictionary.load(file));
+        }
+    }
+
+    /**
+     * Add a dictionary, after those already registered; also registers {@link DeflateDictionaryCodec}
+     * @param dictionary Dictionary
+     */
+    public static void register(CompressionDictionary dictionary) {
+        if (byId.containsKey(dictionary.getId())) {
+            return;
+        }
+        byId.put(dictionary.getId(), dictionary);
+        dictionaries.add(dictionary);
+        if (CodecRegistry.get(DeflateDictionaryCodec.NAME) == null) {
+            CodecRegistry.register(new DeflateDictionaryCodec());
+        }
+    }
+
+    /**
+     * Get a dictionary by ID
+     * @param id ID, see {@link CompressionDictionary#getId()}
+     * @return Dictionary, or null if not registered
+     */
+    public static CompressionDictionary get(String id) {
+        if (id == null) {
+            return null;
+        }
+        String normalized = CompressionDictionary.normalizeId(id);
+        return normalized == null ? null : byId.get(normalized);
+    }
+
+    /** Dictionary with this Adler-32, as found in a zlib stream header */
+    static CompressionDictionary get(int adler) {
+        return byId.get(CompressionDictionary.formatId(adler));
+    }
+
+    /** All dictionaries, in preference order */
+    public static List<CompressionDictionary> getAll() {
+        return Collections.unmodifiableList(dictionaries);
+    }
+
+    /** Value for the {@link #ACCEPT_DICTIONARY} header, or null if there are no dictionaries */
+    public static String acceptHeader() {
+        if (dictionaries.isEmpty()) {
+            return null;
+        }
+        StringBuilder header = new StringBuilder();
+        for (CompressionDictionary dictionary : dictionaries) {
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            header.append(dictionary.getId());
+        }
+        return header.toString();
+    }
+
+    /**
+     * Pick the dictionary to use for a client: the first one registered here that the client has
+     * @param acceptDictionary {@link #ACCEPT_DICTIONARY} header values, may be null
+     * @return Dictionary, or null if there is none in common
+     */
+    public static CompressionDictionary select(List<String> acceptDictionary) {
+        if (acceptDictionary == null || acceptDictionary.isEmpty() || dictionaries.isEmpty()) {
+            return null;
+        }
+        List<String> offered = new ArrayList<String>();
+        for (String value : acceptDictionary) {
+            if (value == null) {
+                continue;
+            }
+            for (String id : value.split(",")) {
+                String normalized = CompressionDictionary.normalizeId(id);
+                if (normalized != null) {
+                    offered.add(normalized);
+                }
+            }
+        }
+        for (CompressionDictionary dictionary : dictionaries) {
+            if (offered.contains(dictionary.getId())) {
+                return dictionary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encodings usable for a response: {@link DeflateDictionaryCodec#NAME} only if there is a dictionary in common
+     * @param encodings Encodings in preference order
+     * @param selected Dictionary from {@link #select(List)}, may be null
+     * @return Same list, or a copy without the dictionary encoding
+     */
+    public static List<String> usable(List<String> encodings, CompressionDictionary selected) {
+        if (selected != null || !encodings.contains(DeflateDictionaryCodec.NAME)) {
+            return encodings;
+        }
+        List<String> usable = new ArrayList<String>(encodings);
+        usable.remove(DeflateDictionaryCodec.NAME);
+        return usable;
+    }
+}
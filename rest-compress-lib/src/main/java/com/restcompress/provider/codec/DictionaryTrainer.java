@@ -0,0 +1,194 @@
+package com.restcompress.provider.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Builds a {@link CompressionDictionary} offline, from sample bodies of the responses it will compress
+ * <p/>Picks the segments of the samples made of the byte strings found in the most samples (like zstd's COVER
+ *  trainer): keys, enum values, common prefixes.  Each pick zeroes its strings, so later picks add new ones.
+ *  Deflate can only reach back 32KB, so the best segments go last, closest to the body.
+ * <p/>Run from the command line: DictionaryTrainer output.dict maxSize samples...
+ *  where samples are files, or directories of files (ex: saved responses of the endpoints to compress).
+ */
+public final class DictionaryTrainer {
+
+    /** Length of the byte strings counted */
+    private static final int DMER = 8;
+
+    /** Length of the segments picked */
+    private static final int SEGMENT = 64;
+
+    private static final int HASH_BITS = 20;
+
+    private DictionaryTrainer() {
+    }
+
+    private static int hash(byte[] data, int pos) {
+        long value = 0;
+        for (int i = 0; i < DMER; i++) {
+            value = value << 8 | (data[pos + i] & 0xFF);
+        }
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> (64 - HASH_BITS));
+    }
+
+    private static class Segment {
+        final int start;
+        final long score;
+
+        Segment(int start, long score) {
+            this.start = start;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Train a dictionary
+     * @param samples Sample bodies, each as it would be sent uncompressed
+     * @param maxSize Dictionary size, at most {@link CompressionDictionary#MAX_SIZE}
+     * @return Dictionary contents, up to maxSize bytes; smaller if the samples are
+     */
+    public static byte[] train(List<byte[]> samples, int maxSize) {
+        maxSize = Math.min(maxSize, CompressionDictionary.MAX_SIZE);
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Dictionary size must be positive");
+        }
+
+        // Concatenate samples, and count the samples each d-mer appears in
+        ByteArrayOutputStream corpusBytes = new ByteArrayOutputStream();
+        for (byte[] sample : samples) {
+            corpusBytes.write(sample, 0, sample.length);
+        }
+        byte[] corpus = corpusBytes.toByteArray();
+        if (corpus.length <= maxSize) {
+            return corpus;
+        }
+        int[] frequency = new int[1 << HASH_BITS];
+        int[] lastSample = new int[1 << HASH_BITS];
+        Arrays.fill(lastSample, -1);
+        int[] hashes = new int[corpus.length];
+        boolean[] valid = new boolean[corpus.length]; // D-mers crossing from one sample into the next don't count
+        int offset = 0;
+        for (int s = 0; s < samples.size(); s++) {
+            int length = samples.get(s).length;
+            for (int i = offset; i + DMER <= offset + length; i++) {
+                int h = hash(corpus, i);
+                hashes[i] = h;
+                valid[i] = true;
+                if (lastSample[h] != s) {
+                    lastSample[h] = s;
+                    frequency[h]++;
+                }
+            }
+            offset += length;
+        }
+
+        // Pick the best segment from each epoch of the corpus
+        int segmentCount = Math.max(1, maxSize / SEGMENT);
+        int epoch = Math.max(SEGMENT, corpus.length / segmentCount);
+        List<Segment> picked = new ArrayList<Segment>();
+        for (int epochStart = 0; epochStart + SEGMENT <= corpus.length && picked.size() < segmentCount; epochStart += epoch) {
+            int epochEnd = Math.min(corpus.length, epochStart + epoch);
+            int last = epochEnd - SEGMENT; // Last segment start in this epoch
+            long score = 0;
+            for (int i = epochStart; i + DMER <= epochStart + SEGMENT; i++) {
+                score += valid[i] ? frequency[hashes[i]] : 0;
+            }
+            long bestScore = score;
+            int best = epochStart;
+            for (int start = epochStart + 1; start <= last; start++) {
+                int out = start - 1;
+                int in = start + SEGMENT - DMER;
+                score -= valid[out] ? frequency[hashes[out]] : 0;
+                score += valid[in] ? frequency[hashes[in]] : 0;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = start;
+                }
+            }
+            if (bestScore <= 0) { // Nothing left in common with other samples
+                continue;
+            }
+            picked.add(new Segment(best, bestScore));
+            for (int i = best; i + DMER <= best + SEGMENT; i++) {
+                if (valid[i]) {
+                    frequency[hashes[i]] = 0;
+                }
+            }
+        }
+
+        Collections.sort(picked, new Comparator<Segment>() {
+            public int compare(Segment a, Segment b) {
+                return a.score < b.score ? -1 : (a.score == b.score ? 0 : 1);
+            }
+        });
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(maxSize);
+        for (Segment segment : picked) {
+            int length = Math.min(SEGMENT, maxSize - dictionary.size());
+            if (length <= 0) {
+                break;
+            }
+            dictionary.write(corpus, segment.start, length);
+        }
+        return dictionary.toByteArray();
+    }
+
+    private static void addSamples(File file, List<byte[]> samples) throws IOException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    addSamples(child, samples);
+                }
+            }
+            return;
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, count);
+            }
+            samples.add(bytes.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Train a dictionary from sample files, write it out, and print its ID
+     * @param args Output file, dictionary size, then sample files or directories
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: DictionaryTrainer <output.dict> <maxSize> <samples...>");
+            System.exit(1);
+        }
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for (int i = 2; i < args.length; i++) {
+            addSamples(new File(args[i]), samples);
+        }
+        byte[] dictionary = train(samples, Integer.parseInt(args[1]));
+        OutputStream out = new FileOutputStream(args[0]);
+        try {
+            out.write(dictionary);
+        } finally {
+            out.close();
+        }
+        System.out.println("Trained " + dictionary.length + " byte dictionary from " + samples.size()
+                + " samples, ID: " + CompressionDictionary.load(new File(args[0])).getId());
+    }
+}
@@ -0,0 +1,28 @@
+package com.restcompress.provider.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GZIP codec, using the JDK implementation
+ * <p/>Over HTTP, this is handled by the RESTEasy GZIP interceptors, which are registered by default.
+ *  It is included so GZIP can take part in Accept-Encoding negotiation.
+ */
+public class GZIPCodec implements CompressionCodec {
+    public static final String NAME = "gzip";
+
+    public String getName() {
+        return NAME;
+    }
+
+    public OutputStream compress(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out);
+    }
+
+    public InputStream decompress(InputStream in) throws IOException {
+        return new GZIPInputStream(in);
+    }
+}
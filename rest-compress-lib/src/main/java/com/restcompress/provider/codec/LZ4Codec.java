@@ -0,0 +1,29 @@
+package com.restcompress.provider.codec;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * LZ4 codec, generating the standard LZ4 frame format (readable by the lz4 command line tool and other languages)
+ * <p/>Requires the optional org.lz4:lz4-java dependency; only registered when that is on the classpath.
+ * Uses the fastest implementation available (JNI, Unsafe, or pure Java).
+ */
+public class LZ4Codec implements CompressionCodec {
+    public static final String NAME = "lz4";
+
+    public String getName() {
+        return NAME;
+    }
+
+    public OutputStream compress(OutputStream out) throws IOException {
+        return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+    }
+
+    public InputStream decompress(InputStream in) throws IOException {
+        return new LZ4FrameInputStream(in);
+    }
+}
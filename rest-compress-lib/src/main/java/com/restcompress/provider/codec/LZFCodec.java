@@ -0,0 +1,28 @@
+package com.restcompress.provider.codec;
+
+import com.ning.compress.lzf.LZFInputStream;
+import com.ning.compress.lzf.LZFOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * LZF codec, using the Compress-LZF library
+ * <p/>Over HTTP, this is handled by the LZFEncodingInterceptor & LZFDecodingInterceptor
+ */
+public class LZFCodec implements CompressionCodec {
+    public static final String NAME = "lzf";
+
+    public String getName() {
+        return NAME;
+    }
+
+    public OutputStream compress(OutputStream out) throws IOException {
+        return new LZFOutputStream(out);
+    }
+
+    public InputStream decompress(InputStream in) throws IOException {
+        return new LZFInputStream(in);
+    }
+}
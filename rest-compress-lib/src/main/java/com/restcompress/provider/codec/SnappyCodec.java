@@ -0,0 +1,28 @@
+package com.restcompress.provider.codec;
+
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Snappy codec, generating the standard Snappy framing format
+ * <p/>Requires the optional org.xerial.snappy:snappy-java dependency; only registered when that is on the classpath.
+ */
+public class SnappyCodec implements CompressionCodec {
+    public static final String NAME = "snappy";
+
+    public String getName() {
+        return NAME;
+    }
+
+    public OutputStream compress(OutputStream out) throws IOException {
+        return new SnappyFramedOutputStream(out);
+    }
+
+    public InputStream decompress(InputStream in) throws IOException {
+        return new SnappyFramedInputStream(in);
+    }
+}
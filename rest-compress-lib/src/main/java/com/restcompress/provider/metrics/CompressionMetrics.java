@@ -0,0 +1,120 @@
+package com.restcompress.provider.metrics;
+
+import com.restcompress.provider.CompressionConfig;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of per-endpoint, per-codec compression metrics, filled in by the encoding and decoding interceptors
+ * <p/>Each {@link EndpointMetrics} is registered with the platform MBean server when created (unless
+ *  {@link CompressionConfig#isMetricsJmx()} is off), and announced to listeners, such as a Micrometer binder.
+ * <p/>Bodies with no resource method (client side) are recorded under {@link #NO_ENDPOINT}.
+ */
+public final class CompressionMetrics {
+
+    /** Endpoint name used when there is no resource method */
+    public static final String NO_ENDPOINT = "(none)";
+
+    /** JMX domain for the metrics MBeans */
+    public static final String JMX_DOMAIN = "com.restcompress";
+
+    private static final Logger log = Logger.getLogger(CompressionMetrics.class.getName());
+
+    /** Notified when metrics for a new endpoint and codec are created */
+    public interface Listener {
+        void added(EndpointMetrics metrics);
+    }
+
+    private static final ConcurrentMap<String, EndpointMetrics> metrics = new ConcurrentHashMap<String, EndpointMetrics>();
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private CompressionMetrics() {
+    }
+
+    /**
+     * Get metrics for an endpoint and codec, creating them on first use
+     * @param endpoint Endpoint name (see EndpointInterceptor), or null for {@link #NO_ENDPOINT}
+     * @param codec Encoding name
+     * @return Metrics, or null if metrics are disabled
+     */
+    public static EndpointMetrics forEndpoint(String endpoint, String codec) {
+        if (!CompressionConfig.isMetricsEnabled() || codec == null) {
+            return null;
+        }
+        if (endpoint == null) {
+            endpoint = NO_ENDPOINT;
+        }
+        String key = endpoint + ' ' + codec;
+        EndpointMetrics endpointMetrics = metrics.get(key);
+        if (endpointMetrics == null) {
+            EndpointMetrics created = new EndpointMetrics(endpoint, codec);
+            endpointMetrics = metrics.putIfAbsent(key, created);
+            if (endpointMetrics == null) {
+                endpointMetrics = created;
+                if (CompressionConfig.isMetricsJmx()) {
+                    register(created);
+                }
+                for (Listener listener : listeners) {
+                    listener.added(created);
+                }
+            }
+        }
+        return endpointMetrics;
+    }
+
+    /** All metrics created so far */
+    public static Collection<EndpointMetrics> getAll() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    static ObjectName objectName(EndpointMetrics endpointMetrics) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=CompressionMetrics,endpoint=" + ObjectName.quote(endpointMetrics.getEndpoint())
+                + ",codec=" + ObjectName.quote(endpointMetrics.getCodec()));
+    }
+
+    private static void register(EndpointMetrics endpointMetrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = objectName(endpointMetrics);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(endpointMetrics, name);
+            }
+        } catch (JMException jme) { // Another deployment with its own copy of the library may have the name
+            log.log(Level.FINE, "Could not register compression metrics MBean", jme);
+        }
+    }
+
+    /** Remove the MBeans, for applications that are undeployed while the JVM keeps running */
+    public static void unregisterJmx() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (EndpointMetrics endpointMetrics : metrics.values()) {
+            try {
+                ObjectName name = objectName(endpointMetrics);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException jme) {
+                log.log(Level.FINE, "Could not unregister compression metrics MBean", jme);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.restcompress.provider.metrics;
+
+/**
+ * Compression metrics for one endpoint (resource method) and codec
+ * <p/>Bytes are counted per body, and times cover the compressing or decompressing stream itself,
+ *  not the network reads and writes underneath it nor serialization above it.
+ */
+public final class EndpointMetrics implements EndpointMetricsMXBean {
+
+    private final String endpoint;
+    private final String codec;
+
+    private final StripedCounter encodeUncompressed = new StripedCounter();
+    private final StripedCounter encodeCompressed = new StripedCounter();
+    private final LatencyHistogram encodeTime = new LatencyHistogram();
+
+    private final StripedCounter decodeCompressed = new StripedCounter();
+    private final StripedCounter decodeUncompressed = new StripedCounter();
+    private final LatencyHistogram decodeTime = new LatencyHistogram();
+
+    private final StripedCounter skippedMediaType = new StripedCounter();
+    private final StripedCounter skippedMinSize = new StripedCounter();
+    private final StripedCounter skippedRatio = new StripedCounter();
+    private final StripedCounter skippedLoad = new StripedCounter();
+
+    EndpointMetrics(String endpoint, String codec) {
+        this.endpoint = endpoint;
+        this.codec = codec;
+    }
+
+    /**
+     * Record a compressed body
+     * @param uncompressed Bytes before compression
+     * @param compressed Bytes after compression
+     * @param nanos Time spent compressing
+     */
+    public void recordEncode(long uncompressed, long compressed, long nanos) {
+        encodeUncompressed.add(uncompressed);
+        encodeCompressed.add(compressed);
+        encodeTime.record(nanos);
+    }
+
+    /**
+     * Record a decompressed body
+     * @param compressed Bytes received
+     * @param uncompressed Bytes after decompression
+     * @param nanos Time spent decompressing
+     */
+    public void recordDecode(long compressed, long uncompressed, long nanos) {
+        decodeCompressed.add(compressed);
+        decodeUncompressed.add(uncompressed);
+        decodeTime.record(nanos);
+    }
+
+    /** Record a response sent uncompressed */
+    public void recordSkip(SkipReason reason) {
+        switch (reason) {
+            case MEDIA_TYPE:
+                skippedMediaType.increment();
+                break;
+            case MIN_SIZE:
+                skippedMinSize.increment();
+                break;
+            case RATIO:
+                skippedRatio.increment();
+                break;
+            default:
+                skippedLoad.increment();
+        }
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public LatencyHistogram getEncodeTime() {
+        return encodeTime;
+    }
+
+    public LatencyHistogram getDecodeTime() {
+        return decodeTime;
+    }
+
+    public long getEncodeCount() {
+        return encodeTime.getCount();
+    }
+
+    public long getEncodeUncompressedBytes() {
+        return encodeUncompressed.sum();
+    }
+
+    public long getEncodeCompressedBytes() {
+        return encodeCompressed.sum();
+    }
+
+    public long getEncodeBytesSaved() {
+        return getEncodeUncompressedBytes() - getEncodeCompressedBytes();
+    }
+
+    public double getEncodeRatio() {
+        long uncompressed = getEncodeUncompressedBytes();
+        return uncompressed == 0 ? 0.0 : (double) getEncodeCompressedBytes() / uncompressed;
+    }
+
+    public long getEncodeNanosTotal() {
+        return encodeTime.getTotal();
+    }
+
+    public long getEncodeNanosP50() {
+        return encodeTime.getPercentile(0.5);
+    }
+
+    public long getEncodeNanosP99() {
+        return encodeTime.getPercentile(0.99);
+    }
+
+    public long getEncodeNanosMax() {
+        return encodeTime.getMax();
+    }
+
+    public long getDecodeCount() {
+        return decodeTime.getCount();
+    }
+
+    public long getDecodeCompressedBytes() {
+        return decodeCompressed.sum();
+    }
+
+    public long getDecodeUncompressedBytes() {
+        return decodeUncompressed.sum();
+    }
+
+    public long getDecodeNanosTotal() {
+        return decodeTime.getTotal();
+    }
+
+    public long getDecodeNanosP50() {
+        return decodeTime.getPercentile(0.5);
+    }
+
+    public long getDecodeNanosP99() {
+        return decodeTime.getPercentile(0.99);
+    }
+
+    public long getDecodeNanosMax() {
+        return decodeTime.getMax();
+    }
+
+    public long getSkippedMediaType() {
+        return skippedMediaType.sum();
+    }
+
+    public long getSkippedMinSize() {
+        return skippedMinSize.sum();
+    }
+
+    public long getSkippedRatio() {
+        return skippedRatio.sum();
+    }
+
+    public long getSkippedLoad() {
+        return skippedLoad.sum();
+    }
+
+    /** Bodies sent uncompressed for one reason */
+    public long getSkipped(SkipReason reason) {
+        switch (reason) {
+            case MEDIA_TYPE:
+                return getSkippedMediaType();
+            case MIN_SIZE:
+                return getSkippedMinSize();
+            case RATIO:
+                return getSkippedRatio();
+            default:
+                return getSkippedLoad();
+        }
+    }
+}
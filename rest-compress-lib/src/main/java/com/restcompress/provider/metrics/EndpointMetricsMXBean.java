@@ -0,0 +1,61 @@
+package com.restcompress.provider.metrics;
+
+/**
+ * JMX view of compression metrics for one endpoint and codec
+ * <p/>Registered as com.restcompress:type=CompressionMetrics,endpoint=...,codec=...
+ *  Times are in nanoseconds; percentiles are accurate to within a factor of 2.
+ */
+public interface EndpointMetricsMXBean {
+
+    String getEndpoint();
+
+    String getCodec();
+
+    /** Bodies compressed */
+    long getEncodeCount();
+
+    long getEncodeUncompressedBytes();
+
+    long getEncodeCompressedBytes();
+
+    /** Bytes not sent thanks to compression */
+    long getEncodeBytesSaved();
+
+    /** Compressed/uncompressed bytes over all compressed bodies, 0 if none */
+    double getEncodeRatio();
+
+    long getEncodeNanosTotal();
+
+    long getEncodeNanosP50();
+
+    long getEncodeNanosP99();
+
+    long getEncodeNanosMax();
+
+    /** Bodies decompressed */
+    long getDecodeCount();
+
+    long getDecodeCompressedBytes();
+
+    long getDecodeUncompressedBytes();
+
+    long getDecodeNanosTotal();
+
+    long getDecodeNanosP50();
+
+    long getDecodeNanosP99();
+
+    long getDecodeNanosMax();
+
+    /** Responses sent uncompressed because of their media type */
+    long getSkippedMediaType();
+
+    /** Responses sent uncompressed because they were below the minimum size */
+    long getSkippedMinSize();
+
+    /** Responses sent uncompressed because the endpoint doesn't compress well */
+    long getSkippedRatio();
+
+    /** Responses sent uncompressed because the server was too busy */
+    long getSkippedLoad();
+}
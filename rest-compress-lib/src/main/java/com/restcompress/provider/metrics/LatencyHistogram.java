@@ -0,0 +1,86 @@
+package com.restcompress.provider.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in nanoseconds, with power-of-2 buckets
+ * <p/>Buckets and the maximum are striped like {@link StripedCounter}: each thread records into its own stripe, so
+ *  recording is a few uncontended atomic updates and never allocates, and reads sum the stripes.  Percentiles are
+ *  the upper bound of their bucket, so they are accurate to within a factor of 2, which is plenty to compare codecs
+ *  and endpoints.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    /** Slot of the maximum in a stripe, after the buckets */
+    private static final int MAX = BUCKETS;
+
+    /** Longs per stripe: the buckets and the maximum, rounded up to whole 64 byte cache lines */
+    private static final int STRIDE = (BUCKETS + 1 + 7) & ~7;
+
+    private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+    private final StripedCounter count = new StripedCounter();
+    private final StripedCounter total = new StripedCounter();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int base = StripedCounter.stripe() * STRIDE;
+        cells.getAndIncrement(base + Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos)));
+        count.increment();
+        total.add(nanos);
+        long current = cells.get(base + MAX);
+        while (nanos > current && !cells.compareAndSet(base + MAX, current, nanos)) {
+            current = cells.get(base + MAX);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** Sum of all recorded durations */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public long getMax() {
+        long max = 0;
+        for (int base = 0; base < cells.length(); base += STRIDE) {
+            max = Math.max(max, cells.get(base + MAX));
+        }
+        return max;
+    }
+
+    /**
+     * Estimate a percentile
+     * @param quantile From 0 to 1 (ex: 0.99)
+     * @return Upper bound of the bucket holding that percentile, 0 if nothing recorded
+     */
+    public long getPercentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long recorded = 0;
+        for (int base = 0; base < cells.length(); base += STRIDE) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = cells.get(base + i);
+                counts[i] += c;
+                recorded += c;
+            }
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(quantile * recorded);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target && counts[i] > 0) {
+                long upper = i == 0 ? 0 : (i >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upper, getMax());
+            }
+        }
+        return getMax();
+    }
+}
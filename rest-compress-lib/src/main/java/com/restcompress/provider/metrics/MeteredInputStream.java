@@ -0,0 +1,127 @@
+package com.restcompress.provider.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Measures a decompressing stream: bytes in and out, and time spent decompressing
+ * <p/>Wrap the raw body with {@link #raw(InputStream)}, decompress that, then wrap the decompressing stream.
+ *  Time spent reading the raw body (network) is subtracted, so only decompression is counted.
+ *  Metrics are recorded once, at end of stream, close, or {@link #finish()}.
+ */
+public class MeteredInputStream extends FilterInputStream {
+
+    /** Counts bytes and read time of the compressed body */
+    public static class Raw extends FilterInputStream {
+        private long count = 0;
+        private long nanos = 0;
+
+        Raw(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int read = in.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private final Raw raw;
+    private final EndpointMetrics metrics;
+    private long count = 0;
+    private long nanos = 0;
+    private boolean recorded = false;
+
+    /**
+     * @param decompressed Decompressing stream, reading from raw
+     * @param raw Raw body, from {@link #raw(InputStream)}
+     * @param metrics Where to record
+     */
+    public MeteredInputStream(InputStream decompressed, Raw raw, EndpointMetrics metrics) {
+        super(decompressed);
+        this.raw = raw;
+        this.metrics = metrics;
+    }
+
+    /** Wrap the compressed body, before decompressing it */
+    public static Raw raw(InputStream in) {
+        return new Raw(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = in.read();
+        nanos += System.nanoTime() - start;
+        if (b >= 0) {
+            count++;
+        } else {
+            finish();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int read = in.read(b, off, len);
+        nanos += System.nanoTime() - start;
+        if (read > 0) {
+            count += read;
+        } else if (read < 0) {
+            finish();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long start = System.nanoTime();
+        long skipped = in.skip(n);
+        nanos += System.nanoTime() - start;
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            finish();
+        }
+    }
+
+    /** Record metrics now, if not already recorded (ex: the deserializer stopped before end of stream) */
+    public void finish() {
+        if (!recorded) {
+            recorded = true;
+            metrics.recordDecode(raw.count, count, Math.max(0, nanos - raw.nanos));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.restcompress.provider.metrics;
+
+/**
+ * Why a response negotiated for compression was sent uncompressed, see {@link com.restcompress.provider.CompressionPolicy}
+ */
+public enum SkipReason {
+    /** Media type is already compressed */
+    MEDIA_TYPE,
+    /** Body smaller than the minimum size */
+    MIN_SIZE,
+    /** Endpoint doesn't compress well enough */
+    RATIO,
+    /** Server too busy, see {@link com.restcompress.provider.CompressionGovernor} */
+    LOAD
+}
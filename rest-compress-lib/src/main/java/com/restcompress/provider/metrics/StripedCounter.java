@@ -0,0 +1,54 @@
+package com.restcompress.provider.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over several cache lines, so request threads updating the same endpoint don't contend
+ * <p/>Each thread adds to the stripe picked by its thread id; reads sum all stripes.  Same idea as Java 8's LongAdder,
+ *  which this library cannot use while it supports Java 7.
+ */
+public final class StripedCounter {
+
+    /** Longs per stripe: one 64 byte cache line, so stripes don't share a line */
+    private static final int PAD = 8;
+
+    /** Stripes per counter, also used by {@link LatencyHistogram} */
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors() * 2);
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+
+    /** Power of 2 at least the given count, capped at 64 */
+    private static int stripes(int wanted) {
+        int stripes = 1;
+        while (stripes < wanted && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    /** Stripe of the current thread, from 0 to STRIPES - 1 */
+    static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+
+    private static int index() {
+        return stripe() * PAD;
+    }
+
+    public void add(long value) {
+        cells.getAndAdd(index(), value);
+    }
+
+    public void increment() {
+        cells.getAndIncrement(index());
+    }
+
+    /** Current total; not an atomic snapshot while other threads are adding */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PAD) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,92 @@
+package com.restcompress.provider;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class BatchFormatTest {
+
+    private static BatchFormat.Part read(String batch) throws IOException {
+        return BatchFormat.read(new ByteArrayInputStream(batch.getBytes(BatchFormat.ASCII)));
+    }
+
+    private static void assertMalformed(String batch) {
+        try {
+            read(batch);
+            fail("Malformed batch was read");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        MultivaluedMap<String, Object> headers = new MultivaluedMapImpl<String, Object>();
+        headers.add("Accept", "application/json");
+        headers.add("X-Multi", "a");
+        headers.add("X-Multi", "b");
+        headers.add("Content-Length", "999"); // Ignored, written from the body
+        byte[] body = new byte[300];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i; // Any bytes, including CR and LF
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BatchFormat.write(out, "POST /object HTTP/1.1", headers, body);
+        BatchFormat.write(out, "GET /object/1 HTTP/1.1", null, null);
+        BatchFormat.write(out, "HTTP/1.1 200 OK", headers, new byte[0]);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        BatchFormat.Part part = BatchFormat.read(in);
+        assertEquals("POST /object HTTP/1.1", part.startLine);
+        assertEquals(3, part.headers.size());
+        assertArrayEquals(new String[]{"X-Multi", "b"}, part.headers.get(2));
+        assertArrayEquals(body, part.body);
+
+        part = BatchFormat.read(in);
+        assertEquals("GET /object/1 HTTP/1.1", part.startLine);
+        assertEquals(0, part.headers.size());
+        assertEquals(0, part.body.length);
+
+        part = BatchFormat.read(in);
+        assertEquals("HTTP/1.1 200 OK", part.startLine);
+        assertEquals(0, part.body.length);
+        assertNull(BatchFormat.read(in));
+    }
+
+    @Test
+    public void testLenient() throws IOException {
+        BatchFormat.Part part = read("\r\n\nGET /a HTTP/1.1\nContent-Length:  2 \n\nok");
+        assertEquals("GET /a HTTP/1.1", part.startLine);
+        assertArrayEquals("ok".getBytes(), part.body);
+        assertNull(read(""));
+    }
+
+    @Test
+    public void testMalformed() {
+        assertMalformed("GET /a HTTP/1.1\r\nNo colon\r\n\r\n");
+        assertMalformed("GET /a HTTP/1.1\r\nContent-Length: x\r\n\r\n");
+        assertMalformed("GET /a HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+        assertMalformed("GET /a HTTP/1.1\r\nContent-Length: 99999999999\r\n\r\n");
+        assertMalformed("GET /a HTTP/1.1\r\nContent-Length: 10\r\n\r\nshort");
+        assertMalformed("GET /a HTTP/1.1\r\nAccept: */*\r\n");
+    }
+
+    @Test
+    public void testLengthOverDecodeLimit() {
+        long limit = CompressionConfig.getDecodeMaxBytes();
+        CompressionConfig.setDecodeMaxBytes(100);
+        try {
+            assertMalformed("GET /a HTTP/1.1\r\nContent-Length: 101\r\n\r\n");
+        } finally {
+            CompressionConfig.setDecodeMaxBytes(limit);
+        }
+    }
+}
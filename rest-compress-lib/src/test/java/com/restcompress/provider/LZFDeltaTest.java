@@ -0,0 +1,111 @@
+package com.restcompress.provider;
+
+import com.ning.compress.lzf.LZFEncoder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LZFDeltaTest {
+
+    private static byte[] text(int lines, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append("{\"id\":").append(i).append(",\"value\":").append(random.nextInt(1000)).append("}\n");
+        }
+        return text.toString().getBytes();
+    }
+
+    private static void assertRoundTrip(byte[] base, byte[] target) throws IOException {
+        assertArrayEquals(target, LZFDelta.decode(base, LZFDelta.encode(base, target)));
+    }
+
+    /** Delta ops, uncompressed, from varints (a COPY or INSERT tag is just a small varint) */
+    private static byte[] ops(long... values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+        return LZFEncoder.encode(out.toByteArray());
+    }
+
+    private static void assertCorrupt(byte[] base, byte[] delta) {
+        try {
+            LZFDelta.decode(base, delta);
+            fail("Corrupt delta was decoded");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testSmallChange() throws IOException {
+        byte[] base = text(10000, 1);
+        byte[] target = base.clone();
+        target[100] = 'x';
+        target[target.length / 2] = 'y';
+        byte[] delta = LZFDelta.encode(base, target);
+        assertTrue("Delta of " + delta.length + " bytes", delta.length < 200);
+        assertArrayEquals(target, LZFDelta.decode(base, delta));
+    }
+
+    @Test
+    public void testMovedAndInserted() throws IOException {
+        byte[] base = text(2000, 1);
+        int half = base.length / 2;
+        byte[] inserted = "inserted text, not in the base".getBytes();
+        byte[] target = new byte[base.length + inserted.length];
+        System.arraycopy(base, half, target, 0, base.length - half); // Second half first
+        System.arraycopy(inserted, 0, target, base.length - half, inserted.length);
+        System.arraycopy(base, 0, target, base.length - half + inserted.length, half);
+        assertRoundTrip(base, target);
+    }
+
+    @Test
+    public void testEdges() throws IOException {
+        byte[] text = text(100, 1);
+        assertRoundTrip(new byte[0], text);
+        assertRoundTrip(text, new byte[0]);
+        assertRoundTrip(new byte[0], new byte[0]);
+        assertRoundTrip(text, text);
+        assertRoundTrip(text, text(100, 2));
+        assertRoundTrip(Arrays.copyOf(text, 10), Arrays.copyOf(text, 15)); // Shorter than a block
+    }
+
+    @Test
+    public void testCorrupt() throws IOException {
+        byte[] base = new byte[100];
+        assertCorrupt(base, new byte[]{1, 2, 3});
+        assertCorrupt(base, ops(10, 0, 50, 60)); // Copy past the end of the base
+        assertCorrupt(base, ops(10, 0, Long.MAX_VALUE, 10)); // Offset + count overflows
+        assertCorrupt(base, ops(10, 0, 0, 20)); // Copy past the declared length
+        assertCorrupt(base, ops(10, 1, 20, 1, 2)); // Insert past the end of the ops
+        assertCorrupt(base, ops(10, 7)); // Unknown operation
+        assertCorrupt(base, ops(10, 0, 0, 5)); // Builds less than declared
+        assertCorrupt(base, ops(-1L)); // Negative length
+        assertCorrupt(base, ops(Integer.MAX_VALUE, 0, 0, 10)); // Length nothing was allocated for
+        assertArrayEquals(new byte[10], LZFDelta.decode(base, ops(10, 0, 0, 10)));
+    }
+
+    @Test
+    public void testMaxLength() throws IOException {
+        byte[] base = text(100, 1);
+        byte[] delta = LZFDelta.encode(base, base);
+        assertArrayEquals(base, LZFDelta.decode(base, delta, base.length));
+        try {
+            LZFDelta.decode(base, delta, base.length - 1);
+            fail("Delta over the maximum length was decoded");
+        } catch (IOException expected) {
+        }
+    }
+}
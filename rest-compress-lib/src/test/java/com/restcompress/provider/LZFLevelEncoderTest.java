@@ -0,0 +1,116 @@
+package com.restcompress.provider;
+
+import com.ning.compress.lzf.LZFInputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Every level must write standard LZF: output is read back with the Compress-LZF decoder
+ */
+public class LZFLevelEncoderTest {
+
+    private static byte[] json(int entries) {
+        StringBuilder json = new StringBuilder("[");
+        Random random = new Random(42);
+        for (int i = 0; i < entries; i++) {
+            json.append(i > 0 ? "," : "").append("{\"id\":").append(random.nextInt(100000))
+                    .append(",\"login\":\"user").append(random.nextInt(500)).append("\",\"active\":")
+                    .append(random.nextBoolean()).append('}');
+        }
+        return json.append(']').toString().getBytes();
+    }
+
+    private static byte[] random(int length) {
+        byte[] bytes = new byte[length];
+        new Random(7).nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Compressible text, then random bytes, then text again: FAST scans the middle, and must switch back */
+    private static byte[] mixed() {
+        byte[] text = json(2000);
+        byte[] noise = random(200 * 1024);
+        byte[] mixed = Arrays.copyOf(text, text.length * 2 + noise.length);
+        System.arraycopy(noise, 0, mixed, text.length, noise.length);
+        System.arraycopy(text, 0, mixed, text.length + noise.length, text.length);
+        return mixed;
+    }
+
+    private static byte[] compress(LZF.Level level, byte[] data, int writeSize) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        OutputStream out = LZFStreamPool.getOutputStream(compressed, level);
+        for (int off = 0; off < data.length; off += writeSize) {
+            out.write(data, off, Math.min(writeSize, data.length - off));
+        }
+        out.close();
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        InputStream in = new LZFInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static void assertRoundTrip(byte[] data) throws IOException {
+        for (LZF.Level level : LZF.Level.values()) {
+            for (int writeSize : new int[]{100, 64 * 1024, data.length + 1}) {
+                assertArrayEquals(level + ", writes of " + writeSize, data, decompress(compress(level, data, writeSize)));
+            }
+        }
+    }
+
+    @Test
+    public void testJson() throws IOException {
+        assertRoundTrip(json(5000));
+    }
+
+    @Test
+    public void testRandom() throws IOException {
+        assertRoundTrip(random(300 * 1024));
+    }
+
+    @Test
+    public void testMixed() throws IOException {
+        assertRoundTrip(mixed());
+    }
+
+    @Test
+    public void testRunsAndEdges() throws IOException {
+        assertRoundTrip(new byte[0]);
+        assertRoundTrip(new byte[]{1});
+        assertRoundTrip(new byte[]{1, 2, 3});
+        assertRoundTrip(new byte[200 * 1024]); // Matches of the longest length, back to back
+        byte[] pattern = new byte[100 * 1024];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) (i % 251);
+        }
+        assertRoundTrip(pattern);
+    }
+
+    @Test
+    public void testHighCompressesBetter() throws IOException {
+        byte[] data = json(5000);
+        int fast = compress(LZF.Level.FAST, data, data.length).length;
+        int normal = compress(LZF.Level.DEFAULT, data, data.length).length;
+        int high = compress(LZF.Level.HIGH, data, data.length).length;
+        assertTrue("HIGH " + high + " vs DEFAULT " + normal, high <= normal);
+        assertTrue("FAST " + fast + " vs DEFAULT " + normal, fast <= normal * 11 / 10);
+    }
+}
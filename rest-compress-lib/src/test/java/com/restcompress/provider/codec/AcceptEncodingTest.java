@@ -0,0 +1,69 @@
+package com.restcompress.provider.codec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AcceptEncodingTest {
+
+    private static final List<String> SERVER = Arrays.asList("lzf", "gzip", "deflate");
+
+    @Test
+    public void testQualities() {
+        AcceptEncoding accept = AcceptEncoding.parse("gzip;q=0.5, LZF ; Q=0.8,deflate;q=0, identity");
+        assertEquals(0.5f, accept.getQuality("gzip"), 0f);
+        assertEquals(0.8f, accept.getQuality("lzf"), 0f);
+        assertEquals(0.8f, accept.getQuality("Lzf"), 0f);
+        assertEquals(1f, accept.getQuality("identity"), 0f);
+        assertTrue(accept.isListed("deflate"));
+        assertFalse(accept.accepts("deflate"));
+        assertFalse(accept.isListed("br"));
+        assertEquals(0f, accept.getQuality("br"), 0f);
+        assertEquals("lzf", accept.negotiate(SERVER));
+    }
+
+    @Test
+    public void testMalformedQualities() {
+        AcceptEncoding accept = AcceptEncoding.parse("lzf;q=abc, gzip;q=1.5, deflate;q=-1, br;q=NaN, zstd;q=");
+        for (String encoding : new String[]{"lzf", "gzip", "deflate", "br", "zstd"}) {
+            assertTrue(encoding, accept.isListed(encoding));
+            assertFalse(encoding, accept.accepts(encoding));
+        }
+        assertNull(accept.negotiate(SERVER));
+    }
+
+    @Test
+    public void testWildcard() {
+        AcceptEncoding accept = AcceptEncoding.parse("*;q=0.3, gzip;q=0.2, deflate;q=0");
+        assertEquals(0.3f, accept.getQuality("lzf"), 0f);
+        assertEquals(0.2f, accept.getQuality("gzip"), 0f);
+        assertFalse(accept.accepts("deflate"));
+        assertFalse(accept.isListed("lzf"));
+        assertEquals("lzf", accept.negotiate(SERVER));
+        assertNull(AcceptEncoding.parse("*;q=0").negotiate(SERVER));
+    }
+
+    @Test
+    public void testTiesGoToServerOrder() {
+        assertEquals("gzip", AcceptEncoding.parse("deflate, gzip").negotiate(SERVER));
+        assertEquals("lzf", AcceptEncoding.parse("*").negotiate(SERVER));
+    }
+
+    @Test
+    public void testEmptyAndMultipleValues() {
+        assertTrue(AcceptEncoding.parse((String) null).isEmpty());
+        assertTrue(AcceptEncoding.parse(" , ,").isEmpty());
+        assertTrue(AcceptEncoding.parse((List<String>) null).isEmpty());
+        assertNull(AcceptEncoding.parse("").negotiate(SERVER));
+
+        AcceptEncoding accept = AcceptEncoding.parse(Arrays.asList("gzip;q=0.4", null, "deflate;q=0.6"));
+        assertEquals(0.4f, accept.getQuality("gzip"), 0f);
+        assertEquals("deflate", accept.negotiate(SERVER));
+    }
+}
@@ -0,0 +1,115 @@
+package com.restcompress.provider.codec;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeflateDictionaryCodecTest {
+
+    private static final byte[] BODY = ("{\"id\":12,\"login\":\"user12\",\"email\":\"user12@example.com\",\"active\":true,"
+            + "\"roles\":[\"reader\",\"writer\"],\"created\":\"2014-03-01T12:00:00Z\"}").getBytes();
+
+    private static CompressionDictionary dictionary(String prefix) {
+        return new CompressionDictionary((prefix + "{\"id\":,\"login\":\"user\",\"email\":\"@example.com\",\"active\":true,"
+                + "\"roles\":[\"reader\",\"writer\"],\"created\":\"T12:00:00Z\"}").getBytes());
+    }
+
+    private static byte[] compress(CompressionCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        OutputStream out = codec.compress(compressed);
+        out.write(data);
+        out.close();
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        InputStream in = new DeflateDictionaryCodec().decompress(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static void assertRejected(byte[] compressed, String message) {
+        try {
+            decompress(compressed);
+            fail("Stream was decompressed");
+        } catch (ZipException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith(message));
+        } catch (IOException e) {
+            fail("Expected a ZipException, got " + e);
+        }
+    }
+
+    @Test
+    public void testHeader() throws IOException {
+        CompressionDictionary dictionary = dictionary("header ");
+        byte[] compressed = compress(new DeflateDictionaryCodec(dictionary), BODY);
+        assertEquals(0, ((compressed[0] & 0xFF) << 8 | (compressed[1] & 0xFF)) % 31); // FCHECK
+        assertEquals(Deflater.DEFLATED, compressed[0] & 0x0F);
+        assertTrue("FDICT set", (compressed[1] & 0x20) != 0);
+        int dictId = (compressed[2] & 0xFF) << 24 | (compressed[3] & 0xFF) << 16
+                | (compressed[4] & 0xFF) << 8 | (compressed[5] & 0xFF);
+        assertEquals(dictionary.getAdler(), dictId);
+        assertEquals(CompressionDictionary.formatId(dictId), dictionary.getId());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        CompressionDictionary dictionary = dictionary("round trip ");
+        DictionaryRegistry.register(dictionary);
+        assertEquals(dictionary, DictionaryRegistry.get(dictionary.getId()));
+        byte[] compressed = compress(new DeflateDictionaryCodec(dictionary), BODY);
+        assertArrayEquals(BODY, decompress(compressed));
+        assertArrayEquals(new byte[0], decompress(compress(new DeflateDictionaryCodec(dictionary), new byte[0])));
+        assertTrue("Dictionary makes the body smaller", compressed.length < compress(new ZlibCodec(), BODY).length);
+    }
+
+    @Test
+    public void testUnknownDictionary() throws IOException {
+        byte[] compressed = compress(new DeflateDictionaryCodec(dictionary("not registered ")), BODY);
+        assertRejected(compressed, "Unknown compression dictionary");
+    }
+
+    @Test
+    public void testPlainZlib() throws IOException {
+        assertArrayEquals(BODY, decompress(compress(new ZlibCodec(), BODY)));
+    }
+
+    @Test
+    public void testNotZlib() {
+        assertRejected(new byte[]{0x1f, (byte) 0x8b, 8, 0}, "Not a zlib stream"); // GZIP magic
+        assertRejected(new byte[]{0x78, 0x00, 0, 0}, "Not a zlib stream"); // Bad FCHECK
+    }
+
+    /** Plain zlib, without a preset dictionary */
+    private static class ZlibCodec implements CompressionCodec {
+        public String getName() {
+            return "zlib";
+        }
+
+        public OutputStream compress(OutputStream out) {
+            return new DeflaterOutputStream(out);
+        }
+
+        public InputStream decompress(InputStream in) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.restcompress.loadtest;
+
+import com.ning.compress.lzf.LZFDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Concurrent load test of the demo resources, sweeping encodings, payload sizes, concurrency and keep-alive
+ * <pre>java [-Dloadtest.concurrency=1,16 -Dloadtest.sizes=1000 ...] -jar rest-compress-loadtest/target/loadtest.jar</pre>
+ * By default it starts {@link LoadTestServer} in this JVM and GETs /loadtest/sized/{size}, where Accept-Encoding
+ *  picks the encoding.  Each combination runs with that many threads, each sending its next request as soon as
+ *  the last one is answered, for a warmup and then a measured period, and reports:
+ * <ul>
+ *     <li>Requests per second</li>
+ *     <li>p50, p99 and p99.9 latency, from sending the request to reading the last byte of the response (exact,
+ *      from every request)</li>
+ *     <li>Bytes on the wire per request: request and response, with headers and chunk framing, not TCP/IP</li>
+ *     <li>Server CPU per request: CPU time of the server threads, read from /loadtest/cpu</li>
+ * </ul>
+ * System properties, all optional:
+ * <ul>
+ *     <li>loadtest.concurrency: threads sending requests, ex: 1,4,16 (default 1 and 2 per CPU)</li>
+ *     <li>loadtest.keepalive: true, false, or true,false for both (default true).  Without keep-alive every
+ *      request opens a connection, and sends Connection: close</li>
+ *     <li>loadtest.encodings: Accept-Encoding values (default identity,lzf,gzip)</li>
+ *     <li>loadtest.sizes: entries in the object sent (default 100,1000,10000: about 18 kB, 180 kB and 1.8 MB of JSON)</li>
+ *     <li>loadtest.warmup and loadtest.duration: seconds for each combination (default 5 and 10)</li>
+ *     <li>loadtest.path: path to GET below the base URL, with {size} for the size (default /loadtest/sized/{size})</li>
+ *     <li>loadtest.url: base URL of a server already running, ex: http://host:8080/rest, instead of starting one</li>
+ *     <li>loadtest.port and loadtest.serverThreads: for the server started (default any free port, 8080 with loadtest.serve, and 200)</li>
+ *     <li>loadtest.serve: true to only start the server, on loadtest.port, for a load test from another machine</li>
+ *     <li>loadtest.csv: file to also write the results to, as CSV</li>
+ * </ul>
+ * In one JVM, the client and server share the CPUs, so throughput is lower than the server alone could reach;
+ *  server CPU per request is unaffected.  For sizing, run the server with loadtest.serve on a machine like the
+ *  production nodes, and the test from another one with loadtest.url.  This is a closed loop: when the server
+ *  slows down, so do requests, so latencies are those seen at that throughput, not at a fixed arrival rate.
+ */
+public class LoadTest {
+
+    private static final String ACCEPT = "application/json";
+
+    /** Latencies of measured requests, in nanoseconds */
+    private static final class Samples {
+        long[] values = new long[4096];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /** Sends requests on one thread until the end of the run, recording those entirely inside the measured period */
+    private static final class Worker extends Thread {
+        private final WireClient client;
+        private final String path;
+        private final String encoding;
+        private final long measureFrom;
+        private final long end;
+
+        final Samples latencies = new Samples();
+        long bytes;
+        int errors;
+
+        Worker(int id, String host, int port, boolean keepAlive, String path, String encoding, long measureFrom, long end) {
+            super("loadtest-client-" + id);
+            this.client = new WireClient(host, port, keepAlive);
+            this.path = path;
+            this.encoding = encoding;
+            this.measureFrom = measureFrom;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long start;
+                while ((start = System.nanoTime()) < end) {
+                    boolean failed = false;
+                    long sent = 0;
+                    try {
+                        WireClient.Response response = client.get(path, ACCEPT, encoding, false);
+                        failed = response.status != 200;
+                        sent = response.bytesSent + response.bytesReceived;
+                    } catch (IOException e) {
+                        failed = true;
+                        client.close();
+                    }
+                    long finish = System.nanoTime();
+                    if (start >= measureFrom && finish <= end) {
+                        if (failed) {
+                            errors++;
+                        } else {
+                            latencies.add(finish - start);
+                            bytes += sent;
+                        }
+                    }
+                }
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    /** Results of one combination */
+    private static final class Result {
+        double throughput;
+        long p50;
+        long p99;
+        long p999;
+        long bytesPerRequest;
+        /** Nanoseconds, -1 if not known */
+        long cpuPerRequest;
+        int errors;
+    }
+
+    private static String host;
+    private static int port;
+    private static String basePath;
+
+    public static void main(String[] args) throws Exception {
+        int[] concurrency = intList(System.getProperty("loadtest.concurrency"),
+                new int[]{1, 2 * Runtime.getRuntime().availableProcessors()});
+        String[] keepAlive = list(System.getProperty("loadtest.keepalive", "true"));
+        String[] encodings = list(System.getProperty("loadtest.encodings", "identity,lzf,gzip"));
+        int[] sizes = intList(System.getProperty("loadtest.sizes"), new int[]{100, 1000, 10000});
+        long warmup = TimeUnit.SECONDS.toNanos(Long.parseLong(System.getProperty("loadtest.warmup", "5")));
+        long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(System.getProperty("loadtest.duration", "10")));
+        String path = System.getProperty("loadtest.path", "/loadtest/sized/{size}");
+        String url = System.getProperty("loadtest.url");
+        String csv = System.getProperty("loadtest.csv");
+
+        LoadTestServer server = null;
+        if (url == null) {
+            boolean serve = Boolean.getBoolean("loadtest.serve");
+            server = new LoadTestServer(Integer.getInteger("loadtest.port", serve ? 8080 : 0), Integer.getInteger("loadtest.serverThreads", 200));
+            server.start();
+            LoadTestServer.getCpuNanos(); // Turns on CPU time measurement, if it is off
+            host = "localhost";
+            port = server.getPort();
+            basePath = LoadTestServer.CONTEXT_PATH;
+            if (serve) {
+                System.out.println("Serving the demo resources at http://localhost:" + port + basePath);
+                return; // Jetty's threads keep the JVM running
+            }
+        } else {
+            URL base = new URL(url);
+            host = base.getHost();
+            port = base.getPort() > 0 ? base.getPort() : base.getDefaultPort();
+            basePath = base.getPath().endsWith("/") ? base.getPath().substring(0, base.getPath().length() - 1) : base.getPath();
+        }
+
+        PrintWriter csvOut = null;
+        if (csv != null) {
+            csvOut = new PrintWriter(new FileWriter(csv));
+            csvOut.println("keepalive,concurrency,encoding,size,requests_per_sec,p50_ms,p99_ms,p999_ms,wire_bytes_per_request,server_cpu_us_per_request,errors");
+        }
+        String header = String.format("%-10s %5s %-9s %7s %10s %8s %8s %8s %12s %11s %7s",
+                "keepalive", "conc", "encoding", "size", "req/s", "p50 ms", "p99 ms", "p999 ms", "wire B/req", "CPU us/req", "errors");
+        try {
+            for (String keep : keepAlive) {
+                boolean reuse = Boolean.parseBoolean(keep);
+                for (int size : sizes) {
+                    String sizedPath = basePath + path.replace("{size}", Integer.toString(size));
+                    for (String encoding : encodings) {
+                        System.out.println();
+                        System.out.println("# " + host + ":" + port + sizedPath + ", Accept-Encoding: " + encoding + ", "
+                                + describe(sizedPath, encoding));
+                        System.out.println(header);
+                        for (int threads : concurrency) {
+                            Result result = run(reuse, sizedPath, encoding, threads, warmup, duration);
+                            System.out.println(String.format("%-10s %5d %-9s %7d %10.1f %8.3f %8.3f %8.3f %12d %11s %7d",
+                                    reuse, threads, encoding, size, result.throughput, millis(result.p50), millis(result.p99),
+                                    millis(result.p999), result.bytesPerRequest,
+                                    result.cpuPerRequest < 0 ? "n/a" : String.format("%.1f", result.cpuPerRequest / 1000.0),
+                                    result.errors));
+                            if (csvOut != null) {
+                                csvOut.println(reuse + "," + threads + "," + encoding + "," + size + ","
+                                        + String.format("%.1f,%.3f,%.3f,%.3f,", result.throughput, millis(result.p50), millis(result.p99), millis(result.p999))
+                                        + result.bytesPerRequest + ","
+                                        + (result.cpuPerRequest < 0 ? "" : String.format("%.1f", result.cpuPerRequest / 1000.0)) + ","
+                                        + result.errors);
+                                csvOut.flush();
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (csvOut != null) {
+                csvOut.close();
+            }
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private static Result run(boolean keepAlive, String path, String encoding, int threads, long warmup, long duration)
+            throws InterruptedException {
+        long measureFrom = System.nanoTime() + warmup;
+        long end = measureFrom + duration;
+        List<Worker> workers = new ArrayList<Worker>(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(i, host, port, keepAlive, path, encoding, measureFrom, end);
+            workers.add(worker);
+            worker.start();
+        }
+        sleepUntil(measureFrom);
+        long cpuBefore = serverCpu();
+        sleepUntil(end);
+        long cpuAfter = serverCpu();
+
+        Samples all = new Samples();
+        long bytes = 0;
+        Result result = new Result();
+        for (Worker worker : workers) {
+            worker.join();
+            for (int i = 0; i < worker.latencies.size; i++) {
+                all.add(worker.latencies.values[i]);
+            }
+            bytes += worker.bytes;
+            result.errors += worker.errors;
+        }
+        long[] latencies = Arrays.copyOf(all.values, all.size);
+        Arrays.sort(latencies);
+        result.throughput = latencies.length / (duration / 1e9);
+        result.p50 = percentile(latencies, 0.50);
+        result.p99 = percentile(latencies, 0.99);
+        result.p999 = percentile(latencies, 0.999);
+        result.bytesPerRequest = latencies.length == 0 ? 0 : bytes / latencies.length;
+        result.cpuPerRequest = cpuBefore < 0 || cpuAfter < 0 || latencies.length == 0 ? -1
+                : (cpuAfter - cpuBefore) / latencies.length;
+        return result;
+    }
+
+    /** Nearest-rank percentile of sorted values, 0 if empty */
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /** Server CPU nanoseconds so far, or -1 if the server doesn't report it */
+    private static long serverCpu() {
+        WireClient client = new WireClient(host, port, false);
+        try {
+            WireClient.Response response = client.get(basePath + "/loadtest/cpu", "text/plain", "identity", true);
+            return response.status == 200 ? Long.parseLong(new String(response.body, "US-ASCII").trim()) : -1;
+        } catch (IOException e) {
+            return -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        } finally {
+            client.close();
+        }
+    }
+
+    /** Check a response can be fetched and decoded, and describe its encoding and size */
+    private static String describe(String path, String encoding) throws IOException {
+        WireClient client = new WireClient(host, port, false);
+        try {
+            WireClient.Response response = client.get(path, ACCEPT, encoding, true);
+            if (response.status != 200) {
+                return "status " + response.status + " (every request will count as an error)";
+            }
+            String sent = response.contentEncoding == null ? "identity" : response.contentEncoding;
+            byte[] body = decode(response.contentEncoding, response.body);
+            String description = "sent " + sent + ", " + response.body.length + " bytes body, "
+                    + (body == null ? "unknown" : Integer.toString(body.length)) + " uncompressed";
+            return encoding.equalsIgnoreCase(sent) ? description : description + " (not the encoding asked for)";
+        } finally {
+            client.close();
+        }
+    }
+
+    /** @return Decoded body, or null for an encoding this can't decode */
+    private static byte[] decode(String encoding, byte[] body) throws IOException {
+        if (encoding == null) {
+            return body;
+        } else if (encoding.equalsIgnoreCase("lzf")) {
+            return LZFDecoder.decode(body);
+        } else if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+            InputStream in = new GZIPInputStream(new ByteArrayInputStream(body));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            in.close();
+            return out.toByteArray();
+        }
+        return null;
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long left;
+        while ((left = nanoTime - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(left);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String[] list(String value) {
+        String[] items = value.split(",");
+        for (int i = 0; i < items.length; i++) {
+            items[i] = items[i].trim();
+        }
+        return items;
+    }
+
+    private static int[] intList(String value, int[] defaults) {
+        if (value == null) {
+            return defaults;
+        }
+        String[] items = list(value);
+        int[] values = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            values[i] = Integer.parseInt(items[i]);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,54 @@
+package com.restcompress.loadtest;
+
+import com.restcompress.demoapp.RestDemoApp;
+import com.restcompress.demoapp.model.FancyRestObject;
+import com.restcompress.provider.Compress;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Demo objects of any size, with the encoding negotiated from Accept-Encoding, so one endpoint covers every
+ *  encoding in the sweep (the demo's /complex/{size} is LZF only, and /static/gzip is one size)
+ * <p/>Objects are generated once per size from a fixed seed, so requests measure serialization and compression,
+ *  not the generator, and every run sends the same bytes.
+ */
+@Path("/loadtest")
+public class LoadTestResource {
+
+    static final long SEED = 42L;
+
+    private static final ConcurrentMap<Integer, FancyRestObject> objects = new ConcurrentHashMap<Integer, FancyRestObject>();
+
+    @GET
+    @Path("/sized/{entries}")
+    @Compress({"lzf", "gzip"})
+    @Produces(MediaType.APPLICATION_JSON)
+    public FancyRestObject getSized(@PathParam("entries") int entries) {
+        FancyRestObject object = objects.get(entries);
+        if (object == null) {
+            object = RestDemoApp.getRandomObject(entries, SEED);
+            FancyRestObject raced = objects.putIfAbsent(entries, object);
+            if (raced != null) {
+                object = raced;
+            }
+        }
+        return object;
+    }
+
+    /**
+     * CPU time used so far by the server, see {@link LoadTestServer#getCpuNanos()}
+     * <p/>The load test reads it before and after each run, so it works against a server on another machine.
+     */
+    @GET
+    @Path("/cpu")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String getCpuNanos() {
+        return Long.toString(LoadTestServer.getCpuNanos());
+    }
+}
@@ -0,0 +1,127 @@
+package com.restcompress.loadtest;
+
+import com.restcompress.demoapp.DemoBatchResource;
+import com.restcompress.demoapp.RestDemoApp;
+import com.restcompress.demoapp.provider.PackedFancyRestObjectProvider;
+import com.restcompress.provider.CacheCompressedInterceptor;
+import com.restcompress.provider.CodecDecodingInterceptor;
+import com.restcompress.provider.CodecEncodingInterceptor;
+import com.restcompress.provider.CompressHeaderInterceptor;
+import com.restcompress.provider.DeltaEncodingInterceptor;
+import com.restcompress.provider.EndpointInterceptor;
+import com.restcompress.provider.LZFDecodingInterceptor;
+import com.restcompress.provider.LZFEncodingInterceptor;
+import com.restcompress.provider.PrecompressedWriter;
+import com.restcompress.provider.SmileProvider;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The demo resources, and {@link LoadTestResource}, on embedded Jetty under /rest, as the demo WAR deploys them
+ * <p/>There is no classpath scanning here, so the compression interceptors and demo providers are listed,
+ *  the same ones the WAR picks up.  RESTEasy's built-in providers (Jackson, JAXB, GZIP) register as usual.
+ * <p/>Server threads all start with {@link #THREAD_PREFIX}, and the pool has a fixed size, so their CPU time
+ *  can be measured over a run (see {@link #getCpuNanos()}).
+ */
+public class LoadTestServer {
+
+    /** Name prefix of the Jetty threads, which accept, read and write connections and run the resources */
+    public static final String THREAD_PREFIX = "loadtest-server";
+
+    /** Name prefix of the rest-compress worker threads (parallel LZF, batches, flushing) */
+    public static final String WORKER_PREFIX = "restcompress-";
+
+    public static final String CONTEXT_PATH = "/rest";
+
+    private static final Class<?>[] RESOURCES = {RestDemoApp.class, DemoBatchResource.class, LoadTestResource.class};
+
+    private static final Class<?>[] PROVIDERS = {
+            CompressHeaderInterceptor.class, LZFEncodingInterceptor.class, LZFDecodingInterceptor.class,
+            CodecEncodingInterceptor.class, CodecDecodingInterceptor.class, CacheCompressedInterceptor.class,
+            DeltaEncodingInterceptor.class, EndpointInterceptor.class, PrecompressedWriter.class, SmileProvider.class,
+            PackedFancyRestObjectProvider.class};
+
+    private final Server server;
+    private final SelectChannelConnector connector;
+
+    /**
+     * @param port Port to listen on, 0 for any free port
+     * @param threads Size of the Jetty thread pool
+     */
+    public LoadTestServer(int port, int threads) {
+        QueuedThreadPool pool = new QueuedThreadPool(threads);
+        pool.setMinThreads(threads); // No threads come and go during a run, taking their CPU time with them
+        pool.setName(THREAD_PREFIX);
+        server = new Server();
+        server.setThreadPool(pool);
+        connector = new SelectChannelConnector();
+        connector.setPort(port);
+        server.addConnector(connector);
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath(CONTEXT_PATH);
+        ServletHolder dispatcher = new ServletHolder(HttpServletDispatcher.class);
+        dispatcher.setInitParameter("resteasy.resources", classNames(RESOURCES));
+        dispatcher.setInitParameter("resteasy.providers", classNames(PROVIDERS));
+        dispatcher.setInitOrder(1);
+        context.addServlet(dispatcher, "/*");
+        server.setHandler(context);
+    }
+
+    public void start() throws Exception {
+        server.start();
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+    }
+
+    /** Port listened on, once started */
+    public int getPort() {
+        return connector.getLocalPort();
+    }
+
+    /**
+     * Total CPU time used so far by the server threads and rest-compress workers
+     * <p/>Take the difference over a run.  Threads that end during it lose their time, which the fixed pool avoids.
+     * @return Nanoseconds, or -1 if the JVM doesn't measure thread CPU time
+     */
+    public static long getCpuNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadCpuTimeSupported()) {
+            return -1;
+        }
+        if (!threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && (info.getThreadName().startsWith(THREAD_PREFIX) || info.getThreadName().startsWith(WORKER_PREFIX))) {
+                long nanos = threads.getThreadCpuTime(info.getThreadId());
+                if (nanos > 0) {
+                    total += nanos;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static String classNames(Class<?>[] classes) {
+        StringBuilder names = new StringBuilder();
+        for (Class<?> c : classes) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(c.getName());
+        }
+        return names.toString();
+    }
+}
@@ -0,0 +1,237 @@
+package com.restcompress.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Minimal HTTP/1.1 GET client on a plain socket, counting every byte sent and received
+ * <p/>HTTP clients hide the headers and chunk framing, and decode the body, so they can't report the bytes on
+ *  the wire.  This one reads the status line, headers and body (Content-Length, chunked, or to the end of the
+ *  connection) as sent, and only keeps the body when asked to.
+ * <p/>Not thread safe: use one per thread.  With keep-alive, the connection is reused until the server closes it.
+ */
+final class WireClient {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /** One response: status, Content-Encoding, and the bytes it took */
+    static final class Response {
+        int status;
+        /** Null if not encoded */
+        String contentEncoding;
+        /** Null unless kept */
+        byte[] body;
+        long bytesSent;
+        long bytesReceived;
+    }
+
+    private final String host;
+    private final int port;
+    private final boolean keepAlive;
+
+    private Socket socket;
+    private OutputStream out;
+    private InputStream in;
+
+    private final byte[] buffer = new byte[64 * 1024];
+    private int position;
+    private int limit;
+    private long received;
+
+    WireClient(String host, int port, boolean keepAlive) {
+        this.host = host;
+        this.port = port;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * GET a path
+     * @param path Path and query, from the root of the server
+     * @param accept Accept to send
+     * @param acceptEncoding Accept-Encoding to send
+     * @param keepBody True to return the body, as received (still encoded)
+     * @throws IOException If the request fails; the connection is closed
+     */
+    Response get(String path, String accept, String acceptEncoding, boolean keepBody) throws IOException {
+        boolean reused = socket != null;
+        try {
+            return exchange(path, accept, acceptEncoding, keepBody);
+        } catch (IOException e) {
+            close();
+            if (!reused) {
+                throw e;
+            }
+            return exchange(path, accept, acceptEncoding, keepBody); // The server may have closed an idle connection
+        }
+    }
+
+    void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            socket = null;
+        }
+    }
+
+    private Response exchange(String path, String accept, String acceptEncoding, boolean keepBody) throws IOException {
+        if (socket == null) {
+            connect();
+        }
+        StringBuilder request = new StringBuilder(160);
+        request.append("GET ").append(path).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(host).append(':').append(port).append("\r\n")
+                .append("Accept: ").append(accept).append("\r\n")
+                .append("Accept-Encoding: ").append(acceptEncoding).append("\r\n");
+        if (!keepAlive) {
+            request.append("Connection: close\r\n");
+        }
+        request.append("\r\n");
+        byte[] head = request.toString().getBytes(ASCII);
+        out.write(head);
+        out.flush();
+
+        Response response = new Response();
+        response.bytesSent = head.length;
+        long start = received - (limit - position);
+
+        String status = readLine();
+        if (status == null) {
+            throw new EOFException("Connection closed before the response");
+        }
+        String[] parts = status.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Bad status line: " + status);
+        }
+        response.status = Integer.parseInt(parts[1]);
+
+        long length = -1;
+        boolean chunked = false;
+        boolean closing = !keepAlive || "HTTP/1.0".equals(parts[0]);
+        String line;
+        while ((line = readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+            String value = line.substring(colon + 1).trim();
+            if (name.equals("content-length")) {
+                length = Long.parseLong(value);
+            } else if (name.equals("transfer-encoding")) {
+                chunked = value.toLowerCase(Locale.ENGLISH).contains("chunked");
+            } else if (name.equals("content-encoding")) {
+                response.contentEncoding = value.equalsIgnoreCase("identity") ? null : value;
+            } else if (name.equals("connection")) {
+                closing |= value.equalsIgnoreCase("close");
+            }
+        }
+        if (line == null) {
+            throw new EOFException("Connection closed in the response headers");
+        }
+
+        ByteArrayOutputStream body = keepBody ? new ByteArrayOutputStream() : null;
+        if (response.status == 204 || response.status == 304) {
+            length = 0;
+        }
+        if (chunked) {
+            while (true) {
+                String sizeLine = readLine();
+                if (sizeLine == null) {
+                    throw new EOFException("Connection closed in a chunked body");
+                }
+                int extension = sizeLine.indexOf(';');
+                long size = Long.parseLong((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+                if (size == 0) {
+                    break;
+                }
+                skip(size, body);
+                readLine(); // The CRLF after the data
+            }
+            while ((line = readLine()) != null && line.length() > 0) {
+                // Trailers, up to the blank line ending the body
+            }
+        } else if (length >= 0) {
+            skip(length, body);
+        } else {
+            skip(Long.MAX_VALUE, body); // Until the server closes
+            closing = true;
+        }
+
+        response.bytesReceived = received - (limit - position) - start;
+        response.body = body == null ? null : body.toByteArray();
+        if (closing) {
+            close();
+        }
+        return response;
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port));
+        out = socket.getOutputStream();
+        in = socket.getInputStream();
+        position = 0;
+        limit = 0;
+    }
+
+    /** @return False at the end of the connection */
+    private boolean fill() throws IOException {
+        int read = in.read(buffer);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        received += read;
+        return true;
+    }
+
+    /** @return Line without the CRLF, or null at the end of the connection */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        while (true) {
+            if (position == limit && !fill()) {
+                return line.length() > 0 ? line.toString() : null;
+            }
+            byte b = buffer[position++];
+            if (b == '\n') {
+                int end = line.length();
+                if (end > 0 && line.charAt(end - 1) == '\r') {
+                    line.setLength(end - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) (b & 0xFF));
+        }
+    }
+
+    /** Read count bytes (or to the end of the connection, for Long.MAX_VALUE), keeping them if body is not null */
+    private void skip(long count, ByteArrayOutputStream body) throws IOException {
+        while (count > 0) {
+            if (position == limit && !fill()) {
+                if (count == Long.MAX_VALUE) {
+                    return;
+                }
+                throw new EOFException("Connection closed with " + count + " bytes of the body left");
+            }
+            int n = (int) Math.min(count, limit - position);
+            if (body != null) {
+                body.write(buffer, position, n);
+            }
+            position += n;
+            if (count != Long.MAX_VALUE) {
+                count -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.restcompress.micrometer;
+
+import com.restcompress.provider.metrics.CompressionMetrics;
+import com.restcompress.provider.metrics.EndpointMetrics;
+import com.restcompress.provider.metrics.LatencyHistogram;
+import com.restcompress.provider.metrics.SkipReason;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes the rest-compress per-endpoint metrics to a Micrometer registry
+ * <p/>Meters read the library's own striped counters and histograms when the registry polls them, so requests
+ *  pay nothing extra.  Endpoints and codecs seen later are bound as they appear.  Every meter is tagged with
+ *  endpoint and codec:
+ * <ul>
+ *     <li>restcompress.encode / restcompress.decode: timers for compression and decompression time</li>
+ *     <li>restcompress.encode.bytes / restcompress.decode.bytes: counters, tagged stage=uncompressed|compressed</li>
+ *     <li>restcompress.encode.ratio: gauge, compressed/uncompressed size</li>
+ *     <li>restcompress.encode.latency / restcompress.decode.latency: gauges in seconds, tagged quantile=0.5|0.99|max</li>
+ *     <li>restcompress.skipped: counter of bodies sent uncompressed, tagged reason</li>
+ * </ul>
+ * <pre>
+ *     new CompressionMetricsBinder().bindTo(registry);
+ * </pre>
+ */
+public class CompressionMetricsBinder implements MeterBinder {
+
+    private final Iterable<Tag> tags;
+
+    public CompressionMetricsBinder() {
+        this(Tags.empty());
+    }
+
+    /**
+     * @param tags Extra tags for every meter
+     */
+    public CompressionMetricsBinder(Iterable<Tag> tags) {
+        this.tags = tags;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CompressionMetrics.addListener(metrics -> bind(registry, metrics));
+        for (EndpointMetrics metrics : CompressionMetrics.getAll()) {
+            bind(registry, metrics); // Registering the same meter twice is harmless, if one was added meanwhile
+        }
+    }
+
+    private void bind(MeterRegistry registry, EndpointMetrics metrics) {
+        Tags endpointTags = Tags.of(tags).and("endpoint", metrics.getEndpoint(), "codec", metrics.getCodec());
+
+        FunctionTimer.builder("restcompress.encode", metrics, EndpointMetrics::getEncodeCount,
+                EndpointMetrics::getEncodeNanosTotal, TimeUnit.NANOSECONDS)
+                .description("Time compressing response and request bodies")
+                .tags(endpointTags).register(registry);
+        FunctionTimer.builder("restcompress.decode", metrics, EndpointMetrics::getDecodeCount,
+                EndpointMetrics::getDecodeNanosTotal, TimeUnit.NANOSECONDS)
+                .description("Time decompressing request and response bodies")
+                .tags(endpointTags).register(registry);
+
+        bytes(registry, "restcompress.encode.bytes", metrics, endpointTags, "uncompressed", EndpointMetrics::getEncodeUncompressedBytes);
+        bytes(registry, "restcompress.encode.bytes", metrics, endpointTags, "compressed", EndpointMetrics::getEncodeCompressedBytes);
+        bytes(registry, "restcompress.decode.bytes", metrics, endpointTags, "compressed", EndpointMetrics::getDecodeCompressedBytes);
+        bytes(registry, "restcompress.decode.bytes", metrics, endpointTags, "uncompressed", EndpointMetrics::getDecodeUncompressedBytes);
+
+        Gauge.builder("restcompress.encode.ratio", metrics, EndpointMetrics::getEncodeRatio)
+                .description("Compressed size as a fraction of uncompressed size")
+                .tags(endpointTags).register(registry);
+
+        latency(registry, "restcompress.encode.latency", metrics.getEncodeTime(), endpointTags);
+        latency(registry, "restcompress.decode.latency", metrics.getDecodeTime(), endpointTags);
+
+        for (SkipReason reason : SkipReason.values()) {
+            FunctionCounter.builder("restcompress.skipped", metrics, m -> m.getSkipped(reason))
+                    .description("Bodies sent uncompressed")
+                    .tags(endpointTags).tag("reason", reason.name().toLowerCase(Locale.ENGLISH))
+                    .register(registry);
+        }
+    }
+
+    private static void bytes(MeterRegistry registry, String name, EndpointMetrics metrics, Tags tags, String stage,
+                              ToLongFunction<EndpointMetrics> count) {
+        FunctionCounter.builder(name, metrics, m -> count.applyAsLong(m))
+                .baseUnit("bytes")
+                .tags(tags).tag("stage", stage)
+                .register(registry);
+    }
+
+    private static void latency(MeterRegistry registry, String name, LatencyHistogram histogram, Tags tags) {
+        Gauge.builder(name, histogram, h -> h.getPercentile(0.5) / 1e9)
+                .baseUnit("seconds").tags(tags).tag("quantile", "0.5").register(registry);
+        Gauge.builder(name, histogram, h -> h.getPercentile(0.99) / 1e9)
+                .baseUnit("seconds").tags(tags).tag("quantile", "0.99").register(registry);
+        Gauge.builder(name, histogram, h -> h.getMax() / 1e9)
+                .baseUnit("seconds").tags(tags).tag("quantile", "max").register(registry);
+    }
+}